@@ -1,8 +1,22 @@
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
+import appointment.Schedule;
+import data.BinarySnapshot;
+import data.CsvStorageBackend;
+import data.IdAllocator;
+import data.StorageBackend;
 import data.appointment.AppointmentDatabase;
+import data.appointment.MappedAppointmentStore;
 import data.user.UserDatabase;
 import medicine.Inventory;
+import medicine.LowStockListener;
 import menus.UserInterface;
 /**
  * Represents the core system for managing hospital operations, including user management, inventory control,
@@ -17,6 +31,9 @@ public class HospitalManagementSystem {
     private UserDatabase userDb;
     private AppointmentDatabase appointmentDb;
     private UserInterface ui;
+    private StorageBackend backend;
+    private String snapshotPath;
+    private volatile boolean closed;
 
     /**
      * Constructs a new HospitalManagementSystem instance and initializes the various system components.
@@ -25,7 +42,7 @@ public class HospitalManagementSystem {
      * The system will initialize the following:
      * - User database with patient, staff, and account data.
      * - Inventory management system with medicines and replenishment requests.
-     * - Appointment database with appointment records.
+     * - Appointment database with appointment records, journaled so that each change is a single append.
      *
      * @param staffListPath The file path for the staff list CSV file.
      * @param patientListPath The file path for the patient list CSV file.
@@ -42,26 +59,263 @@ public class HospitalManagementSystem {
         String accountListPath,
         String appointmentListPath
     ) {
+        this(
+            new CsvStorageBackend(
+                staffListPath, patientListPath, medicineListPath, requestListPath,
+                accountListPath, appointmentListPath, CsvStorageBackend.DEFAULT_COMPACTION_INTERVAL
+            ),
+            null,
+            null
+        );
+    }
+
+    /**
+     * Constructs a new HospitalManagementSystem instance that stores its data in the given storage backend.
+     * If a snapshot path is given and the snapshot is newer than the data in the backend, the records are loaded
+     * from the snapshot instead. The backend is still updated as changes are made, and the snapshot is saved
+     * again when the system stops. The records are loaded in parallel on the common fork-join pool.
+     *
+     * @param backend The storage backend holding the users, inventory and appointments.
+     * @param snapshotPath The file path for the binary snapshot, or null to disable snapshots.
+     * @param appointmentStorePath The base path of a memory-mapped appointment store to keep appointments in
+     *                             instead of the backend, or null to keep them in the backend.
+     */
+    public HospitalManagementSystem(StorageBackend backend, String snapshotPath, String appointmentStorePath) {
+        this(backend, snapshotPath, appointmentStorePath, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a new HospitalManagementSystem instance that stores its data in the given storage backend,
+     * loading it on the given executor.
+     *
+     * Startup runs in phases. The snapshot is read first, if it is enabled and up to date, followed by the ID
+     * sequences. The users, the inventory
+     * and the appointments do not depend on each other, so they are then loaded at the same time. Once all three are
+     * loaded, the users are linked to them, which builds the schedule of every doctor and the medical record of every
+     * patient as separate tasks. The time taken by each phase is printed when startup finishes.
+     *
+     * @param backend The storage backend holding the users, inventory and appointments.
+     * @param snapshotPath The file path for the binary snapshot, or null to disable snapshots.
+     * @param appointmentStorePath The base path of a memory-mapped appointment store to keep appointments in
+     *                             instead of the backend, or null to keep them in the backend.
+     * @param executor The executor that runs the startup tasks. It is not shut down.
+     */
+    public HospitalManagementSystem(StorageBackend backend, String snapshotPath, String appointmentStorePath, Executor executor) {
+        this(backend, snapshotPath, appointmentStorePath, executor, Schedule.DEFAULT_HORIZON_DAYS);
+    }
+
+    /**
+     * Constructs a new HospitalManagementSystem instance that stores its data in the given storage backend,
+     * loading it on the given executor, with doctor schedules running the given number of days ahead.
+     *
+     * @param backend The storage backend holding the users, inventory and appointments.
+     * @param snapshotPath The file path for the binary snapshot, or null to disable snapshots.
+     * @param appointmentStorePath The base path of a memory-mapped appointment store to keep appointments in
+     *                             instead of the backend, or null to keep them in the backend.
+     * @param executor The executor that runs the startup tasks. It is not shut down.
+     * @param scheduleHorizonDays The number of days after today that doctor schedules can be viewed and booked.
+     */
+    public HospitalManagementSystem(
+        StorageBackend backend, String snapshotPath, String appointmentStorePath, Executor executor, int scheduleHorizonDays
+    ) {
+        this.backend = backend;
+        this.snapshotPath = snapshotPath;
+        long startTime = System.nanoTime();
+        ConcurrentHashMap<String, Long> timings = new ConcurrentHashMap<>();
+
         try {
-            userDb = new UserDatabase(accountListPath, patientListPath, staffListPath);
-            inventory = new Inventory(medicineListPath, requestListPath);
-            appointmentDb = new AppointmentDatabase(appointmentListPath);
+            BinarySnapshot snapshot = timed(timings, "snapshot", () -> {
+                if (snapshotPath == null || !BinarySnapshot.isNewerThan(snapshotPath, backend.lastModified())) return null;
+                try {
+                    return BinarySnapshot.read(snapshotPath);
+                } catch (IOException e) {
+                    System.out.println("Error reading snapshot, loading stored data instead: " + e.getMessage());
+                    return null;
+                }
+            });
+
+            IdAllocator ids = timed(timings, "sequences", () -> new IdAllocator(backend));
+            CompletableFuture<UserDatabase> users = loadAsync(timings, "users", executor, () -> snapshot != null
+                ? new UserDatabase(backend, ids, snapshot.getPatients(), snapshot.getStaff(), snapshot.getAccounts())
+                : new UserDatabase(backend, ids));
+            CompletableFuture<Inventory> medicines = loadAsync(timings, "inventory", executor, () -> snapshot != null
+                ? new Inventory(backend, ids, snapshot.getMedicines(), snapshot.getRequests())
+                : new Inventory(backend, ids));
+            CompletableFuture<AppointmentDatabase> appointments = loadAsync(timings, "appointments", executor, () -> {
+                if (appointmentStorePath != null) return new AppointmentDatabase(backend, ids, new MappedAppointmentStore(appointmentStorePath));
+                if (snapshot != null) return new AppointmentDatabase(backend, ids, snapshot.getAppointments());
+                return new AppointmentDatabase(backend, ids);
+            });
+
+            userDb = join(users);
+            inventory = join(medicines);
+            appointmentDb = join(appointments);
         } catch (IOException e) {
             e.printStackTrace();
             System.exit(-1);
         }
 
-        userDb.initUsers(inventory, appointmentDb);
+        long linkStart = System.nanoTime();
+        userDb.setScheduleHorizon(scheduleHorizonDays);
+        userDb.initUsers(inventory, appointmentDb, executor);
+        timings.put("link", System.nanoTime() - linkStart);
 
         ui = new UserInterface(userDb);
+        timings.put("total", System.nanoTime() - startTime);
+        printTimings(timings);
+    }
+
+    /**
+     * Loads a component of the system that can throw an IOException.
+     */
+    private interface Loader<T> {
+        /**
+         * Loads the component.
+         *
+         * @return the loaded component
+         * @throws IOException if there is an error reading the stored data
+         */
+        T load() throws IOException;
+    }
+
+    /**
+     * Runs a loader on the current thread and records how long it took.
+     *
+     * @param timings the time taken by each phase in nanoseconds
+     * @param phase the name of the phase
+     * @param loader the loader to run
+     * @return the loaded component
+     * @throws IOException if the loader fails
+     */
+    private static <T> T timed(Map<String, Long> timings, String phase, Loader<T> loader) throws IOException {
+        long start = System.nanoTime();
+        T result = loader.load();
+        timings.put(phase, System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Runs a loader on the executor and records how long it took.
+     *
+     * @param timings the time taken by each phase in nanoseconds
+     * @param phase the name of the phase
+     * @param executor the executor to run the loader on
+     * @param loader the loader to run
+     * @return a future holding the loaded component
+     */
+    private static <T> CompletableFuture<T> loadAsync(Map<String, Long> timings, String phase, Executor executor, Loader<T> loader) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return timed(timings, phase, loader);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Waits for a component to finish loading.
+     *
+     * @param future the future holding the component
+     * @return the loaded component
+     * @throws IOException if the component failed to load
+     */
+    private static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) throw ((UncheckedIOException) e.getCause()).getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Prints the time taken by each startup phase, in milliseconds.
+     * The users, inventory and appointments are loaded at the same time, so the phases add up to more than the total.
+     *
+     * @param timings the time taken by each phase in nanoseconds
+     */
+    private static void printTimings(Map<String, Long> timings) {
+        StringBuilder line = new StringBuilder("Startup:");
+        for (String phase : new String[] {"snapshot", "sequences", "users", "inventory", "appointments", "link", "total"}) {
+            line.append(String.format(" %s %d ms,", phase, timings.get(phase) / 1_000_000));
+        }
+        line.setLength(line.length() - 1);
+        System.out.println(line + "\n");
     }
 
     /**
      * Starts the hospital management system, initiating the user interface.
      * This method begins the process of user interaction with the system, allowing users to perform various actions
      * depending on their role (patient, staff, administrator, etc.).
+     * Pending writes are flushed when the user quits, or when the program is terminated.
+     * Pending low stock notifications are delivered once the user quits.
+     * If snapshots are enabled, the snapshot is saved once the user quits. The system is then closed.
      */
     public void start() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush));
         ui.start();
+        if (snapshotPath != null) saveSnapshot();
+        close();
+    }
+
+    /**
+     * Stops the system: delivers pending low stock notifications, writes every pending change and closes the
+     * storage backend. Nothing is written after this.
+     */
+    public void close() {
+        inventory.close();
+        flush();
+        closed = true;
+        try {
+            backend.close();
+        } catch (IOException e) {
+            System.out.println("Error closing storage: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Registers a listener to be notified when a medicine in the inventory crosses its low stock level alert.
+     *
+     * @param listener The listener to add.
+     */
+    public void addLowStockListener(LowStockListener listener) {
+        inventory.addLowStockListener(listener);
+    }
+
+    /**
+     * Writes every pending change to the storage backend and the appointment store.
+     * This does nothing once the system is closed.
+     */
+    public void flush() {
+        if (closed) return;
+        backend.flush();
+        appointmentDb.flush();
+    }
+
+    /**
+     * Saves the current state of the system to the binary snapshot.
+     * Pending writes are flushed first so that the snapshot is newer than the stored data.
+     *
+     * @return true if the snapshot was saved, false if snapshots are disabled or the write failed
+     */
+    public boolean saveSnapshot() {
+        if (snapshotPath == null) return false;
+        flush();
+        BinarySnapshot snapshot = new BinarySnapshot(
+            userDb.getAccounts(),
+            userDb.getAllPatients(),
+            userDb.getStaff(),
+            inventory.getInventory(),
+            inventory.getRequests(),
+            appointmentDb.getAppointments().values()
+        );
+        try {
+            snapshot.write(snapshotPath);
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error writing snapshot: " + e.getMessage());
+            return false;
+        }
     }
 }
@@ -1,3 +1,16 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import appointment.Schedule;
+import data.CsvStorageBackend;
+import data.LogStorageBackend;
+import data.MemoryStorageBackend;
+import data.StorageBackend;
+import medicine.LowStockLog;
 
 /**
  * The main entry point of the Hospital Management System application.
@@ -12,6 +25,7 @@ class Main {
      * The main method which serves as the entry point for the application.
      * It initializes the Hospital Management System with predefined file paths for users, inventory, appointments, and accounts.
      * Then, it starts the system, allowing user interaction with the hospital management features.
+     * Medicines dropping below or restocked above their low stock alert level are logged to Low_Stock_Log.csv.
      * 
      * The following files are required for initialization:
      * - Staff_List.csv: A CSV file containing the list of staff members.
@@ -20,20 +34,129 @@ class Main {
      * - Replenishment_Request_List.csv: A CSV file containing the list of replenishment requests for the inventory.
      * - Account_List.csv: A CSV file containing user account information.
      * - Appointment_List.csv: A CSV file containing patient appointments.
+     * - Sequence_List.csv: A CSV file containing the next ID of each kind of user and of appointments.
+     * 
      * 
+     * Passing {@code --snapshot} starts the system from Hospital_Snapshot.bin when it is up to date, and saves it on exit.
+     * Passing {@code --save-snapshot} loads the stored data, saves Hospital_Snapshot.bin and exits.
+     * Passing {@code --mapped-appointments} keeps appointments in a memory-mapped store next to Appointment_List.csv,
+     * importing the stored appointments the first time.
+     * Passing {@code --schedule-horizon=<days>} sets how many days ahead doctor schedules can be viewed and booked,
+     * 365 by default.
+     * Passing {@code --startup-threads=<n>} loads the stored data and builds the doctor schedules on a pool of n threads,
+     * instead of the common fork-join pool.
+     * Passing {@code --flush-interval=<ms>} sets how long changes to the CSV files are collected before they are
+     * written, 50 milliseconds by default.
+     * Passing {@code --storage=csv}, {@code --storage=log} or {@code --storage=memory} selects the storage backend:
+     * the CSV files above (the default), a single append-only log in Hospital.log that is imported from the CSV files
+     * the first time, or memory only, loaded from the CSV files and never written back.
      * 
-     * @param args Command-line arguments (not used in this implementation).
+     * @param args Command-line arguments: {@code --snapshot}, {@code --save-snapshot}, {@code --mapped-appointments},
+     *             {@code --schedule-horizon=<days>}, {@code --startup-threads=<n>}, {@code --flush-interval=<ms>}
+     *             or {@code --storage=<csv|log|memory>}.
      */
     public static void main(String[] args) {
-        HospitalManagementSystem system = new HospitalManagementSystem(
+        boolean useSnapshot = false, saveSnapshot = false, mappedAppointments = false;
+        String storage = "csv";
+        int startupThreads = 0;
+        int scheduleHorizon = Schedule.DEFAULT_HORIZON_DAYS;
+        long flushInterval = CsvStorageBackend.DEFAULT_FLUSH_INTERVAL;
+        for (String arg : args) {
+            if (arg.equals("--snapshot")) useSnapshot = true;
+            else if (arg.equals("--save-snapshot")) saveSnapshot = true;
+            else if (arg.equals("--mapped-appointments")) mappedAppointments = true;
+            else if (arg.startsWith("--storage=")) storage = arg.substring("--storage=".length());
+            else if (arg.startsWith("--startup-threads=")) {
+                try {
+                    startupThreads = Integer.parseInt(arg.substring("--startup-threads=".length()));
+                } catch (NumberFormatException e) {
+                    startupThreads = 0;
+                }
+                if (startupThreads < 1) {
+                    System.out.println("Invalid " + arg + ", expected a positive number of threads.");
+                    return;
+                }
+            } else if (arg.startsWith("--schedule-horizon=")) {
+                try {
+                    scheduleHorizon = Integer.parseInt(arg.substring("--schedule-horizon=".length()));
+                } catch (NumberFormatException e) {
+                    scheduleHorizon = -1;
+                }
+                if (scheduleHorizon < 0) {
+                    System.out.println("Invalid " + arg + ", expected a number of days.");
+                    return;
+                }
+            } else if (arg.startsWith("--flush-interval=")) {
+                try {
+                    flushInterval = Long.parseLong(arg.substring("--flush-interval=".length()));
+                } catch (NumberFormatException e) {
+                    flushInterval = 0;
+                }
+                if (flushInterval < 1) {
+                    System.out.println("Invalid " + arg + ", expected a positive number of milliseconds.");
+                    return;
+                }
+            }
+        }
+
+        CsvStorageBackend csv = new CsvStorageBackend(
             "Staff_List.csv", 
             "Patient_List.csv", 
             "Medicine_List.csv", 
             "Replenishment_Request_List.csv",
             "Account_List.csv", 
-            "Appointment_List.csv"
+            "Appointment_List.csv",
+            "Sequence_List.csv",
+            CsvStorageBackend.DEFAULT_COMPACTION_INTERVAL
         );
+        csv.setFlushInterval(flushInterval);
+        StorageBackend backend = null;
+        try {
+            switch (storage) {
+                case "csv":
+                    backend = csv;
+                    break;
+                case "log": {
+                    boolean exists = Files.exists(Path.of("Hospital.log"));
+                    backend = new LogStorageBackend("Hospital.log");
+                    if (!exists) {
+                        System.out.println("Hospital.log does not exist, importing the CSV files...\n");
+                        StorageBackend.copy(csv, backend);
+                        backend.flush();
+                    }
+                    csv.close();
+                    break;
+                }
+                case "memory":
+                    backend = new MemoryStorageBackend(csv);
+                    csv.close();
+                    break;
+                default:
+                    System.out.println("Unknown storage backend " + storage + ", expected csv, log or memory.");
+                    return;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(-1);
+        }
+
+        ExecutorService startupPool = startupThreads > 0 ? Executors.newFixedThreadPool(startupThreads) : null;
+        HospitalManagementSystem system = new HospitalManagementSystem(
+            backend,
+            useSnapshot || saveSnapshot ? "Hospital_Snapshot.bin" : null,
+            mappedAppointments ? "Appointment_List.csv" : null,
+            startupPool != null ? startupPool : ForkJoinPool.commonPool(),
+            scheduleHorizon
+        );
+        if (startupPool != null) startupPool.shutdown();
+
+        system.addLowStockListener(new LowStockLog("Low_Stock_Log.csv"));
 
+        if (saveSnapshot) {
+            if (system.saveSnapshot()) System.out.println("Snapshot saved to Hospital_Snapshot.bin.");
+            system.close();
+            return;
+        }
         system.start();
     }
-}
\ No newline at end of file
+}
@@ -2,10 +2,14 @@ package appointment;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import data.CsvCompatible;
 import medicine.Prescription;
+import medicine.PrescriptionStatus;
 import record.AppointmentOutcomeRecord;
 import user.UserId;
 
@@ -14,16 +18,36 @@ import user.UserId;
  * It contains information like appointment status, sheduled time slot etc.,
  * and the outcome record if the appointment has been completed.
  * It also provides methods for scheduling, rescheduling, and canceling the appointment.
+ *
+ * Outcome records loaded from a CSV line are kept as their raw CSV fields and only decoded the first time
+ * {@link #getRecord()} is called. Decoded records are held in a cache of limited size; when a record is evicted,
+ * it is encoded back into raw fields, so changes made to it are kept.
  * @author NATANAEL TAN TIONG OON
  * @version 1.0
  * @since 2024-11-21
  */
 public class Appointment implements CsvCompatible {
+    /**
+     * Default number of decoded outcome records kept in memory.
+     */
+    public static final int DEFAULT_RECORD_CACHE_SIZE = 1024;
+
+    private static int recordCacheSize = DEFAULT_RECORD_CACHE_SIZE;
+    private static final LinkedHashMap<Appointment, AppointmentOutcomeRecord> recordCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Appointment, AppointmentOutcomeRecord> eldest) {
+            if (size() <= recordCacheSize) return false;
+            eldest.getKey().evictRecord();
+            return true;
+        }
+    };
+
     private int id;
     private UserId patientId, doctorId;
     private AppointmentStatus appointmentStatus;
     private AppointmentSlot slot;
     private AppointmentOutcomeRecord record;
+    private String[] rawRecord;
 
     /**
      * Constructs an Appointment object with the given parameters.
@@ -45,6 +69,30 @@ public class Appointment implements CsvCompatible {
         slot.schedule();
     }
 
+    /**
+     * Constructs an Appointment object with a known status and outcome record, such as one restored from a snapshot.
+     * Unlike {@link #Appointment(int, UserId, UserId, AppointmentSlot)}, the slot is not scheduled.
+     * Like a record loaded from a CSV line, the outcome record is kept in its raw form until it is first used.
+     *
+     * @param id the unique identifier of the appointment
+     * @param patientId the user ID of the patient
+     * @param doctorId the user ID of the doctor
+     * @param appointmentStatus the current status of the appointment
+     * @param slot the scheduled time slot of the appointment
+     * @param rawRecord the outcome record of the appointment as encoded by
+     *                  {@link #encodeRecord(String, String, PrescriptionStatus, List, List, List)},
+     *                  or null if it has not been completed
+     */
+    public Appointment(int id, UserId patientId, UserId doctorId, AppointmentStatus appointmentStatus, AppointmentSlot slot, String[] rawRecord) {
+        this.id = id;
+        this.patientId = patientId;
+        this.doctorId = doctorId;
+        this.appointmentStatus = appointmentStatus;
+        this.slot = slot;
+        this.record = null;
+        this.rawRecord = rawRecord;
+    }
+
     /**
      * Constructs an Appointment object by parsing a CSV line. 
      * This line must have exactly 13 elements (columns).
@@ -64,69 +112,104 @@ public class Appointment implements CsvCompatible {
             throw new IOException("Invalid line: expected " + line[0] + " to be an integer.");
         }
         try {
-            this.patientId = new UserId(line[1]);
+            this.patientId = UserId.parse(line[1]);
         } catch (IllegalArgumentException e) {
             throw new IOException("Invalid line: expected " + line[1] + " to be a user ID.");
         }
         try {
-            this.doctorId = new UserId(line[2]);
+            this.doctorId = UserId.parse(line[2]);
         } catch (IllegalArgumentException e) {
             throw new IOException("Invalid line: expected " + line[2] + " to be a user ID.");
         }
         this.appointmentStatus = AppointmentStatus.valueOf(line[3]);
 
         this.slot = new AppointmentSlot(Arrays.copyOfRange(line, 4, 6));
+        this.record = null;
         if (line[6].equals("")) {
-            this.record = null;
+            this.rawRecord = null;
         } else {
-            this.record = new AppointmentOutcomeRecord(Arrays.copyOfRange(line, 6, 13));
-            this.record.setAppointmentId(this.id);
-            this.record.setSlot(this.slot);
+            try {
+                PrescriptionStatus.valueOf(line[8]);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid line: expected " + line[8] + " to be one of 'Pending', 'Dispensed'.");
+            }
+            this.rawRecord = Arrays.copyOfRange(line, 6, 13);
         }
     }
 
     /**
      * Accepts or declines the appointment. Done by the doctor.
      * If declined, the appointment status is set to Declined and the slot is canceled.
+     * Only a pending appointment can be accepted or declined.
      *
      * @param accepted true if the appointment is accepted, false if declined
+     * @return true if the appointment was pending and its status was changed, false otherwise
      */
-    public void doctorAccept(boolean accepted) {
+    public boolean doctorAccept(boolean accepted) {
+        if (this.appointmentStatus != AppointmentStatus.Pending) return false;
         if (!accepted) this.slot.cancel();
         this.appointmentStatus = accepted ? AppointmentStatus.Confirmed : AppointmentStatus.Declined;
+        return true;
     }
 
     /**
      * Marks the appointment as completed and sets the outcome record.
+     * Only a confirmed appointment can be completed; the record of a completed appointment can be replaced.
      *
      * @param record the outcome record associated with the appointment
+     * @return true if the outcome was set, false if the appointment is not confirmed or completed
      */
-    public void complete(AppointmentOutcomeRecord record) {
+    public boolean complete(AppointmentOutcomeRecord record) {
+        if (this.appointmentStatus != AppointmentStatus.Confirmed && this.appointmentStatus != AppointmentStatus.Completed) return false;
         this.appointmentStatus = AppointmentStatus.Completed;
-        this.record = record;
         record.setAppointmentId(this.id);
+        synchronized (recordCache) {
+            this.rawRecord = null;
+            this.record = record;
+            cacheRecord();
+        }
+        return true;
     }
 
     /**
      * Reschedules the appointment with a new time slot. 
      * The appointment status is reset to Pending and the new slot is scheduled.
+     * Only a pending or confirmed appointment can be rescheduled, so the old slot is never freed twice.
      *
      * @param slot the new time slot for the appointment
+     * @return true if the appointment was rescheduled, false if it is no longer pending or confirmed
      */
-    public void patientReschedule(AppointmentSlot slot) {
+    public boolean patientReschedule(AppointmentSlot slot) {
+        if (!isActive()) return false;
         this.slot.cancel();
         this.slot = slot;
         this.appointmentStatus = AppointmentStatus.Pending;
 
         slot.schedule();
+        return true;
     }
 
     /**
      * Cancels the appointment. The appointment status is set to Canceled and the slot is canceled.
+     * Only a pending or confirmed appointment can be canceled, so a slot that has been freed and booked by
+     * another patient is not freed again.
+     *
+     * @return true if the appointment was canceled, false if it is no longer pending or confirmed
      */
-    public void patientCancel() {
+    public boolean patientCancel() {
+        if (!isActive()) return false;
         this.slot.cancel();
         this.appointmentStatus = AppointmentStatus.Canceled;
+        return true;
+    }
+
+    /**
+     * Returns whether the appointment still holds its slot, that is, whether it is pending or confirmed.
+     *
+     * @return true if the appointment is pending or confirmed
+     */
+    public boolean isActive() {
+        return this.appointmentStatus == AppointmentStatus.Pending || this.appointmentStatus == AppointmentStatus.Confirmed;
     }
 
     /**
@@ -176,29 +259,191 @@ public class Appointment implements CsvCompatible {
 
     /**
      * Returns the outcome record for the appointment, if available.
+     * A record that is still in its raw form is decoded first.
      *
      * @return the appointment outcome record, or null if not available
      */
     public AppointmentOutcomeRecord getRecord() {
-        return this.record;
+        synchronized (recordCache) {
+            if (this.record == null && this.rawRecord != null) {
+                try {
+                    this.record = new AppointmentOutcomeRecord(this.rawRecord);
+                } catch (IOException e) {
+                    System.out.println("Error reading outcome record of appointment " + this.id + ": " + e.getMessage());
+                    return null;
+                }
+                this.record.setAppointmentId(this.id);
+                this.record.setSlot(this.slot);
+                this.rawRecord = null;
+            }
+            AppointmentOutcomeRecord record = this.record;
+            if (record != null) cacheRecord();
+            return record;
+        }
+    }
+
+    /**
+     * Returns the outcome record without adding it to the cache of decoded records, so that reading many records
+     * once does not evict the records in use. A record that is still in its raw form is decoded into a copy,
+     * so changes made to it are not kept; use {@link #getRecord()} to change a record.
+     *
+     * @return the appointment outcome record, or null if not available
+     */
+    public AppointmentOutcomeRecord readRecord() {
+        String[] fields;
+        synchronized (recordCache) {
+            if (this.record != null || this.rawRecord == null) return this.record;
+            fields = this.rawRecord;
+        }
+        try {
+            AppointmentOutcomeRecord record = new AppointmentOutcomeRecord(fields);
+            record.setAppointmentId(this.id);
+            record.setSlot(this.slot);
+            return record;
+        } catch (IOException e) {
+            System.out.println("Error reading outcome record of appointment " + this.id + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether the appointment has an outcome record, without decoding it.
+     *
+     * @return true if the appointment has an outcome record
+     */
+    public boolean hasRecord() {
+        synchronized (recordCache) {
+            return this.record != null || this.rawRecord != null;
+        }
+    }
+
+    /**
+     * Returns the prescription status of the outcome record, without decoding it.
+     *
+     * @return the prescription status, or null if the appointment has no outcome record
+     */
+    public PrescriptionStatus getPrescriptionStatus() {
+        synchronized (recordCache) {
+            if (this.record != null) return this.record.getPrescriptionStatus();
+            if (this.rawRecord != null) return PrescriptionStatus.valueOf(this.rawRecord[2]);
+            return null;
+        }
+    }
+
+    /**
+     * Marks the prescription of the outcome record as dispensed, in whichever form the record is currently held,
+     * so the change is kept even if the decoded record is evicted while the prescription is being dispensed.
+     *
+     * @return true if the prescription was marked as dispensed, false if there is no record or it is not pending
+     */
+    public boolean dispensePrescription() {
+        synchronized (recordCache) {
+            if (getPrescriptionStatus() != PrescriptionStatus.Pending) return false;
+            if (this.record != null) {
+                this.record.dispensePrescription();
+            } else {
+                String[] fields = this.rawRecord.clone();
+                fields[2] = PrescriptionStatus.Dispensed.name();
+                this.rawRecord = fields;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Sets how many decoded outcome records are kept in memory.
+     * Records beyond this number are encoded back into their raw form, least recently used first.
+     *
+     * @param size the maximum number of decoded records, at least 1
+     */
+    public static void setRecordCacheSize(int size) {
+        if (size < 1) throw new IllegalArgumentException("Record cache size must be at least 1.");
+        synchronized (recordCache) {
+            recordCacheSize = size;
+            while (recordCache.size() > recordCacheSize) {
+                Map.Entry<Appointment, AppointmentOutcomeRecord> eldest = recordCache.entrySet().iterator().next();
+                eldest.getKey().evictRecord();
+                recordCache.remove(eldest.getKey());
+            }
+        }
+    }
+
+    /**
+     * Marks the decoded outcome record as the most recently used, evicting the least recently used record if the cache is full.
+     */
+    private void cacheRecord() {
+        synchronized (recordCache) {
+            recordCache.put(this, this.record);
+        }
+    }
+
+    /**
+     * Encodes the decoded outcome record back into its raw form and drops the decoded record.
+     */
+    private void evictRecord() {
+        this.rawRecord = encodeRecord(this.record);
+        this.record = null;
+    }
+
+    /**
+     * Encodes an outcome record into the seven fields it occupies in a CSV line, without quoting.
+     *
+     * @param record the outcome record
+     * @return the service type, consultation notes, prescription status, medicine names, quantities,
+     *         diagnoses and treatment plans of the record
+     */
+    private static String[] encodeRecord(AppointmentOutcomeRecord record) {
+        return encodeRecord(
+            record.getServiceType(), record.getConsultationNotes(), record.getPrescriptionStatus(),
+            record.getPrescription(), record.getDiagnoses(), record.getTreatmentPlan()
+        );
+    }
+
+    /**
+     * Encodes the fields of an outcome record into the raw form kept until the record is first used,
+     * the seven fields it occupies in a CSV line, without quoting.
+     *
+     * @param serviceType the service type
+     * @param consultationNotes the consultation notes
+     * @param prescriptionStatus the prescription status
+     * @param prescription the prescribed medicines
+     * @param diagnoses the diagnoses
+     * @param treatmentPlan the treatment plans
+     * @return the service type, consultation notes, prescription status, medicine names, quantities,
+     *         diagnoses and treatment plans of the record
+     */
+    public static String[] encodeRecord(
+        String serviceType, String consultationNotes, PrescriptionStatus prescriptionStatus,
+        List<Prescription> prescription, List<String> diagnoses, List<String> treatmentPlan
+    ) {
+        return new String[] {
+            serviceType,
+            consultationNotes,
+            prescriptionStatus.toString(),
+            prescription.stream().map(Prescription::getName).collect(Collectors.joining("::")),
+            prescription.stream().map((item) -> String.valueOf(item.getQuantity())).collect(Collectors.joining("::")),
+            String.join("::", diagnoses),
+            String.join("::", treatmentPlan)
+        };
     }
 
     /**
      * Converts from Appointment object to a CSV string format.
      * If the appointment has an outcome record, all related information will be included in the CSV string.
+     * Free-text fields are quoted, so consultation notes and diagnoses may contain commas.
      *
      * @return a CSV string representing the appointment
      */
     public String toCsv() {
-        if (this.record != null) return String.format(
-            "%d,%s,%s,%s,%b,%s,%s,%s,%s,%s,%s,%s,%s",
+        String[] fields;
+        synchronized (recordCache) {
+            fields = this.record != null ? encodeRecord(this.record) : this.rawRecord;
+        }
+        if (fields != null) return String.format(
+            "%d,%s,%s,%s,%b,%s,%s",
             id, patientId, doctorId, appointmentStatus.toString(),
             slot.getAvailability(), slot.getDate(),
-            record.getServiceType(), record.getConsultationNotes(), record.getPrescriptionStatus().toString(),
-            record.getPrescription().stream().map(Prescription::getName).collect(Collectors.joining("::")),
-            record.getPrescription().stream().map((prescription) -> String.valueOf(prescription.getQuantity())).collect(Collectors.joining("::")),
-            record.getDiagnoses().stream().collect(Collectors.joining("::")),
-            record.getTreatmentPlan().stream().collect(Collectors.joining("::"))
+            Arrays.stream(fields).map(CsvCompatible::quote).collect(Collectors.joining(","))
         );
         else return String.format(
             "%d,%s,%s,%s,%b,%s,,,,,,,",
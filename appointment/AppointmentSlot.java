@@ -7,13 +7,16 @@ import java.time.format.DateTimeParseException;
 /**
  * Represents a specific time slot for an appointment, the scheduled date and availability status.
  * The availability status show whether the slot is available for scheduling or not.
+ * A slot of a doctor's {@link Schedule} keeps its availability in the schedule, so that every slot object for the
+ * same time agrees.
  * @author NATANAEL TAN TIONG OON
  * @version 1.0
  * @since 2024-11-21
  */
 public class AppointmentSlot {
     private LocalDateTime date;
-    private boolean availability;
+    private volatile boolean availability;
+    private volatile Schedule schedule;
 
     /**
      * Constructs an AppointmentSlot with the specified date and sets the availability to true.
@@ -25,6 +28,28 @@ public class AppointmentSlot {
         this.availability = true;
     }
 
+    /**
+     * Constructs an AppointmentSlot with the specified date and availability.
+     *
+     * @param date the scheduled date and time of the appointment
+     * @param availability whether the slot is available for scheduling
+     */
+    public AppointmentSlot(LocalDateTime date, boolean availability) {
+        this.date = date;
+        this.availability = availability;
+    }
+
+    /**
+     * Constructs an AppointmentSlot of a schedule, whose availability is kept in the schedule.
+     *
+     * @param date the scheduled date and time of the appointment
+     * @param schedule the schedule the slot belongs to
+     */
+    AppointmentSlot(LocalDateTime date, Schedule schedule) {
+        this.date = date;
+        this.schedule = schedule;
+    }
+
     /**
      * Constructs an AppointmentSlot from a CSV line. 
      * The first element is the availability status (true/false) and the second element is the date-time string.
@@ -57,21 +82,38 @@ public class AppointmentSlot {
      * @return true if the slot is available, if not false
      */
     public boolean getAvailability() {
+        if (this.schedule != null) return this.schedule.isAvailable(this.date);
         return this.availability;
     }
 
+    /**
+     * Takes the slot for an appointment if it is still available, as a single step.
+     * Of any number of sessions trying to take the same slot, exactly one succeeds.
+     *
+     * @return true if the slot was available and is now taken, false if it was already taken
+     */
+    public boolean tryReserve() {
+        Schedule schedule = this.schedule;
+        if (schedule != null) return schedule.tryReserve(this.date);
+        synchronized (this) {
+            if (!this.availability) return false;
+            this.availability = false;
+            return true;
+        }
+    }
+
     /**
      * Marks the appointment slot as scheduled by setting the availability to false.
      */
     public void schedule() {
-        this.availability = false;
+        setAvailability(false);
     }
 
     /**
      * Marks the appointment slot as available by setting the availability to true.
      */
     public void cancel() {
-        this.availability = true;
+        setAvailability(true);
     }
 
     /**
@@ -81,5 +123,15 @@ public class AppointmentSlot {
      */
     public void setAvailability(boolean availability){
         this.availability = availability;
+        if (this.schedule != null) this.schedule.setAvailable(this.date, availability);
+    }
+
+    /**
+     * Links the slot to a schedule, which keeps its availability from then on.
+     *
+     * @param schedule the schedule the slot belongs to
+     */
+    void bind(Schedule schedule) {
+        this.schedule = schedule;
     }
 }
@@ -0,0 +1,54 @@
+package appointment;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+/**
+ * Represents the outcome of booking a series of appointments at once.
+ * Either every appointment was booked, or none were and the conflicting times are listed.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class BookingResult {
+    private ArrayList<Appointment> appointments;
+    private ArrayList<LocalDateTime> conflicts;
+
+    /**
+     * Constructs a BookingResult.
+     *
+     * @param appointments the appointments that were booked, or an empty list if none were
+     * @param conflicts the times that could not be booked, or an empty list if every appointment was booked
+     */
+    public BookingResult(ArrayList<Appointment> appointments, ArrayList<LocalDateTime> conflicts) {
+        this.appointments = appointments;
+        this.conflicts = conflicts;
+    }
+
+    /**
+     * Returns whether every appointment was booked.
+     *
+     * @return true if the series was booked, false if nothing was booked
+     */
+    public boolean isBooked() {
+        return this.conflicts.isEmpty();
+    }
+
+    /**
+     * Returns the appointments that were booked.
+     *
+     * @return the appointments, in order of time, or an empty list if none were booked
+     */
+    public ArrayList<Appointment> getAppointments() {
+        return this.appointments;
+    }
+
+    /**
+     * Returns the times that could not be booked, because they are taken, are outside the schedule
+     * or are not the start of a slot.
+     *
+     * @return the conflicting times, in order
+     */
+    public ArrayList<LocalDateTime> getConflicts() {
+        return this.conflicts;
+    }
+}
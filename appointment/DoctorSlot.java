@@ -0,0 +1,43 @@
+package appointment;
+
+import user.UserId;
+
+/**
+ * Represents an available appointment slot together with the doctor it belongs to.
+ * It is the result of searching for available slots across doctors.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class DoctorSlot {
+    private UserId doctorId;
+    private AppointmentSlot slot;
+
+    /**
+     * Constructs a DoctorSlot with the specified doctor and slot.
+     *
+     * @param doctorId the unique ID of the doctor
+     * @param slot the appointment slot in the doctor's schedule
+     */
+    public DoctorSlot(UserId doctorId, AppointmentSlot slot) {
+        this.doctorId = doctorId;
+        this.slot = slot;
+    }
+
+    /**
+     * Returns the unique ID of the doctor.
+     *
+     * @return the ID of the doctor
+     */
+    public UserId getDoctorId() {
+        return this.doctorId;
+    }
+
+    /**
+     * Returns the appointment slot.
+     *
+     * @return the slot in the doctor's schedule
+     */
+    public AppointmentSlot getSlot() {
+        return this.slot;
+    }
+}
@@ -0,0 +1,83 @@
+package appointment;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+/**
+ * Represents a series of visits at the same time of day, a fixed number of days apart, such as weekly
+ * physiotherapy for 12 weeks.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class RecurrenceRule {
+    private LocalDateTime first;
+    private int intervalDays;
+    private int count;
+
+    /**
+     * Constructs a RecurrenceRule.
+     *
+     * @param first the date and time of the first visit
+     * @param intervalDays the number of days between visits
+     * @param count the number of visits
+     * @throws IllegalArgumentException if the interval or the number of visits is less than 1
+     */
+    public RecurrenceRule(LocalDateTime first, int intervalDays, int count) throws IllegalArgumentException {
+        if (intervalDays < 1) throw new IllegalArgumentException("Invalid interval: expected at least 1 day.");
+        if (count < 1) throw new IllegalArgumentException("Invalid count: expected at least 1 visit.");
+        this.first = first;
+        this.intervalDays = intervalDays;
+        this.count = count;
+    }
+
+    /**
+     * Constructs a RecurrenceRule for visits one week apart.
+     *
+     * @param first the date and time of the first visit
+     * @param weeks the number of visits
+     * @return the rule
+     */
+    public static RecurrenceRule weekly(LocalDateTime first, int weeks) {
+        return new RecurrenceRule(first, 7, weeks);
+    }
+
+    /**
+     * Returns the date and time of every visit.
+     *
+     * @return the times of the visits, in order
+     */
+    public ArrayList<LocalDateTime> getOccurrences() {
+        ArrayList<LocalDateTime> times = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            times.add(first.plusDays((long) i * intervalDays));
+        }
+        return times;
+    }
+
+    /**
+     * Returns the date and time of the first visit.
+     *
+     * @return the time of the first visit
+     */
+    public LocalDateTime getFirst() {
+        return this.first;
+    }
+
+    /**
+     * Returns the number of days between visits.
+     *
+     * @return the interval in days
+     */
+    public int getIntervalDays() {
+        return this.intervalDays;
+    }
+
+    /**
+     * Returns the number of visits.
+     *
+     * @return the number of visits
+     */
+    public int getCount() {
+        return this.count;
+    }
+}
@@ -3,48 +3,91 @@ package appointment;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
 
 /**
- * Represents a schedule of appointment slots for a specific date range.
- * This class manages the availability of appointment slots on each day within the given start and end dates.
+ * Represents a rolling schedule of appointment slots, from today up to a number of days ahead.
+ * This class manages the availability of appointment slots on each day within that window, which moves forward
+ * with the current date.
+ *
+ * Each day has {@link #SLOTS_PER_DAY} half-hour positions from 08:00, and its availability is a bitmap with one bit
+ * per position, set while the slot is available. Which positions are open on a day depends only on its day of the
+ * week, so no per-slot objects are kept. {@link AppointmentSlot} objects are created only for booked slots or when
+ * a view asks for them; they read and write their availability through this schedule.
+ *
+ * Days are materialized the first time they are touched. Days that still match their opening hours can be rebuilt
+ * at any time, so at most a fixed number of them are kept, evicting the least recently used. Days with a booking or
+ * a change of availability are kept until they match their opening hours again.
+ *
+ * The number of taken slots in each month is counted as slots are booked and freed, so the number of available slots
+ * in a month is known without going through its days.
+ *
+ * The earliest available slot from now is kept up to date as slots are booked and freed, and is reported to the
+ * {@link SlotFinder} the schedule belongs to, if any.
+ *
+ * This class is thread-safe. Its state is guarded by its own lock, and a slot is taken with {@link #tryReserve},
+ * which checks that the slot is available and takes it as one step, so two sessions cannot book the same slot.
+ * The finder is told of changes after the lock is released, since it calls back into the schedule under its own lock.
  * @author NATANAEL TAN TIONG OON
  * @version 1.0
  * @since 2024-11-21
  */
 public class Schedule {
-    private LocalDate startDate, endDate;
-    private HashMap<LocalDate, ArrayList<AppointmentSlot>> calendar;
+    /**
+     * Number of half-hour positions in a day, from 08:00 to 16:00.
+     */
+    public static final int SLOTS_PER_DAY = 17;
 
     /**
-     * Constructs a Schedule for the given date range (from startDate to endDate).
-     * It initializes the calendar with appointment slots for each day within the range.
-     *
-     * @param startDate the starting date of the schedule
-     * @param endDate the ending date of the schedule
+     * Default number of days after today that can be viewed and booked.
      */
-    public Schedule(LocalDate startDate, LocalDate endDate) {
-        this.startDate = startDate;
-        this.endDate = endDate;
+    public static final int DEFAULT_HORIZON_DAYS = 365;
 
-        int numMonths = (int)startDate.until(endDate).toTotalMonths();
-        this.calendar = new HashMap<>();
+    /**
+     * Default number of unchanged days kept in memory.
+     */
+    public static final int DEFAULT_RESIDENT_DAYS = 62;
 
-        for (int i = 0; i <= numMonths; i++) {
-            LocalDate currentMonth = startDate.plusMonths(i);
+    // 0800-1300, and 1400-1630 for weekdays
+    // 0800-1230 for saturday
+    // no slot on sunday
+    private static final int WEEKDAY_SLOTS = 0x1f3ff;
+    private static final int SATURDAY_SLOTS = 0x1ff;
+    private static final int WEEK_SLOTS = 5 * Integer.bitCount(WEEKDAY_SLOTS) + Integer.bitCount(SATURDAY_SLOTS);
 
-            int startMonthDate = 1;
-            int endMonthDate = currentMonth.lengthOfMonth();
-            if (i == 0) startMonthDate = startDate.getDayOfMonth();
-            if (i == numMonths) endMonthDate = endDate.getDayOfMonth();
+    private int horizonDays;
+    private LinkedHashMap<LocalDate, Integer> resident;
+    private HashMap<LocalDate, Integer> changed;
+    private HashMap<YearMonth, Integer> taken;
+    private LocalDateTime nextFree;
+    private LocalDate nextFreeDate;
+    private volatile SlotFinder finder;
 
-            for (int j = startMonthDate; j <= endMonthDate; j++) {
-                LocalDate date = currentMonth.withDayOfMonth(j);
-                ArrayList<AppointmentSlot> slots = initSlots(date);
-                calendar.put(date, slots);
+    /**
+     * Constructs a Schedule that runs from today to the given number of days ahead.
+     * Every slot starts out available.
+     *
+     * @param horizonDays the number of days after today that can be viewed and booked
+     * @param maxResidentDays the maximum number of unchanged days kept in memory
+     */
+    public Schedule(int horizonDays, int maxResidentDays) {
+        this.horizonDays = horizonDays;
+        this.changed = new HashMap<>();
+        this.taken = new HashMap<>();
+        this.resident = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LocalDate, Integer> eldest) {
+                return size() > maxResidentDays;
             }
-        }
+        };
     }
 
     /**
@@ -55,56 +98,100 @@ public class Schedule {
      * @param showOnlyAvailable whether to show only available slots
      */
     public void printMonth(LocalDate month, boolean showOnlyAvailable) {
-        System.out.printf(
-            "%s %d\n\n",
-            month.getMonth().toString().substring(0, 3),
-            month.getYear()
-        );
+        System.out.print(renderMonth(month, showOnlyAvailable));
+    }
+
+    /**
+     * Renders the calendar of the specified month, marking the days with slots and ending with the number of
+     * available slots in the month.
+     * Optionally, only days with available slots are marked.
+     *
+     * @param month the month to render
+     * @param showOnlyAvailable whether to mark only days with available slots
+     * @return the calendar, one line per week
+     */
+    public synchronized String renderMonth(LocalDate month, boolean showOnlyAvailable) {
+        StringBuilder grid = new StringBuilder(400);
+        grid.append(month.getMonth().toString(), 0, 3).append(' ').append(month.getYear()).append("\n\n");
 
         for (int i = 1; i <= 7; i++) {
-            System.out.printf("%s  ", DayOfWeek.of(i).toString().substring(0, 3));
+            grid.append(DayOfWeek.of(i).toString(), 0, 3).append("  ");
         }
-        System.out.print("\n");
+        grid.append('\n');
 
         LocalDate start = month.withDayOfMonth(1);
         int startDayOfWeek = start.getDayOfWeek().getValue();
 
         // initial day padding
         for (int i = 1; i < startDayOfWeek; i++) {
-            System.out.print("     ");
+            grid.append("     ");
         }
 
         int numDays = month.lengthOfMonth();
         for (int i = 1; i <= numDays; i++) {
-            LocalDate day = month.withDayOfMonth(i);
-            ArrayList<AppointmentSlot> slots = calendar.get(day);
-            if (slots == null) {
-                System.out.print("     ");
+            LocalDate day = start.plusDays(i - 1);
+            if (!inRange(day)) {
+                grid.append("     ");
             } else {
-                int numSlots = 0;
-                for (AppointmentSlot slot : slots) {
-                    if (!showOnlyAvailable || slot.getAvailability()) numSlots++;
-                }
-                if (numSlots > 0) {
-                    System.out.print(String.format("%-5d", day.getDayOfMonth()));
+                int slots = showOnlyAvailable ? getDay(day) : openSlots(day);
+                if (slots != 0) {
+                    grid.append(i).append(i < 10 ? "    " : "   ");
                 } else {
-                    System.out.print("-    ");
+                    grid.append("-    ");
                 }
             }
 
-            if ((startDayOfWeek + i - 1) % 7 == 0 && i != numDays) System.out.print("\n");
+            if ((startDayOfWeek + i - 1) % 7 == 0 && i != numDays) grid.append('\n');
+        }
+        grid.append('\n');
+        grid.append(countAvailable(YearMonth.from(month))).append(" slots available\n");
+        return grid.toString();
+    }
+
+    /**
+     * Returns the number of available slots on the given date.
+     *
+     * @param date the date
+     * @return the number of available slots, or 0 if the date is outside the schedule
+     */
+    public synchronized int countAvailable(LocalDate date) {
+        if (!inRange(date)) return 0;
+        return Integer.bitCount(getDay(date));
+    }
+
+    /**
+     * Returns the number of available slots in the given month, counting only the days within the schedule.
+     * Months entirely within the schedule are counted from their opening hours and taken slots without going
+     * through their days.
+     *
+     * @param month the month
+     * @return the number of available slots in the month
+     */
+    public synchronized int countAvailable(YearMonth month) {
+        LocalDate first = month.atDay(1), last = month.atEndOfMonth();
+        LocalDate start = getStartDate(), end = getEndDate();
+        if (!first.isBefore(start) && !last.isAfter(end)) {
+            return countOpen(first, last) - taken.getOrDefault(month, 0);
+        }
+
+        // the first and last months of the schedule are partly outside it
+        int count = 0;
+        for (LocalDate day = first.isBefore(start) ? start : first; !day.isAfter(last) && !day.isAfter(end); day = day.plusDays(1)) {
+            count += Integer.bitCount(getDay(day));
         }
-        System.out.print("\n");
+        return count;
     }
 
     /**
      * Returns the list of appointment slots for the given date.
+     * The slots are created on each call and reflect the schedule as it changes.
      *
      * @param date the date for which the slots are requested
-     * @return a list of appointment slots for the specified date
+     * @return a list of appointment slots for the specified date, or null if the date is outside the schedule
      */
-    public ArrayList<AppointmentSlot> getSlots(LocalDate date) {
-        return this.calendar.get(date);
+    public synchronized ArrayList<AppointmentSlot> getSlots(LocalDate date) {
+        if (!inRange(date)) return null;
+        return toSlots(date, openSlots(date));
     }
 
     /**
@@ -114,74 +201,376 @@ public class Schedule {
      * @param date the date for which the available slots are requested
      * @return a list of available appointment slots for the specified date, or null if no slots exist
      */
-    public ArrayList<AppointmentSlot> getAvailableSlots(LocalDate date) {
-        ArrayList<AppointmentSlot> allSlots = this.calendar.get(date);
-        if (allSlots == null) return null;
-        ArrayList<AppointmentSlot> slots = new ArrayList<>();
-        for (AppointmentSlot slot : allSlots) {
-            if (slot.getAvailability()) slots.add(slot);
+    public synchronized ArrayList<AppointmentSlot> getAvailableSlots(LocalDate date) {
+        if (!inRange(date)) return null;
+        return toSlots(date, getDay(date));
+    }
+
+    /**
+     * Returns the slot starting at the given time.
+     *
+     * @param time the start time of the slot
+     * @return the slot, or null if the time is outside the schedule or is not the start of a slot
+     */
+    public synchronized AppointmentSlot getSlot(LocalDateTime time) {
+        if (!inRange(time.toLocalDate()) || position(time) < 0) return null;
+        return new AppointmentSlot(time, this);
+    }
+
+    /**
+     * Takes every slot starting at the given times as a single step, if all of them are available.
+     * If any of them is not, none are taken and every one that is not is returned.
+     *
+     * @param times the start times of the slots
+     * @return the times that are taken, outside the schedule or not the start of a slot, in the order given;
+     *         empty if every slot was taken
+     */
+    public ArrayList<LocalDateTime> tryReserveAll(Collection<LocalDateTime> times) {
+        ArrayList<LocalDateTime> conflicts = new ArrayList<>();
+        boolean moved = false;
+        synchronized (this) {
+            HashSet<LocalDateTime> seen = new HashSet<>();
+            for (LocalDateTime time : times) {
+                if (!inRange(time.toLocalDate()) || !isAvailable(time) || !seen.add(time)) conflicts.add(time);
+            }
+            if (!conflicts.isEmpty()) return conflicts;
+            for (LocalDateTime time : times) {
+                moved |= write(time, false);
+            }
+        }
+        if (moved) reportNextFree();
+        return conflicts;
+    }
+
+    /**
+     * Links a booked appointment slot to this schedule, such as one loaded with its appointment.
+     * The slot is marked unavailable here, and from then on reads and writes its availability through this schedule,
+     * so canceling the appointment frees the slot. Slots that are available, that are in the past, or that are not
+     * slots of this schedule are left as they are.
+     *
+     * @param slot the slot of an appointment with this schedule's doctor
+     */
+    public void bind(AppointmentSlot slot) {
+        LocalDateTime time = slot.getDate();
+        if (slot.getAvailability() || time.toLocalDate().isBefore(LocalDate.now()) || position(time) < 0) return;
+        slot.bind(this);
+        setAvailable(time, false);
+    }
+
+    /**
+     * Returns the start time of the earliest available slot at or after the given time.
+     * Searching from before the earliest available slot from now takes constant time; later times are found by
+     * checking the days from that time on.
+     *
+     * @param after the earliest start time to consider
+     * @return the start time of the slot, or null if no slot is available from that time to the end of the schedule
+     */
+    public LocalDateTime nextAvailable(LocalDateTime after) {
+        LocalDateTime head = nextFree();
+        if (head == null || !after.isAfter(head)) return head;
+        return scan(after);
+    }
+
+    /**
+     * Returns the start time of the earliest available slot from now, computing it again if the day has changed
+     * or the slot has started since it was last found.
+     *
+     * @return the start time of the slot, or null if no slot is available until the end of the schedule
+     */
+    LocalDateTime nextFree() {
+        LocalDateTime result;
+        boolean moved = false;
+        synchronized (this) {
+            LocalDateTime now = LocalDateTime.now();
+            if (nextFreeDate == null || !nextFreeDate.equals(now.toLocalDate()) || nextFree != null && nextFree.isBefore(now)) {
+                moved = updateNextFree(scan(now));
+            }
+            result = nextFree;
+        }
+        if (moved) reportNextFree();
+        return result;
+    }
+
+    /**
+     * Returns the earliest available slot from now as last found, without checking whether it is still current.
+     *
+     * @return the start time of the slot, or null if there is none or it has not been found yet
+     */
+    synchronized LocalDateTime getNextFree() {
+        return nextFree;
+    }
+
+    /**
+     * Finds the start time of the earliest available slot at or after the given time, by checking each day from
+     * that time to the end of the schedule.
+     *
+     * @param from the earliest start time to consider
+     * @return the start time of the slot, or null if there is none
+     */
+    synchronized LocalDateTime scan(LocalDateTime from) {
+        LocalDate date = from.toLocalDate();
+        int first = firstPosition(from);
+        if (date.isBefore(getStartDate())) {
+            date = getStartDate();
+            first = 0;
+        }
+
+        for (LocalDate end = getEndDate(); !date.isAfter(end); date = date.plusDays(1), first = 0) {
+            if (first >= SLOTS_PER_DAY) continue;
+            int slots = getDay(date) & (-1 << first);
+            if (slots != 0) {
+                int position = Integer.numberOfTrailingZeros(slots);
+                return date.atTime(8 + position / 2, position % 2 * 30);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the start time of the first slot in the opening hours at or after the given time, whether or not it
+     * is available. No schedule has an available slot before it.
+     *
+     * @param from the earliest start time to consider
+     * @return the start time of the slot
+     */
+    static LocalDateTime firstOpen(LocalDateTime from) {
+        LocalDate date = from.toLocalDate();
+        for (int first = firstPosition(from); ; date = date.plusDays(1), first = 0) {
+            int slots = first >= SLOTS_PER_DAY ? 0 : openSlots(date) & (-1 << first);
+            if (slots != 0) {
+                int position = Integer.numberOfTrailingZeros(slots);
+                return date.atTime(8 + position / 2, position % 2 * 30);
+            }
+        }
+    }
+
+    /**
+     * Returns the position within its day of the first slot starting at or after the given time.
+     *
+     * @param from the earliest start time to consider
+     * @return the position, which is {@link #SLOTS_PER_DAY} or more if the time is after the last slot of the day
+     */
+    private static int firstPosition(LocalDateTime from) {
+        // round up to the next half hour
+        int minutes = (from.getHour() - 8) * 60 + from.getMinute();
+        if (from.getSecond() != 0 || from.getNano() != 0) minutes++;
+        return Math.max(0, (minutes + 29) / 30);
+    }
+
+    /**
+     * Sets the finder to report the earliest available slot to.
+     *
+     * @param finder the finder, or null to stop reporting
+     */
+    void setFinder(SlotFinder finder) {
+        this.finder = finder;
+    }
+
+    /**
+     * Checks whether the slot starting at the given time is available.
+     *
+     * @param time the start time of the slot
+     * @return true if the slot is available, false if it is taken or is not a slot of this schedule
+     */
+    synchronized boolean isAvailable(LocalDateTime time) {
+        int position = position(time);
+        return position >= 0 && (getDay(time.toLocalDate()) & (1 << position)) != 0;
+    }
+
+    /**
+     * Marks the slot starting at the given time as available or unavailable.
+     * Times that are not slots of this schedule are ignored.
+     *
+     * @param time the start time of the slot
+     * @param availability whether the slot is available
+     */
+    void setAvailable(LocalDateTime time, boolean availability) {
+        boolean moved;
+        synchronized (this) {
+            moved = write(time, availability);
         }
+        if (moved) reportNextFree();
+    }
+
+    /**
+     * Takes the slot starting at the given time if it is available, as a single step.
+     * Of any number of sessions trying to take the same slot, exactly one succeeds.
+     *
+     * @param time the start time of the slot
+     * @return true if the slot was available and is now taken, false if it was already taken or is not a slot
+     *         of this schedule
+     */
+    boolean tryReserve(LocalDateTime time) {
+        boolean moved;
+        synchronized (this) {
+            if (!isAvailable(time)) return false;
+            moved = write(time, false);
+        }
+        if (moved) reportNextFree();
+        return true;
+    }
+
+    /**
+     * Marks the slot starting at the given time as available or unavailable, while holding the lock.
+     *
+     * @param time the start time of the slot
+     * @param availability whether the slot is available
+     * @return true if the earliest available slot from now changed
+     */
+    private boolean write(LocalDateTime time, boolean availability) {
+        int position = position(time);
+        if (position < 0) return false;
+        LocalDate date = time.toLocalDate();
+        int old = getDay(date);
+        int slots = availability ? old | 1 << position : old & ~(1 << position);
+        if (slots == old) return false;
+        taken.merge(YearMonth.from(date), availability ? -1 : 1, (a, b) -> a + b == 0 ? null : a + b);
+
+        if (slots == openSlots(date)) {
+            changed.remove(date);
+            resident.put(date, slots);
+        } else {
+            resident.remove(date);
+            changed.put(date, slots);
+        }
+
+        if (nextFreeDate == null) return false;
+        if (availability) {
+            if ((nextFree == null || time.isBefore(nextFree)) && inRange(date) && !time.isBefore(LocalDateTime.now())) {
+                return updateNextFree(time);
+            }
+        } else if (time.equals(nextFree)) {
+            return updateNextFree(scan(time.plusMinutes(30)));
+        }
+        return false;
+    }
+
+    /**
+     * Records the earliest available slot from now, while holding the lock.
+     *
+     * @param time the start time of the slot, or null if there is none
+     * @return true if the slot changed
+     */
+    private boolean updateNextFree(LocalDateTime time) {
+        boolean moved = !Objects.equals(this.nextFree, time);
+        this.nextFree = time;
+        this.nextFreeDate = LocalDate.now();
+        return moved;
+    }
+
+    /**
+     * Tells the finder that the earliest available slot from now has changed. It reads the slot back itself,
+     * so reports that arrive out of order still leave it with the latest slot.
+     */
+    private void reportNextFree() {
+        SlotFinder finder = this.finder;
+        if (finder != null) finder.update(this);
+    }
+
+    /**
+     * Returns the available positions of a day, materializing it from its opening hours if it is not in memory.
+     *
+     * @param date the date
+     * @return the available positions of the day, one bit per position
+     */
+    private int getDay(LocalDate date) {
+        Integer slots = changed.get(date);
+        if (slots == null) slots = resident.computeIfAbsent(date, Schedule::openSlots);
         return slots;
     }
 
     /**
-     * Initializes the appointment slots for a specific day.
-     * The slots are created based on the day of the week and predefined working hours.
-     * 
+     * Returns the positions that are open on a day, one bit per position, based on the day of the week.
      * Weekdays have slots from 08:00-13:00 and 14:00-16:30.
      * Saturdays have slots from 08:00-12:30.
      * Sundays have no available slots.
      *
-     * @param day the date for which the appointment slots are to be initialized
-     * @return a list of appointment slots for the specified day
+     * @param day the date
+     * @return the open positions of the day
      */
-    private ArrayList<AppointmentSlot> initSlots(LocalDate day) {
-        ArrayList<AppointmentSlot> slots = new ArrayList<AppointmentSlot>();
-
-        // 0800-1300, and 1400-1630 for weekdays
-        // 0800-1230 for saturday
-        // no slot on sunday
-
-        int lastSlot;
+    private static int openSlots(LocalDate day) {
         switch (day.getDayOfWeek()) {
             case SUNDAY:
-                lastSlot = 0;
-                break;
+                return 0;
             case SATURDAY:
-                lastSlot = 9;
-                break;
+                return SATURDAY_SLOTS;
             default:
-                lastSlot = 17;
-                break;
+                return WEEKDAY_SLOTS;
         }
+    }
 
-        for (int i = 0; i < lastSlot; i++) {
-            int hour = i / 2 + 8;
-            int minute = i % 2 * 30;
-            if (hour == 13) continue;
-            LocalDateTime time = day.atTime(hour, minute);
-            slots.add(new AppointmentSlot(time));
+    /**
+     * Returns the number of slots in the opening hours from one date to another, inclusive.
+     *
+     * @param first the first date
+     * @param last the last date
+     * @return the number of open slots
+     */
+    private static int countOpen(LocalDate first, LocalDate last) {
+        int days = (int) ChronoUnit.DAYS.between(first, last) + 1;
+        int count = days / 7 * WEEK_SLOTS;
+        for (LocalDate day = first.plusDays(days / 7 * 7); !day.isAfter(last); day = day.plusDays(1)) {
+            count += Integer.bitCount(openSlots(day));
         }
+        return count;
+    }
 
-        return slots;
+    /**
+     * Creates a slot linked to this schedule for each set bit of a day.
+     *
+     * @param date the date
+     * @param slots the positions to create slots for, one bit per position
+     * @return the slots, in order of time
+     */
+    private ArrayList<AppointmentSlot> toSlots(LocalDate date, int slots) {
+        ArrayList<AppointmentSlot> result = new ArrayList<>(Integer.bitCount(slots));
+        while (slots != 0) {
+            int position = Integer.numberOfTrailingZeros(slots);
+            slots &= slots - 1;
+            result.add(new AppointmentSlot(date.atTime(8 + position / 2, position % 2 * 30), this));
+        }
+        return result;
     }
 
+    /**
+     * Checks whether a date is within the schedule, from today to the horizon.
+     *
+     * @param date the date
+     * @return true if the date can be viewed and booked
+     */
+    private boolean inRange(LocalDate date) {
+        return !date.isBefore(getStartDate()) && !date.isAfter(getEndDate());
+    }
+
+    /**
+     * Returns the position within its day of the slot starting at the given time.
+     *
+     * @param time the start time of the slot
+     * @return the position, or -1 if the time is not the start of an open slot
+     */
+    private static int position(LocalDateTime time) {
+        if (time.getMinute() % 30 != 0 || time.getSecond() != 0 || time.getNano() != 0) return -1;
+        int position = (time.getHour() - 8) * 2 + time.getMinute() / 30;
+        if (position < 0 || position >= SLOTS_PER_DAY) return -1;
+        if ((openSlots(time.toLocalDate()) & (1 << position)) == 0) return -1;
+        return position;
+    }
 
     /**
-     * Returns the start date of the schedule.
+     * Returns the start date of the schedule, which is today.
      *
      * @return the start date of the schedule
      */
     public LocalDate getStartDate() {
-        return this.startDate;
+        return LocalDate.now();
     }
 
     /**
-     * Returns the end date of the schedule.
+     * Returns the end date of the schedule, the horizon after today.
      *
      * @return the end date of the schedule
      */
     public LocalDate getEndDate() {
-        return this.endDate;
+        return LocalDate.now().plusDays(this.horizonDays);
     }
 }
@@ -0,0 +1,191 @@
+package appointment;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+import user.UserId;
+
+/**
+ * Finds the earliest available appointment slots across the schedules of many doctors.
+ *
+ * Each schedule reports the earliest available slot from now whenever it changes, and the doctors are kept in a
+ * sorted set by that time. A search merges the doctors in that order, taking the next slot of a doctor from their
+ * schedule only once their previous slot has been returned, so finding the first few slots does not depend on the
+ * number of doctors or on how far ahead the schedules run. Doctors whose next slot is before the search time are
+ * only looked up in their schedules once no slot can come before theirs.
+ *
+ * This class is thread-safe. A search holds the finder's lock while it reads the schedules, so schedules never
+ * call into the finder while holding their own lock.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class SlotFinder {
+    private static final Comparator<Entry> ORDER = Comparator
+        .comparing((Entry entry) -> entry.time)
+        .thenComparing(entry -> entry.doctor)
+        .thenComparing(entry -> !entry.exact);
+
+    private TreeSet<Entry> index;
+    private HashMap<Schedule, Entry> entries;
+    private HashSet<Schedule> full;
+
+    /**
+     * The next available slot of a doctor.
+     */
+    private static class Entry {
+        private final UserId doctorId;
+        private final String doctor;
+        private final Schedule schedule;
+        private final LocalDateTime time;
+        private final boolean exact;
+
+        /**
+         * Constructs an Entry for a known slot.
+         *
+         * @param doctorId the unique ID of the doctor, or null for a search key
+         * @param schedule the schedule of the doctor
+         * @param time the start time of the slot, or null if the doctor has no available slot
+         */
+        private Entry(UserId doctorId, Schedule schedule, LocalDateTime time) {
+            this(doctorId, schedule, time, true);
+        }
+
+        /**
+         * Constructs an Entry.
+         *
+         * @param doctorId the unique ID of the doctor, or null for a search key
+         * @param schedule the schedule of the doctor
+         * @param time the start time of the slot, or the earliest it can be if it is not exact
+         * @param exact whether the time is that of an available slot, rather than a lower bound
+         */
+        private Entry(UserId doctorId, Schedule schedule, LocalDateTime time, boolean exact) {
+            this.doctorId = doctorId;
+            this.doctor = doctorId == null ? "" : doctorId.toString();
+            this.schedule = schedule;
+            this.time = time;
+            this.exact = exact;
+        }
+    }
+
+    /**
+     * Constructs an empty SlotFinder.
+     */
+    public SlotFinder() {
+        this.index = new TreeSet<>(ORDER);
+        this.entries = new HashMap<>();
+        this.full = new HashSet<>();
+    }
+
+    /**
+     * Adds the schedule of a doctor to the search.
+     *
+     * @param doctorId the unique ID of the doctor
+     * @param schedule the schedule of the doctor
+     */
+    public synchronized void add(UserId doctorId, Schedule schedule) {
+        remove(schedule);
+        entries.put(schedule, new Entry(doctorId, schedule, null));
+        schedule.setFinder(this);
+        schedule.nextFree();
+        update(schedule);
+    }
+
+    /**
+     * Removes the schedule of a doctor from the search.
+     *
+     * @param schedule the schedule of the doctor
+     */
+    public synchronized void remove(Schedule schedule) {
+        Entry entry = entries.remove(schedule);
+        if (entry == null) return;
+        if (entry.time != null) index.remove(entry);
+        full.remove(schedule);
+        schedule.setFinder(null);
+    }
+
+    /**
+     * Reads the earliest available slot of a schedule from now again.
+     *
+     * @param schedule the schedule
+     */
+    synchronized void update(Schedule schedule) {
+        Entry entry = entries.get(schedule);
+        if (entry == null) return;
+        LocalDateTime time = schedule.getNextFree();
+        if (entry.time != null) index.remove(entry);
+        entry = new Entry(entry.doctorId, schedule, time);
+        entries.put(schedule, entry);
+        if (time != null) {
+            index.add(entry);
+            full.remove(schedule);
+        } else {
+            full.add(schedule);
+        }
+    }
+
+    /**
+     * Finds the earliest available slots at or after the given time, across the doctors accepted by the filter.
+     *
+     * @param after the earliest start time to consider; times before now are treated as now
+     * @param limit the maximum number of slots to return
+     * @param filter only slots of doctors accepted by the filter are returned, or null to accept every doctor
+     * @return up to limit available slots, in order of time, with slots at the same time in order of doctor ID
+     */
+    public synchronized ArrayList<DoctorSlot> find(LocalDateTime after, int limit, Predicate<UserId> filter) {
+        ArrayList<DoctorSlot> result = new ArrayList<>();
+        if (limit <= 0) return result;
+        LocalDateTime now = LocalDateTime.now();
+        if (after.isBefore(now)) after = now;
+        PriorityQueue<Entry> heap = new PriorityQueue<>(ORDER);
+
+        // Slots that have started, and doctors who had no slot on an earlier day, are looked up again.
+        // This updates their entries, so they are collected first.
+        ArrayList<Schedule> stale = new ArrayList<>(full);
+        for (Entry entry : index.headSet(new Entry(null, null, now), false)) {
+            stale.add(entry.schedule);
+        }
+        for (Schedule schedule : stale) {
+            schedule.nextFree();
+        }
+
+        // Doctors whose next slot is before the search time have no slot before the first opening hour from then,
+        // and are looked up from the search time when they reach the top of the heap.
+        Entry key = new Entry(null, null, after);
+        LocalDateTime open = Schedule.firstOpen(after);
+        for (Entry entry : index.headSet(key, false)) {
+            if (filter != null && !filter.test(entry.doctorId)) continue;
+            heap.add(new Entry(entry.doctorId, entry.schedule, open, false));
+        }
+
+        // The rest already hold their next slot from the search time, in order.
+        Iterator<Entry> later = index.tailSet(key, true).iterator();
+        Entry pending = null;
+        while (result.size() < limit) {
+            while (pending != null || later.hasNext()) {
+                if (pending == null) pending = later.next();
+                if (!heap.isEmpty() && ORDER.compare(pending, heap.peek()) > 0) break;
+                if (filter == null || filter.test(pending.doctorId)) heap.add(pending);
+                pending = null;
+            }
+
+            Entry next = heap.poll();
+            if (next == null) break;
+            if (!next.exact) {
+                LocalDateTime time = next.schedule.scan(after);
+                if (time != null) heap.add(new Entry(next.doctorId, next.schedule, time));
+                continue;
+            }
+            result.add(new DoctorSlot(next.doctorId, new AppointmentSlot(next.time, next.schedule)));
+            LocalDateTime time = next.schedule.scan(next.time.plusMinutes(30));
+            if (time != null) heap.add(new Entry(next.doctorId, next.schedule, time));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,141 @@
+package check;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import appointment.Appointment;
+import appointment.Schedule;
+import data.AppendLog;
+import data.IdAllocator;
+import data.LogStorageBackend;
+import data.StorageBackend;
+import data.appointment.AppointmentDatabase;
+import medicine.Prescription;
+import record.AppointmentOutcomeRecord;
+import user.UserId;
+
+import static check.Checks.check;
+import static check.Checks.delete;
+import static check.Checks.openCsv;
+
+/**
+ * Checks that log and journal records round-trip text that CSV fields may hold, in particular line breaks.
+ *
+ * Lines with commas, quotes, line feeds, carriage returns, tabs and backslashes are appended to an {@link AppendLog}
+ * one at a time, as a batch and through a rewrite, and must all be replayed unchanged. Then an outcome record whose
+ * consultation notes span several lines is stored through the journaled CSV backend and through the log backend,
+ * followed by another booking; after reopening, the notes must be unchanged and the later booking must not be lost.
+ *
+ * Run with {@code java check.AppendLogRoundTripCheck}. It prints OK and exits with status 0 if every check passes.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class AppendLogRoundTripCheck {
+    private static final List<String> LINES = Arrays.asList(
+        "plain,line",
+        "\"quoted, with comma\",x",
+        "\"first line\nsecond line\",x",
+        "\"windows\r\nline\",x",
+        "lone\rreturn",
+        "tab\there",
+        "back\\slash and \\n that is not a line break",
+        "trailing backslash\\",
+        "\n\n",
+        "",
+        "caf\u00e9 \u75c5\u9662"
+    );
+    private static final String NOTES = "Patient reports:\n- headache, 3 days\r\n- \"mild\" fever\nFollow up in a week.";
+    private static final UserId PATIENT = UserId.parse("P1001");
+    private static final UserId DOCTOR = UserId.parse("D001");
+
+    /**
+     * Runs the check.
+     *
+     * @param args unused
+     * @throws IOException if the temporary files cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("log-check");
+
+        String path = dir.resolve("lines.log").toString();
+        AppendLog log = new AppendLog(path);
+        log.replay();
+        for (String line : LINES) {
+            log.append(line);
+        }
+        log.append(LINES);
+        log.close();
+
+        ArrayList<String> expected = new ArrayList<>(LINES);
+        expected.addAll(LINES);
+        log = new AppendLog(path);
+        check(log.replay().equals(expected), "appended lines did not round-trip");
+        log.rewrite(LINES);
+        log.close();
+
+        log = new AppendLog(path);
+        check(log.replay().equals(LINES), "rewritten lines did not round-trip");
+        log.close();
+        for (String line : Files.readAllLines(Path.of(path))) {
+            check(line.length() >= 9, "a record was split across lines");
+        }
+
+        Path csvDir = Files.createDirectory(dir.resolve("csv"));
+        checkNotes(() -> openCsv(csvDir), "journaled CSV backend");
+        String logPath = dir.resolve("store.log").toString();
+        checkNotes(() -> new LogStorageBackend(logPath), "log backend");
+
+        delete(csvDir);
+        delete(dir);
+        System.out.println("OK: line breaks in fields round-trip through the journal and the log");
+    }
+
+    /**
+     * Opens a storage backend.
+     */
+    private interface Opener {
+        /**
+         * Opens the backend.
+         *
+         * @return the backend
+         * @throws IOException if the backend cannot be opened
+         */
+        StorageBackend open() throws IOException;
+    }
+
+    /**
+     * Stores a multi-line outcome record and a later booking, then checks that both survive reopening the backend.
+     *
+     * @param opener opens the backend, each time on the same files
+     * @param name the name of the backend, for error messages
+     * @throws IOException if the backend cannot be written or read
+     */
+    private static void checkNotes(Opener opener, String name) throws IOException {
+        StorageBackend backend = opener.open();
+        AppointmentDatabase db = new AppointmentDatabase(backend, new IdAllocator(backend));
+        Schedule schedule = new Schedule(Schedule.DEFAULT_HORIZON_DAYS, Schedule.DEFAULT_RESIDENT_DAYS);
+        LocalDateTime time = schedule.nextAvailable(LocalDate.now().plusDays(1).atStartOfDay());
+
+        Appointment first = db.newAppointment(PATIENT, DOCTOR, schedule.getSlot(time));
+        db.acceptAppointment(DOCTOR, first.getId(), true);
+        AppointmentOutcomeRecord record = new AppointmentOutcomeRecord(first.getSlot(), "Consultation", NOTES, new ArrayList<Prescription>(), "Migraine", "Rest");
+        check(db.setOutcome(DOCTOR, first.getId(), record) != null, name + ": outcome was not set");
+        time = schedule.nextAvailable(time.plusMinutes(30));
+        Appointment second = db.newAppointment(PATIENT, DOCTOR, schedule.getSlot(time));
+        backend.close();
+
+        backend = opener.open();
+        db = new AppointmentDatabase(backend, new IdAllocator(backend));
+        Appointment loaded = db.getAppointment(first.getId());
+        check(loaded != null && loaded.getRecord() != null, name + ": outcome record was lost");
+        check(loaded.getRecord().getConsultationNotes().equals(NOTES), name + ": consultation notes changed: " + loaded.getRecord().getConsultationNotes());
+        check(db.getAppointment(second.getId()) != null, name + ": booking after the multi-line record was lost");
+        backend.close();
+    }
+}
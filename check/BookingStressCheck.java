@@ -0,0 +1,188 @@
+package check;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import appointment.Appointment;
+import appointment.AppointmentSlot;
+import appointment.AppointmentStatus;
+import appointment.DoctorSlot;
+import appointment.Schedule;
+import appointment.SlotFinder;
+import data.IdAllocator;
+import data.MemoryStorageBackend;
+import data.appointment.AppointmentDatabase;
+import medicine.Inventory;
+import medicine.Medicine;
+import medicine.Prescription;
+import record.AppointmentOutcomeRecord;
+import user.UserId;
+
+import static check.Checks.check;
+
+/**
+ * Checks that concurrent sessions never book one slot twice and never dispense one prescription twice.
+ *
+ * Patient threads race to book, reschedule and cancel appointments on the same day of one doctor's schedule, and
+ * cancel appointments again after they have been canceled, while a doctor thread accepts and declines the pending
+ * ones. Afterwards no slot may be held by two pending or confirmed appointments, every taken slot must be held by one,
+ * and the slot finder must agree with the schedule. Then every thread tries to dispense the same prescription at
+ * once, and exactly one of them must succeed.
+ *
+ * Run with {@code java check.BookingStressCheck [rounds]}. It prints OK and exits with status 0 if every check passes.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class BookingStressCheck {
+    private static final int THREADS = 16;
+    private static final int OPERATIONS = 400;
+    private static final UserId DOCTOR = UserId.parse("D001");
+
+    /**
+     * Runs the check.
+     *
+     * @param args the number of rounds, 20 if not given
+     * @throws Exception if a thread fails
+     */
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        for (int round = 0; round < rounds; round++) {
+            bookingRound(round);
+            dispenseRound();
+        }
+        System.out.println("OK: no double booking or double dispensing in " + rounds + " rounds");
+    }
+
+    /**
+     * Races patients and a doctor over the slots of one day, then checks the schedule against the appointments.
+     *
+     * @param round the round number, used to seed the random choices
+     * @throws Exception if a thread fails
+     */
+    private static void bookingRound(int round) throws Exception {
+        MemoryStorageBackend backend = new MemoryStorageBackend();
+        AppointmentDatabase db = new AppointmentDatabase(backend, new IdAllocator(backend));
+        Schedule schedule = new Schedule(Schedule.DEFAULT_HORIZON_DAYS, Schedule.DEFAULT_RESIDENT_DAYS);
+        SlotFinder finder = new SlotFinder();
+        finder.add(DOCTOR, schedule);
+        LocalDate day = LocalDate.now().plusDays(1);
+        while (schedule.getSlots(day) == null || schedule.getSlots(day).isEmpty()) day = day.plusDays(1);
+        LocalDate target = day;
+
+        AtomicInteger staleChanges = new AtomicInteger();
+        CyclicBarrier start = new CyclicBarrier(THREADS + 1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS + 1);
+        ArrayList<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            UserId patient = new UserId('P', 1001 + t);
+            Random random = new Random(round * 100 + t);
+            futures.add(pool.submit(() -> {
+                start.await();
+                ArrayList<Integer> mine = new ArrayList<>();
+                ArrayList<Integer> canceled = new ArrayList<>();
+                for (int i = 0; i < OPERATIONS; i++) {
+                    ArrayList<AppointmentSlot> slots = schedule.getSlots(target);
+                    AppointmentSlot slot = slots.get(random.nextInt(slots.size()));
+                    int op = random.nextInt(10);
+                    if (op < 5 || mine.isEmpty()) {
+                        Appointment appointment = db.newAppointment(patient, DOCTOR, slot);
+                        if (appointment != null) mine.add(appointment.getId());
+                    } else if (op < 7) {
+                        db.rescheduleAppointment(patient, mine.get(random.nextInt(mine.size())), slot);
+                    } else if (op < 9 || canceled.isEmpty()) {
+                        int id = mine.remove(random.nextInt(mine.size()));
+                        // a declined appointment cannot be canceled, so the result is not checked here
+                        if (db.cancelAppointment(patient, id) != null) canceled.add(id);
+                    } else {
+                        int id = canceled.get(random.nextInt(canceled.size()));
+                        if (db.cancelAppointment(patient, id) != null) staleChanges.incrementAndGet();
+                        if (db.rescheduleAppointment(patient, id, slot) != null) staleChanges.incrementAndGet();
+                    }
+                    if (i % 50 == 0) finder.find(LocalDateTime.now(), 5, null);
+                }
+                return null;
+            }));
+        }
+        Random doctorRandom = new Random(round);
+        futures.add(pool.submit(() -> {
+            start.await();
+            for (int i = 0; i < OPERATIONS; i++) {
+                for (Appointment appointment : db.getDoctorAppointments(DOCTOR)) {
+                    // canceled and declined appointments can never become pending again
+                    AppointmentStatus status = appointment.getAppointmentStatus();
+                    boolean finished = status == AppointmentStatus.Canceled || status == AppointmentStatus.Declined;
+                    if (db.acceptAppointment(DOCTOR, appointment.getId(), doctorRandom.nextInt(4) > 0) != null && finished) {
+                        staleChanges.incrementAndGet();
+                    }
+                }
+            }
+            return null;
+        }));
+        for (Future<?> future : futures) future.get();
+        pool.shutdown();
+
+        check(staleChanges.get() == 0, staleChanges.get() + " changes were made to appointments that were no longer active");
+        HashMap<LocalDateTime, Integer> held = new HashMap<>();
+        for (Appointment appointment : db.getAppointments().values()) {
+            if (appointment.isActive()) held.merge(appointment.getSlot().getDate(), 1, Integer::sum);
+        }
+        held.forEach((time, count) -> check(count == 1, time + " is held by " + count + " appointments"));
+        for (AppointmentSlot slot : schedule.getSlots(target)) {
+            check(slot.getAvailability() != held.containsKey(slot.getDate()), "schedule and appointments disagree at " + slot.getDate());
+        }
+        ArrayList<DoctorSlot> first = finder.find(LocalDateTime.now(), 1, null);
+        LocalDateTime expected = schedule.nextAvailable(LocalDateTime.now());
+        check(Objects.equals(first.isEmpty() ? null : first.get(0).getSlot().getDate(), expected), "slot finder is out of date");
+    }
+
+    /**
+     * Races every thread to dispense the same prescription, then checks it was dispensed once.
+     *
+     * @throws Exception if a thread fails
+     */
+    private static void dispenseRound() throws Exception {
+        MemoryStorageBackend backend = new MemoryStorageBackend();
+        IdAllocator ids = new IdAllocator(backend);
+        AppointmentDatabase db = new AppointmentDatabase(backend, ids);
+        Inventory inventory = new Inventory(backend, ids);
+        inventory.addInventory("Paracetamol", 100, 10);
+
+        Schedule schedule = new Schedule(Schedule.DEFAULT_HORIZON_DAYS, Schedule.DEFAULT_RESIDENT_DAYS);
+        LocalDateTime time = schedule.nextAvailable(LocalDate.now().plusDays(1).atStartOfDay());
+        Appointment appointment = db.newAppointment(UserId.parse("P1001"), DOCTOR, schedule.getSlot(time));
+        db.acceptAppointment(DOCTOR, appointment.getId(), true);
+        ArrayList<Prescription> prescription = new ArrayList<>();
+        prescription.add(new Prescription("Paracetamol", 1));
+        db.setOutcome(DOCTOR, appointment.getId(), new AppointmentOutcomeRecord(appointment.getSlot(), "Consultation", "", prescription, "", ""));
+
+        AtomicInteger dispensed = new AtomicInteger();
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        ArrayList<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                if (db.dispensePrescription(appointment.getId(), inventory) != null) dispensed.incrementAndGet();
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        pool.shutdown();
+        inventory.close();
+
+        check(dispensed.get() == 1, "prescription was dispensed " + dispensed.get() + " times");
+        for (Medicine medicine : inventory.getInventory()) {
+            if (medicine.getName().equals("Paracetamol")) check(medicine.getStock() == 99, "stock is " + medicine.getStock() + ", expected 99");
+        }
+        check(db.countPendingPrescriptions() == 0, "dispensed prescription is still pending");
+    }
+}
@@ -0,0 +1,63 @@
+package check;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import data.CsvStorageBackend;
+
+/**
+ * Helpers shared by the runnable checks.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+final class Checks {
+    /**
+     * Not instantiated.
+     */
+    private Checks() {
+    }
+
+    /**
+     * Stops with an error if a condition does not hold.
+     *
+     * @param condition the condition
+     * @param message the error to print if it does not hold
+     */
+    static void check(boolean condition, String message) {
+        if (condition) return;
+        System.out.println("FAILED: " + message);
+        System.exit(1);
+    }
+
+    /**
+     * Opens a journaled CSV backend whose files are all in the given directory.
+     *
+     * @param dir the directory
+     * @return the backend
+     */
+    static CsvStorageBackend openCsv(Path dir) {
+        String base = dir.toString() + "/";
+        return new CsvStorageBackend(
+            base + "Staff_List.csv", base + "Patient_List.csv", base + "Medicine_List.csv",
+            base + "Replenishment_Request_List.csv", base + "Account_List.csv", base + "Appointment_List.csv",
+            CsvStorageBackend.DEFAULT_COMPACTION_INTERVAL
+        );
+    }
+
+    /**
+     * Deletes a directory and the files in it.
+     *
+     * @param dir the directory
+     * @throws IOException if a file cannot be deleted
+     */
+    static void delete(Path dir) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+}
@@ -0,0 +1,163 @@
+package check;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import appointment.Appointment;
+import appointment.AppointmentSlot;
+import appointment.AppointmentStatus;
+import data.ReadFile;
+import medicine.Prescription;
+import medicine.PrescriptionStatus;
+import user.UserId;
+
+import static check.Checks.*;
+
+/**
+ * Measures loading a 1M-row appointment file.
+ * Generates Appointment_List.csv in a temporary directory, half of the appointments completed with an outcome
+ * record, and loads it with the old path, Files.readAllLines and String.split, and with CsvReader, the path
+ * ReadFile uses. Prints the time and the peak heap of each, and fails if they do not load the same appointments.
+ * The old path needs more heap than the default on small machines, so run it with -Xmx4g.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class CsvReaderBenchmark {
+    private static final int ROWS = 1_000_000;
+    private static final int ROUNDS = 2;
+
+    /**
+     * Loads appointments from a CSV file.
+     */
+    private interface Loader {
+        /**
+         * Loads every appointment in the file.
+         *
+         * @param path the path of the file
+         * @return the appointments
+         * @throws IOException if the file cannot be read
+         */
+        public abstract ArrayList<Appointment> load(String path) throws IOException;
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     * @throws IOException if the file cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("csv-benchmark");
+        try {
+            Path file = dir.resolve("Appointment_List.csv");
+            generate(file);
+            System.out.printf("%d rows, %d MB%n", ROWS, Files.size(file) >> 20);
+
+            String old = null, current = null;
+            for (int round = 0; round < ROUNDS; round++) {
+                boolean report = round == ROUNDS - 1;
+                old = measure("readAllLines", CsvReaderBenchmark::readOld, file, report);
+                current = measure("CsvReader", ReadFile::readAppointmentListFile, file, report);
+            }
+            check(old.equals(current), "the two paths loaded different appointments: " + old + " and " + current);
+        } finally {
+            delete(dir);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Writes the appointment file.
+     * Every other appointment is completed and has an outcome record with a prescription.
+     *
+     * @param file the path of the file
+     * @throws IOException if the file cannot be written
+     */
+    private static void generate(Path file) throws IOException {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 9, 0);
+        ArrayList<Prescription> prescription = new ArrayList<>();
+        prescription.add(new Prescription("Paracetamol", 2));
+        prescription.add(new Prescription("Ibuprofen", 1));
+        String[] record = Appointment.encodeRecord(
+            "Consultation", "Patient reports mild fever and a sore throat", PrescriptionStatus.Pending,
+            prescription, List.of("Viral infection"), List.of("Rest and fluids")
+        );
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int id = 0; id < ROWS; id++) {
+                boolean completed = id % 2 == 0;
+                Appointment appointment = new Appointment(
+                    id, UserId.of('P', id % 5000), UserId.of('D', id % 50),
+                    completed ? AppointmentStatus.Completed : AppointmentStatus.Confirmed,
+                    new AppointmentSlot(start.plusMinutes(30L * id), false),
+                    completed ? record : null
+                );
+                writer.write(appointment.toCsv());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Loads appointments the way ReadFile did before CsvReader: every line in memory, then split on commas.
+     *
+     * @param path the path of the file
+     * @return the appointments
+     * @throws IOException if the file cannot be read
+     */
+    private static ArrayList<Appointment> readOld(String path) throws IOException {
+        List<String> lines = Files.readAllLines(Path.of(path));
+        String[][] values = new String[lines.size()][];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = lines.get(i).split(",", -1);
+        }
+        ArrayList<Appointment> appointments = new ArrayList<>();
+        for (String[] line : values) {
+            appointments.add(new Appointment(line));
+        }
+        return appointments;
+    }
+
+    /**
+     * Loads the file once and prints the time taken and the peak heap.
+     * The peak is the sum of the peak usage of every heap pool since the collection before loading.
+     *
+     * @param name the name of the path
+     * @param loader the path
+     * @param file the path of the file
+     * @param report whether to print the results
+     * @return a summary of the loaded appointments, to compare the two paths
+     * @throws IOException if the file cannot be read
+     */
+    private static String measure(String name, Loader loader, Path file, boolean report) throws IOException {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pools.add(pool);
+        }
+        System.gc();
+        long before = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            pool.resetPeakUsage();
+            before += pool.getUsage().getUsed();
+        }
+
+        long start = System.nanoTime();
+        ArrayList<Appointment> appointments = loader.load(file.toString());
+        long nanos = System.nanoTime() - start;
+
+        long peak = 0;
+        for (MemoryPoolMXBean pool : pools) peak += pool.getPeakUsage().getUsed();
+        if (report) {
+            System.out.printf("%-12s %6d ms, peak heap %5d MB%n", name, nanos / 1_000_000, (peak - before) >> 20);
+        }
+        Appointment last = appointments.get(appointments.size() - 1);
+        return appointments.size() + " appointments, last " + last.toCsv();
+    }
+}
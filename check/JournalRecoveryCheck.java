@@ -0,0 +1,119 @@
+package check;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import appointment.Schedule;
+import data.CsvStorageBackend;
+import data.IdAllocator;
+import data.appointment.AppointmentDatabase;
+import user.UserId;
+
+import static check.Checks.check;
+import static check.Checks.delete;
+import static check.Checks.openCsv;
+
+/**
+ * Checks that the appointment journal recovers from a crash in the middle of an append.
+ *
+ * A number of appointments are booked into a journaled CSV backend in a temporary directory. The last journal record
+ * is then cut short, as a crash during the write would leave it, and the database is opened again. Every complete
+ * record must be replayed, the torn record must be dropped and truncated from the journal, and appointments booked
+ * after recovery must be replayed on the next start. A record with a corrupted checksum must be dropped the same way.
+ *
+ * Run with {@code java check.JournalRecoveryCheck}. It prints OK and exits with status 0 if every check passes.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class JournalRecoveryCheck {
+    private static final int BOOKINGS = 20;
+    private static final UserId PATIENT = UserId.parse("P1001");
+    private static final UserId DOCTOR = UserId.parse("D001");
+
+    /**
+     * Runs the check.
+     *
+     * @param args unused
+     * @throws IOException if the temporary files cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("journal-check");
+        Path journal = dir.resolve("Appointment_List.csv.journal");
+
+        CsvStorageBackend backend = openCsv(dir);
+        AppointmentDatabase db = new AppointmentDatabase(backend, new IdAllocator(backend));
+        Schedule schedule = new Schedule(Schedule.DEFAULT_HORIZON_DAYS, Schedule.DEFAULT_RESIDENT_DAYS);
+        LocalDateTime time = LocalDate.now().plusDays(1).atStartOfDay();
+        for (int i = 0; i < BOOKINGS; i++) {
+            time = schedule.nextAvailable(time);
+            check(db.newAppointment(PATIENT, DOCTOR, schedule.getSlot(time)) != null, "booking " + i + " failed");
+        }
+        backend.close();
+
+        // cut the last record short, as if the process died during the write
+        byte[] bytes = Files.readAllBytes(journal);
+        int lastRecord = lastRecordStart(bytes);
+        truncate(journal, bytes.length - 3);
+
+        backend = openCsv(dir);
+        db = new AppointmentDatabase(backend, new IdAllocator(backend));
+        check(db.getAppointments().size() == BOOKINGS - 1, "expected " + (BOOKINGS - 1) + " appointments after a torn append, found " + db.getAppointments().size());
+        check(Files.size(journal) == lastRecord, "torn record was not truncated from the journal");
+
+        // appointments booked after recovery start at a clean record boundary
+        schedule = new Schedule(Schedule.DEFAULT_HORIZON_DAYS, Schedule.DEFAULT_RESIDENT_DAYS);
+        time = schedule.nextAvailable(time.plusDays(1));
+        check(db.newAppointment(PATIENT, DOCTOR, schedule.getSlot(time)) != null, "booking after recovery failed");
+        backend.close();
+
+        backend = openCsv(dir);
+        db = new AppointmentDatabase(backend, new IdAllocator(backend));
+        check(db.getAppointments().size() == BOOKINGS, "booking after recovery was not replayed");
+        backend.close();
+
+        // a record whose checksum does not match is dropped with everything after it
+        bytes = Files.readAllBytes(journal);
+        lastRecord = lastRecordStart(bytes);
+        bytes[lastRecord] = (byte) (bytes[lastRecord] == '0' ? '1' : '0');
+        Files.write(journal, bytes);
+
+        backend = openCsv(dir);
+        db = new AppointmentDatabase(backend, new IdAllocator(backend));
+        check(db.getAppointments().size() == BOOKINGS - 1, "corrupted record was replayed");
+        check(Files.size(journal) == lastRecord, "corrupted record was not truncated from the journal");
+        backend.close();
+        delete(dir);
+
+        System.out.println("OK: torn and corrupted journal records are discarded on replay");
+    }
+
+    /**
+     * Returns the offset of the first byte of the last record in a journal.
+     *
+     * @param bytes the journal contents, ending with a complete record
+     * @return the offset of the last record
+     */
+    private static int lastRecordStart(byte[] bytes) {
+        int start = bytes.length - 1;
+        while (start > 0 && bytes[start - 1] != '\n') start--;
+        return start;
+    }
+
+    /**
+     * Truncates a file to the given length.
+     *
+     * @param path the file
+     * @param length the new length
+     * @throws IOException if the file cannot be truncated
+     */
+    private static void truncate(Path path, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package check;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import appointment.Appointment;
+import appointment.AppointmentSlot;
+import appointment.BookingResult;
+import appointment.RecurrenceRule;
+import appointment.Schedule;
+import data.IdAllocator;
+import data.LogStorageBackend;
+import data.MemoryStorageBackend;
+import data.StorageBackend;
+import data.appointment.AppointmentDatabase;
+import data.appointment.MappedAppointmentStore;
+import user.DoctorApiPatient;
+import user.UserId;
+
+import static check.Checks.check;
+import static check.Checks.delete;
+import static check.Checks.openCsv;
+
+/**
+ * Checks that a series of appointments is booked either whole or not at all.
+ *
+ * Patient threads race to book single appointments and weekly series with one doctor. Every series must either be
+ * booked whole or be refused with its conflicts, and no slot may be held twice. Then a series is booked into each
+ * kind of storage and the write is cut short, as a crash during the write would leave it: on the next start the
+ * whole series must be gone, while the appointment booked before it must still be there.
+ *
+ * Run with {@code java check.RecurringBookingCheck}. It prints OK and exits with status 0 if every check passes.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class RecurringBookingCheck {
+    private static final int THREADS = 16;
+    private static final int WEEKS = 6;
+    private static final UserId PATIENT = UserId.parse("P1001");
+
+    /**
+     * Runs the check.
+     *
+     * @param args unused
+     * @throws Exception if a thread fails or the temporary files cannot be written
+     */
+    public static void main(String[] args) throws Exception {
+        checkConcurrentSeries();
+
+        Path dir = Files.createTempDirectory("series-check");
+        Path csvDir = Files.createDirectory(dir.resolve("csv"));
+        checkTornSeries(() -> openCsv(csvDir), csvDir.resolve("Appointment_List.csv.journal"), "journaled CSV backend");
+        Path logPath = dir.resolve("store.log");
+        checkTornSeries(() -> new LogStorageBackend(logPath.toString()), logPath, "log backend");
+        checkTornMappedSeries(dir.resolve("appointments").toString());
+
+        delete(csvDir);
+        delete(dir);
+        System.out.println("OK: series of appointments are booked whole or not at all");
+    }
+
+    /**
+     * Races patients booking single appointments and series, then checks that no series was booked in part.
+     *
+     * @throws Exception if a thread fails
+     */
+    private static void checkConcurrentSeries() throws Exception {
+        MemoryStorageBackend backend = new MemoryStorageBackend();
+        AppointmentDatabase db = new AppointmentDatabase(backend, new IdAllocator(backend));
+        DoctorApiPatient doctor = doctor("D001");
+        LocalDate monday = LocalDate.now().plusDays(1);
+        while (monday.getDayOfWeek() != DayOfWeek.MONDAY) monday = monday.plusDays(1);
+        LocalDate firstDay = monday;
+
+        AtomicInteger booked = new AtomicInteger();
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        ArrayList<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            UserId patient = new UserId('P', 1001 + t);
+            Random random = new Random(t);
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 200; i++) {
+                    LocalDateTime first = firstDay.plusDays(random.nextInt(5)).atTime(8 + random.nextInt(5), random.nextBoolean() ? 0 : 30);
+                    if (random.nextInt(3) == 0) {
+                        AppointmentSlot slot = doctor.getPersonalSchedule().getSlot(first);
+                        if (slot != null && db.newAppointment(patient, doctor.getId(), slot) != null) booked.incrementAndGet();
+                        continue;
+                    }
+                    int count = 1 + random.nextInt(WEEKS);
+                    BookingResult result = db.newAppointments(patient, doctor, new RecurrenceRule(first, 7, count));
+                    if (result.isBooked()) {
+                        check(result.getAppointments().size() == count, "a series of " + count + " was booked in part");
+                        booked.addAndGet(count);
+                    } else {
+                        check(result.getAppointments().isEmpty() && !result.getConflicts().isEmpty(), "a refused series booked appointments");
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        pool.shutdown();
+
+        check(db.getAppointments().size() == booked.get(), "appointments were created that no booking reported");
+        HashMap<LocalDateTime, Integer> held = new HashMap<>();
+        for (Appointment appointment : db.getAppointments().values()) {
+            check(appointment.getDoctorId().equals(doctor.getId()), "appointment booked under another doctor");
+            held.merge(appointment.getSlot().getDate(), 1, Integer::sum);
+        }
+        held.forEach((time, count) -> check(count == 1, time + " is held by " + count + " appointments"));
+    }
+
+    /**
+     * Opens a storage backend.
+     */
+    private interface Opener {
+        /**
+         * Opens the backend.
+         *
+         * @return the backend
+         * @throws IOException if the backend cannot be opened
+         */
+        StorageBackend open() throws IOException;
+    }
+
+    /**
+     * Books one appointment and then a series, cuts the last record of the log short, and checks that on reopening
+     * the appointment is kept and the whole series is dropped.
+     *
+     * @param opener opens the backend, each time on the same files
+     * @param log the file the series is appended to
+     * @param name the name of the backend, for error messages
+     * @throws IOException if the backend cannot be written or read
+     */
+    private static void checkTornSeries(Opener opener, Path log, String name) throws IOException {
+        StorageBackend backend = opener.open();
+        AppointmentDatabase db = new AppointmentDatabase(backend, new IdAllocator(backend));
+        DoctorApiPatient doctor = doctor("D001");
+        Schedule schedule = doctor.getPersonalSchedule();
+        LocalDateTime time = schedule.nextAvailable(LocalDate.now().plusDays(1).atStartOfDay());
+        check(db.newAppointment(PATIENT, doctor.getId(), schedule.getSlot(time)) != null, name + ": booking failed");
+        time = schedule.nextAvailable(time.plusDays(1));
+        check(db.newAppointments(PATIENT, doctor, RecurrenceRule.weekly(time, WEEKS)).isBooked(), name + ": series was not booked");
+        backend.close();
+
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        backend = opener.open();
+        db = new AppointmentDatabase(backend, new IdAllocator(backend));
+        check(db.getAppointments().size() == 1, name + ": expected only the single booking after a torn series, found " + db.getAppointments().size() + " appointments");
+        backend.close();
+    }
+
+    /**
+     * Books one appointment and then a series into a memory-mapped store, leaves the store as a crash after the
+     * series was written but before it was committed would, and checks that on reopening the appointment is kept
+     * and the whole series is dropped.
+     *
+     * @param path the base path of the store files
+     * @throws IOException if the store cannot be written or read
+     */
+    private static void checkTornMappedSeries(String path) throws IOException {
+        MemoryStorageBackend backend = new MemoryStorageBackend();
+        MappedAppointmentStore store = new MappedAppointmentStore(path);
+        AppointmentDatabase db = new AppointmentDatabase(backend, new IdAllocator(backend), store);
+        DoctorApiPatient doctor = doctor("D001");
+        Schedule schedule = doctor.getPersonalSchedule();
+        LocalDateTime time = schedule.nextAvailable(LocalDate.now().plusDays(1).atStartOfDay());
+        check(db.newAppointment(PATIENT, doctor.getId(), schedule.getSlot(time)) != null, "appointment store: booking failed");
+        time = schedule.nextAvailable(time.plusDays(1));
+        BookingResult result = db.newAppointments(PATIENT, doctor, RecurrenceRule.weekly(time, WEEKS));
+        check(result.isBooked(), "appointment store: series was not booked");
+        store.close();
+
+        // restore the batch range that writing the series sets in the file header and clears once it is committed
+        ByteBuffer range = ByteBuffer.allocate(8);
+        range.putInt(result.getAppointments().get(0).getId());
+        range.putInt(result.getAppointments().get(WEEKS - 1).getId() + 1);
+        range.flip();
+        try (FileChannel channel = FileChannel.open(Path.of(path + ".idx"), StandardOpenOption.WRITE)) {
+            channel.write(range, 8);
+        }
+
+        store = new MappedAppointmentStore(path);
+        db = new AppointmentDatabase(backend, new IdAllocator(backend), store);
+        check(db.getAppointments().size() == 1, "appointment store: expected only the single booking after a torn series, found " + db.getAppointments().size() + " appointments");
+        store.close();
+
+        store = new MappedAppointmentStore(path);
+        check(store.readAll().size() == 1, "appointment store: torn series came back after reopening");
+        store.close();
+        Files.delete(Path.of(path + ".idx"));
+        Files.delete(Path.of(path + ".heap"));
+    }
+
+    /**
+     * Returns a doctor with an empty schedule.
+     *
+     * @param id the ID of the doctor
+     * @return the doctor
+     */
+    private static DoctorApiPatient doctor(String id) {
+        UserId doctorId = UserId.parse(id);
+        Schedule schedule = new Schedule(Schedule.DEFAULT_HORIZON_DAYS, Schedule.DEFAULT_RESIDENT_DAYS);
+        return new DoctorApiPatient() {
+            @Override
+            public UserId getId() {
+                return doctorId;
+            }
+
+            @Override
+            public String getName() {
+                return "Doctor " + id;
+            }
+
+            @Override
+            public Schedule getPersonalSchedule() {
+                return schedule;
+            }
+        };
+    }
+}
@@ -0,0 +1,90 @@
+package check;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import user.UserId;
+
+import static check.Checks.*;
+
+/**
+ * Measures hashing, parsing and interning of user IDs.
+ * Prints the time per operation for a lookup in a HashMap keyed by user ID, for parsing an ID that has been seen
+ * before, and the bytes allocated by looking up an interned ID. Fails if two IDs with the patient, doctor and
+ * administrator prefixes share a hash code, or if an interned lookup allocates.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class UserIdBenchmark {
+    private static final int IDS = 100_000;
+    private static final int ROUNDS = 5;
+    private static final char[] PREFIXES = { 'P', 'D', 'A' };
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        HashSet<Integer> hashes = new HashSet<>();
+        for (char prefix : PREFIXES) {
+            for (int num = 0; num < IDS; num++) {
+                check(hashes.add(UserId.of(prefix, num).hashCode()), "hash collision at " + prefix + num);
+            }
+        }
+
+        HashMap<UserId, Integer> map = new HashMap<>();
+        UserId[] ids = new UserId[IDS];
+        String[] text = new String[IDS];
+        for (int num = 0; num < IDS; num++) {
+            ids[num] = new UserId(PREFIXES[num % PREFIXES.length], num);
+            text[num] = ids[num].toString();
+            map.put(ids[num], num);
+        }
+
+        long sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean report = round == ROUNDS - 1;
+
+            long start = System.nanoTime();
+            for (int i = 0; i < 10; i++) {
+                for (UserId id : ids) sink += map.get(id);
+            }
+            if (report) print("HashMap.get", System.nanoTime() - start, 10L * IDS);
+
+            start = System.nanoTime();
+            for (int i = 0; i < 10; i++) {
+                for (String id : text) sink += UserId.parse(id).hashCode();
+            }
+            if (report) print("UserId.parse", System.nanoTime() - start, 10L * IDS);
+
+            start = System.nanoTime();
+            for (int i = 0; i < 10; i++) {
+                for (int num = 0; num < IDS; num++) sink += UserId.of('P', num).hashCode();
+            }
+            if (report) print("UserId.of", System.nanoTime() - start, 10L * IDS);
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int num = 0; num < IDS; num++) sink += UserId.of('D', num).hashCode();
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        System.out.printf("UserId.of allocates %.3f bytes/op%n", (double) allocated / IDS);
+        check(allocated < IDS, "interned lookups allocate " + allocated + " bytes");
+
+        System.out.println(sink == 42 ? "" : "OK");
+    }
+
+    /**
+     * Prints the time per operation.
+     *
+     * @param name the operation
+     * @param nanos the total time
+     * @param ops the number of operations
+     */
+    private static void print(String name, long nanos, long ops) {
+        System.out.printf("%-13s %6.1f ns/op%n", name, (double) nanos / ops);
+    }
+}
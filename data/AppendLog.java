@@ -0,0 +1,337 @@
+package data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.StringJoiner;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of text records protected by checksums.
+ *
+ * Each record is written as {@code <crc32> <line>\n}. A line containing a line break, such as a CSV row with a
+ * multi-line quoted field, is written as {@code <crc32>*<escaped line>\n} instead, with backslashes, line feeds,
+ * carriage returns and tabs escaped as {@code \\}, {@code \n}, {@code \r} and {@code \t}, so that every record
+ * stays on one line. The checksum covers the line as written.
+ * Several lines appended together are written as one batch record, {@code <crc32>*<escaped line>\t<escaped line>...\n},
+ * so a crash during the write leaves either every line of the batch or none of them.
+ * On replay, a record that is missing its terminating newline or whose checksum does not match is treated as a
+ * torn write from a crash: it and everything after it is discarded and the log is truncated back to the last good record.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class AppendLog {
+    private static final char ESCAPED = '*';
+
+    private Path path;
+    private FileChannel channel;
+    private int recordCount;
+
+    /**
+     * Constructs an AppendLog backed by the file at the given path.
+     * The log file is created if it does not exist. Call {@link #replay()} before appending
+     * so that any torn record left by a crash is truncated first.
+     *
+     * @param path the file path of the log
+     * @throws IOException if the log file cannot be opened
+     */
+    public AppendLog(String path) throws IOException {
+        this.path = Path.of(path);
+        this.channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.recordCount = 0;
+    }
+
+    /**
+     * Reads every intact record in the log, in the order they were written.
+     * A torn or corrupted tail is truncated so that later appends start from a clean record boundary.
+     *
+     * @return the lines of the records, oldest first
+     * @throws IOException if there is an error reading or truncating the log
+     */
+    public ArrayList<String> replay() throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        ArrayList<String> lines = new ArrayList<>();
+
+        int start = 0;
+        while (start < bytes.length) {
+            int end = start;
+            while (end < bytes.length && bytes[end] != '\n') end++;
+            if (end == bytes.length) break; // record was never terminated
+
+            String[] record = decode(bytes, start, end);
+            if (record == null) break; // checksum mismatch
+            for (String line : record) {
+                lines.add(line);
+            }
+            start = end + 1;
+        }
+
+        if (start < bytes.length) {
+            System.out.printf("Discarding %d bytes of incomplete log records in %s.\n", bytes.length - start, path);
+            channel.truncate(start);
+            channel.force(true);
+        }
+        channel.position(start);
+        recordCount = lines.size();
+        return lines;
+    }
+
+    /**
+     * Appends one record to the log. The record is not forced to disk until {@link #force()} is called.
+     *
+     * @param line the line of the record, which may contain line breaks
+     * @throws IOException if there is an error writing to the log
+     */
+    public void append(String line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(encode(line));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        recordCount++;
+    }
+
+    /**
+     * Appends several lines as a single batch record, so that on replay either all of them are read or none are.
+     * Like {@link #append(String)}, this does not force them to disk. Each line counts as one record.
+     *
+     * @param lines the lines of the records, in order
+     * @throws IOException if there is an error writing to the log
+     */
+    public void append(Collection<String> lines) throws IOException {
+        if (lines.isEmpty()) return;
+        ByteBuffer buffer = ByteBuffer.wrap(lines.size() == 1 ? encode(lines.iterator().next()) : encode(lines));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        recordCount += lines.size();
+    }
+
+    /**
+     * Forces every appended record to disk.
+     *
+     * @throws IOException if there is an error writing to the log
+     */
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Replaces the whole log with the given records.
+     * The new log is written to a temporary file, forced to disk and renamed over the log,
+     * so a crash leaves either the old or the new log.
+     *
+     * @param lines the lines of the records to keep, oldest first
+     * @throws IOException if there is an error writing the new log
+     */
+    public void rewrite(Collection<String> lines) throws IOException {
+        Path temp = Path.of(path + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (String line : lines) {
+                ByteBuffer buffer = ByteBuffer.wrap(encode(line));
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            }
+            out.force(true);
+        }
+
+        channel.close();
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        recordCount = lines.size();
+    }
+
+    /**
+     * Removes every record from the log.
+     *
+     * @throws IOException if there is an error truncating the log
+     */
+    public void clear() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+        recordCount = 0;
+    }
+
+    /**
+     * Returns the number of records in the log.
+     *
+     * @return the number of records
+     */
+    public int getRecordCount() {
+        return this.recordCount;
+    }
+
+    /**
+     * Returns the time the log file was last changed.
+     *
+     * @return the modification time in milliseconds since the epoch
+     * @throws IOException if the modification time cannot be read
+     */
+    public long lastModified() throws IOException {
+        return Files.getLastModifiedTime(path).toMillis();
+    }
+
+    /**
+     * Closes the underlying log file.
+     *
+     * @throws IOException if there is an error closing the file
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Encodes one record with its checksum.
+     *
+     * @param line the line of the record
+     * @return the bytes of the record, including the terminating newline
+     */
+    private static byte[] encode(String line) {
+        char separator = ' ';
+        if (line.indexOf('\n') >= 0 || line.indexOf('\r') >= 0) {
+            separator = ESCAPED;
+            line = escape(line);
+        }
+        byte[] data = line.getBytes(StandardCharsets.UTF_8);
+        String record = String.format("%08x%c%s\n", checksum(data, 0, data.length), separator, line);
+        return record.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encodes several lines as one batch record with a single checksum.
+     *
+     * @param lines the lines of the batch, in order
+     * @return the bytes of the record, including the terminating newline
+     */
+    private static byte[] encode(Collection<String> lines) {
+        StringJoiner batch = new StringJoiner("\t");
+        for (String line : lines) {
+            batch.add(escape(line));
+        }
+        byte[] data = batch.toString().getBytes(StandardCharsets.UTF_8);
+        String record = String.format("%08x%c%s\n", checksum(data, 0, data.length), ESCAPED, batch);
+        return record.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes and verifies one log record.
+     * An escaped record is split at its tabs, so a batch record yields every line of the batch.
+     *
+     * @param bytes the log contents
+     * @param start the offset of the first byte of the record
+     * @param end the offset of the terminating newline
+     * @return the lines of the record, or null if the record is corrupted
+     */
+    private static String[] decode(byte[] bytes, int start, int end) {
+        if (end - start < 9 || (bytes[start + 8] != ' ' && bytes[start + 8] != ESCAPED)) return null;
+        long expected;
+        try {
+            expected = Long.parseLong(new String(bytes, start, 8, StandardCharsets.US_ASCII), 16);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (checksum(bytes, start + 9, end - start - 9) != expected) return null;
+        String line = new String(bytes, start + 9, end - start - 9, StandardCharsets.UTF_8);
+        if (bytes[start + 8] != ESCAPED) return new String[] { line };
+
+        String[] lines = line.split("\t", -1);
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = unescape(lines[i]);
+            if (lines[i] == null) return null;
+        }
+        return lines;
+    }
+
+    /**
+     * Escapes the backslashes, line breaks and tabs in a line.
+     *
+     * @param line the line
+     * @return the line with no line breaks or tabs
+     */
+    private static String escape(String line) {
+        StringBuilder result = new StringBuilder(line.length() + 16);
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            switch (c) {
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                default:
+                    result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Reverses {@link #escape(String)}.
+     *
+     * @param line the escaped line
+     * @return the original line, or null if the line holds an invalid escape
+     */
+    private static String unescape(String line) {
+        StringBuilder result = new StringBuilder(line.length());
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c != '\\') {
+                result.append(c);
+                continue;
+            }
+            if (++i == line.length()) return null;
+            switch (line.charAt(i)) {
+                case '\\':
+                    result.append('\\');
+                    break;
+                case 'n':
+                    result.append('\n');
+                    break;
+                case 'r':
+                    result.append('\r');
+                    break;
+                case 't':
+                    result.append('\t');
+                    break;
+                default:
+                    return null;
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Computes the CRC32 checksum of a byte range.
+     *
+     * @param bytes the data
+     * @param offset the offset of the first byte
+     * @param length the number of bytes
+     * @return the checksum value
+     */
+    private static long checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,448 @@
+package data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+
+import appointment.Appointment;
+import appointment.AppointmentSlot;
+import appointment.AppointmentStatus;
+import medicine.Medicine;
+import medicine.Prescription;
+import medicine.PrescriptionStatus;
+import medicine.ReplenishmentRequest;
+import medicine.ReplenishmentStatus;
+import record.AppointmentOutcomeRecord;
+import record.MedicalRecord;
+import user.Administrator;
+import user.Doctor;
+import user.Patient;
+import user.Pharmacist;
+import user.Role;
+import user.Staff;
+import user.UserAccount;
+import user.UserId;
+
+/**
+ * A versioned binary snapshot of the user database, inventory and appointment database.
+ * Loading a snapshot avoids parsing the CSV files as text on startup: numbers are stored as fixed-width
+ * primitives, every string is stored once in a dictionary and referenced by index, user IDs are stored as
+ * their prefix and number, and appointment slots are stored as minutes since the epoch.
+ *
+ * The storage backend is still updated as the system runs, so a snapshot is only used
+ * when it is newer than the data in the backend.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class BinarySnapshot {
+    private static final int MAGIC = 0x484d5342; // "HMSB"
+    private static final int VERSION = 2;
+
+    private ArrayList<UserAccount> accounts;
+    private ArrayList<Patient> patients;
+    private ArrayList<Staff> staffs;
+    private ArrayList<Medicine> medicines;
+    private ArrayList<ReplenishmentRequest> requests;
+    private ArrayList<Appointment> appointments;
+
+    /**
+     * Constructs a BinarySnapshot holding the given records.
+     *
+     * @param accounts the user accounts
+     * @param patients the patients
+     * @param staffs the staff members
+     * @param medicines the medicines in the inventory
+     * @param requests the replenishment requests
+     * @param appointments the appointments
+     */
+    public BinarySnapshot(
+        Collection<UserAccount> accounts,
+        Collection<Patient> patients,
+        Collection<Staff> staffs,
+        Collection<Medicine> medicines,
+        Collection<ReplenishmentRequest> requests,
+        Collection<Appointment> appointments
+    ) {
+        this.accounts = new ArrayList<>(accounts);
+        this.patients = new ArrayList<>(patients);
+        this.staffs = new ArrayList<>(staffs);
+        this.medicines = new ArrayList<>(medicines);
+        this.requests = new ArrayList<>(requests);
+        this.appointments = new ArrayList<>(appointments);
+    }
+
+    /**
+     * Checks whether a snapshot exists at the given path and was written after the given time.
+     *
+     * @param path the path of the snapshot
+     * @param lastModified the time the data the snapshot was taken from last changed, in milliseconds since the epoch
+     * @return true if the snapshot can be loaded in place of the data
+     * @throws IOException if the modification time of the snapshot cannot be read
+     */
+    public static boolean isNewerThan(String path, long lastModified) throws IOException {
+        Path snapshot = Path.of(path);
+        if (Files.notExists(snapshot)) return false;
+        return Files.getLastModifiedTime(snapshot).toMillis() > lastModified;
+    }
+
+    /**
+     * Reads a snapshot from the specified path.
+     *
+     * @param path the path of the snapshot
+     * @return the records held in the snapshot
+     * @throws IOException if the file cannot be read, is not a snapshot, or has an unsupported version
+     */
+    public static BinarySnapshot read(String path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Path.of(path)), 1 << 16))) {
+            if (in.readInt() != MAGIC) throw new IOException(path + " is not a snapshot file.");
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported snapshot version " + version + " in " + path + ".");
+
+            String[] dictionary = new String[in.readInt()];
+            for (int i = 0; i < dictionary.length; i++) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            Decoder decoder = new Decoder(in, dictionary);
+
+            ArrayList<UserAccount> accounts = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                accounts.add(new UserAccount(decoder.userId(), decoder.string(), decoder.string(), decoder.role()));
+            }
+            ArrayList<Patient> patients = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                patients.add(new Patient(decoder.userId(), decoder.string(), decoder.string(), decoder.string(), decoder.string(), decoder.string()));
+            }
+            ArrayList<Staff> staffs = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                staffs.add(decoder.staff());
+            }
+            ArrayList<Medicine> medicines = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                medicines.add(new Medicine(decoder.string(), in.readInt(), in.readInt()));
+            }
+            ArrayList<ReplenishmentRequest> requests = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                requests.add(new ReplenishmentRequest(in.readInt(), decoder.string(), ReplenishmentStatus.values()[in.readByte()], in.readInt()));
+            }
+            ArrayList<Appointment> appointments = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                appointments.add(decoder.appointment());
+            }
+
+            return new BinarySnapshot(accounts, patients, staffs, medicines, requests, appointments);
+        }
+    }
+
+    /**
+     * Writes the snapshot to the specified path.
+     * The snapshot is written to a temporary file first, forced to disk and renamed into place once complete,
+     * so a crash leaves either the old or the new snapshot.
+     *
+     * @param path the path of the snapshot
+     * @throws IOException if there is an error writing the file
+     */
+    public void write(String path) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        Encoder encoder = new Encoder(new DataOutputStream(body));
+        DataOutputStream out = encoder.out;
+
+        out.writeInt(accounts.size());
+        for (UserAccount account : accounts) {
+            encoder.userId(account.getId());
+            encoder.string(account.getUsername());
+            encoder.string(account.getPassword());
+            out.writeByte(account.getRole().ordinal());
+        }
+        out.writeInt(patients.size());
+        for (Patient patient : patients) {
+            encoder.userId(patient.getId());
+            MedicalRecord record = patient.getMedicalRecord();
+            encoder.string(patient.getName());
+            encoder.string(record.getBirthDate());
+            encoder.string(record.getGender());
+            encoder.string(record.getBloodType());
+            encoder.string(record.getContactInfo());
+        }
+        out.writeInt(staffs.size());
+        for (Staff staff : staffs) {
+            encoder.userId(staff.getId());
+            encoder.string(staff.getName());
+            out.writeByte(staff.getRole().ordinal());
+            encoder.string(staff.getGender());
+            out.writeInt(staff.getAge());
+        }
+        out.writeInt(medicines.size());
+        for (Medicine medicine : medicines) {
+            encoder.string(medicine.getName());
+            out.writeInt(medicine.getStock());
+            out.writeInt(medicine.getLowStockLevelAlert());
+        }
+        out.writeInt(requests.size());
+        for (ReplenishmentRequest request : requests) {
+            out.writeInt(request.getId());
+            encoder.string(request.getName());
+            out.writeByte(request.getStatus().ordinal());
+            out.writeInt(request.getStock());
+        }
+        out.writeInt(appointments.size());
+        for (Appointment appointment : appointments) {
+            encoder.appointment(appointment);
+        }
+        out.flush();
+
+        Path target = Path.of(path);
+        Path temp = Path.of(path + ".tmp");
+        try (
+            FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            DataOutputStream file = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))
+        ) {
+            file.writeInt(MAGIC);
+            file.writeInt(VERSION);
+            file.writeInt(encoder.dictionary.size());
+            for (String value : encoder.dictionaryOrder) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                file.writeInt(bytes.length);
+                file.write(bytes);
+            }
+            body.writeTo(file);
+            file.flush();
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Returns the user accounts held in the snapshot.
+     *
+     * @return the user accounts
+     */
+    public ArrayList<UserAccount> getAccounts() {
+        return this.accounts;
+    }
+
+    /**
+     * Returns the patients held in the snapshot.
+     *
+     * @return the patients
+     */
+    public ArrayList<Patient> getPatients() {
+        return this.patients;
+    }
+
+    /**
+     * Returns the staff members held in the snapshot.
+     *
+     * @return the staff members
+     */
+    public ArrayList<Staff> getStaff() {
+        return this.staffs;
+    }
+
+    /**
+     * Returns the medicines held in the snapshot.
+     *
+     * @return the medicines
+     */
+    public ArrayList<Medicine> getMedicines() {
+        return this.medicines;
+    }
+
+    /**
+     * Returns the replenishment requests held in the snapshot.
+     *
+     * @return the replenishment requests
+     */
+    public ArrayList<ReplenishmentRequest> getRequests() {
+        return this.requests;
+    }
+
+    /**
+     * Returns the appointments held in the snapshot.
+     *
+     * @return the appointments
+     */
+    public ArrayList<Appointment> getAppointments() {
+        return this.appointments;
+    }
+
+    /**
+     * Converts a date-time to whole minutes since the epoch.
+     *
+     * @param dateTime the date-time to convert
+     * @return the number of minutes since 1970-01-01T00:00
+     */
+    private static int toEpochMinutes(LocalDateTime dateTime) {
+        return (int) (dateTime.toEpochSecond(ZoneOffset.UTC) / 60);
+    }
+
+    /**
+     * Converts minutes since the epoch back to a date-time.
+     *
+     * @param minutes the number of minutes since 1970-01-01T00:00
+     * @return the corresponding date-time
+     */
+    private static LocalDateTime fromEpochMinutes(int minutes) {
+        return LocalDateTime.ofEpochSecond(minutes * 60L, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Writes records to the body of a snapshot, collecting their strings into the dictionary.
+     */
+    private static class Encoder {
+        private DataOutputStream out;
+        private HashMap<String, Integer> dictionary = new HashMap<>();
+        private ArrayList<String> dictionaryOrder = new ArrayList<>();
+
+        private Encoder(DataOutputStream out) {
+            this.out = out;
+        }
+
+        private void string(String value) throws IOException {
+            Integer index = dictionary.get(value);
+            if (index == null) {
+                index = dictionaryOrder.size();
+                dictionary.put(value, index);
+                dictionaryOrder.add(value);
+            }
+            out.writeInt(index);
+        }
+
+        private void userId(UserId id) throws IOException {
+            out.writeChar(id.getPrefix());
+            out.writeInt(id.getNum());
+        }
+
+        private void strings(ArrayList<String> values) throws IOException {
+            out.writeInt(values.size());
+            for (String value : values) {
+                string(value);
+            }
+        }
+
+        private void appointment(Appointment appointment) throws IOException {
+            out.writeInt(appointment.getId());
+            userId(appointment.getPatientId());
+            userId(appointment.getDoctorId());
+            out.writeByte(appointment.getAppointmentStatus().ordinal());
+            out.writeBoolean(appointment.getSlot().getAvailability());
+            out.writeInt(toEpochMinutes(appointment.getSlot().getDate()));
+
+            AppointmentOutcomeRecord record = appointment.readRecord();
+            out.writeBoolean(record != null);
+            if (record == null) return;
+            string(record.getServiceType());
+            string(record.getConsultationNotes());
+            out.writeByte(record.getPrescriptionStatus().ordinal());
+            out.writeInt(record.getPrescription().size());
+            for (Prescription prescription : record.getPrescription()) {
+                string(prescription.getName());
+                out.writeInt(prescription.getQuantity());
+            }
+            strings(record.getDiagnoses());
+            strings(record.getTreatmentPlan());
+        }
+    }
+
+    /**
+     * Reads records from the body of a snapshot, resolving strings through the dictionary.
+     */
+    private static class Decoder {
+        private DataInputStream in;
+        private String[] dictionary;
+
+        private Decoder(DataInputStream in, String[] dictionary) {
+            this.in = in;
+            this.dictionary = dictionary;
+        }
+
+        private String string() throws IOException {
+            int index = in.readInt();
+            if (index < 0 || index >= dictionary.length) throw new IOException("Invalid snapshot: string index " + index + " out of range.");
+            return dictionary[index];
+        }
+
+        private UserId userId() throws IOException {
+            char prefix = in.readChar();
+            return UserId.of(prefix, in.readInt());
+        }
+
+        private Role role() throws IOException {
+            return Role.values()[in.readByte()];
+        }
+
+        private ArrayList<String> strings() throws IOException {
+            int count = in.readInt();
+            ArrayList<String> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                values.add(string());
+            }
+            return values;
+        }
+
+        private Staff staff() throws IOException {
+            UserId id = userId();
+            String name = string();
+            Role role = role();
+            String gender = string();
+            int age = in.readInt();
+            switch (role) {
+                case Doctor:
+                    return new Doctor(id, name, role, gender, age);
+                case Pharmacist:
+                    return new Pharmacist(id, name, role, gender, age);
+                case Administrator:
+                    return new Administrator(id, name, role, gender, age);
+                default:
+                    throw new IOException("Invalid snapshot: staff " + id + " has role " + role + ".");
+            }
+        }
+
+        private Appointment appointment() throws IOException {
+            int id = in.readInt();
+            UserId patientId = userId();
+            UserId doctorId = userId();
+            AppointmentStatus status = AppointmentStatus.values()[in.readByte()];
+            boolean availability = in.readBoolean();
+            AppointmentSlot slot = new AppointmentSlot(fromEpochMinutes(in.readInt()), availability);
+
+            String[] record = null;
+            if (in.readBoolean()) {
+                String serviceType = string();
+                String consultationNotes = string();
+                PrescriptionStatus prescriptionStatus = PrescriptionStatus.values()[in.readByte()];
+                int count = in.readInt();
+                ArrayList<Prescription> prescription = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    prescription.add(new Prescription(string(), in.readInt()));
+                }
+                ArrayList<String> diagnoses = strings();
+                ArrayList<String> treatmentPlan = strings();
+                record = Appointment.encodeRecord(serviceType, consultationNotes, prescriptionStatus, prescription, diagnoses, treatmentPlan);
+            }
+
+            return new Appointment(id, patientId, doctorId, status, slot, record);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package data;
 /**
  * This interface defines the contract for objects that can be converted into a CSV (Comma-Separated Values) format.
  * Any class implementing this interface must provide a method to convert its data into a CSV string representation.
+ * Text fields should be passed through {@link #quote(String)} so that they can contain commas.
  * @author NATANAEL TAN TIONG OON
  * @version 1.0
  * @since 2024-11-21
@@ -15,4 +16,18 @@ public interface CsvCompatible {
      * @return a CSV string representation of the object
      */
     public abstract String toCsv();
+
+    /**
+     * Quotes a field for inclusion in a CSV line if it contains a comma, a quote or a line break.
+     * Quotes inside the field are doubled. Fields that need no quoting are returned unchanged.
+     *
+     * @param field the field value
+     * @return the field, quoted if necessary
+     */
+    public static String quote(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+            return field;
+        }
+        return "\"" + field.replace("\"", "\"\"") + "\"";
+    }
 }
@@ -0,0 +1,183 @@
+package data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+/**
+ * Streaming reader for CSV files.
+ * Rows are parsed one at a time from a reusable character buffer, so reading a file only needs
+ * memory for the row currently being parsed rather than for the whole file.
+ *
+ * Fields may be enclosed in double quotes, in which case they can contain commas, line breaks
+ * and doubled quotes ({@code ""}) that stand for a single quote. Blank lines are skipped.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class CsvReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Callback that receives each row of a CSV file as it is read.
+     */
+    public interface RowHandler {
+        /**
+         * Handles one row of a CSV file.
+         *
+         * @param row the fields of the row
+         * @throws IOException if the row is invalid
+         */
+        public abstract void handle(String[] row) throws IOException;
+    }
+
+    private Reader reader;
+    private char[] buffer;
+    private int position, limit;
+    private StringBuilder field;
+    private ArrayList<String> row;
+
+    /**
+     * Constructs a CsvReader that parses rows from the given reader.
+     *
+     * @param reader the source of the CSV text
+     */
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+        this.buffer = new char[BUFFER_SIZE];
+        this.position = 0;
+        this.limit = 0;
+        this.field = new StringBuilder();
+        this.row = new ArrayList<>();
+    }
+
+    /**
+     * Reads a CSV file from the specified path and passes each row to the handler in order.
+     *
+     * @param path the path to the CSV file
+     * @param handler the callback that receives each row
+     * @throws IOException if there is an error reading the file, or if the handler rejects a row
+     */
+    public static void read(String path, RowHandler handler) throws IOException {
+        try (CsvReader reader = new CsvReader(new InputStreamReader(Files.newInputStream(Path.of(path)), StandardCharsets.UTF_8))) {
+            String[] row;
+            while ((row = reader.readRow()) != null) {
+                handler.handle(row);
+            }
+        }
+    }
+
+    /**
+     * Parses a single CSV line into its fields.
+     *
+     * @param line the CSV line
+     * @return the fields of the line
+     * @throws IOException if the line cannot be parsed
+     */
+    public static String[] parseLine(String line) throws IOException {
+        try (CsvReader reader = new CsvReader(new StringReader(line))) {
+            String[] row = reader.readRow();
+            return row == null ? new String[]{ "" } : row;
+        }
+    }
+
+    /**
+     * Reads the next non-blank row.
+     *
+     * @return the fields of the row, or null if the end of the input has been reached
+     * @throws IOException if there is an error reading the input or a quoted field is not closed
+     */
+    public String[] readRow() throws IOException {
+        row.clear();
+        field.setLength(0);
+
+        int c = read();
+        while (c == '\n' || c == '\r') c = read();
+        if (c == -1) return null;
+
+        while (true) {
+            if (c == '"' && field.length() == 0) {
+                readQuoted();
+                c = read();
+                continue;
+            }
+            if (c == ',') {
+                row.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == '\r' || c == -1) {
+                row.add(field.toString());
+                return row.toArray(new String[0]);
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * Reads the rest of a quoted field, after its opening quote, into the field buffer.
+     *
+     * @throws IOException if there is an error reading the input or the field is not closed
+     */
+    private void readQuoted() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == -1) throw new IOException("Invalid line: unterminated quoted field " + field);
+            if (c == '"') {
+                if (peek() != '"') return;
+                read();
+            }
+            field.append((char) c);
+        }
+    }
+
+    /**
+     * Returns the next character without consuming it.
+     *
+     * @return the next character, or -1 at the end of the input
+     * @throws IOException if there is an error reading the input
+     */
+    private int peek() throws IOException {
+        if (position == limit && !fill()) return -1;
+        return buffer[position];
+    }
+
+    /**
+     * Consumes and returns the next character.
+     *
+     * @return the next character, or -1 at the end of the input
+     * @throws IOException if there is an error reading the input
+     */
+    private int read() throws IOException {
+        if (position == limit && !fill()) return -1;
+        return buffer[position++];
+    }
+
+    /**
+     * Refills the character buffer from the underlying reader.
+     *
+     * @return true if more characters are available, false at the end of the input
+     * @throws IOException if there is an error reading the input
+     */
+    private boolean fill() throws IOException {
+        int count = reader.read(buffer, 0, buffer.length);
+        if (count <= 0) return false;
+        position = 0;
+        limit = count;
+        return true;
+    }
+
+    /**
+     * Closes the underlying reader.
+     *
+     * @throws IOException if there is an error closing the reader
+     */
+    public void close() throws IOException {
+        reader.close();
+    }
+}
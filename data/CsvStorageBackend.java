@@ -0,0 +1,322 @@
+package data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Storage backend that keeps each table in its own CSV file.
+ * A change marks its table dirty and the file is rewritten in the background by a {@link WriteBehindFlusher},
+ * so any number of changes between two flushes cost a single write of the file.
+ *
+ * Appointments and replenishment requests can instead be journaled: each change is appended to a {@link TableJournal}
+ * next to the file of its table, and the file is only rewritten once the journal holds enough records.
+ * When a journaled table is loaded, the journal is replayed on top of the file, so the loader must let a later row
+ * replace an earlier row with the same key.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class CsvStorageBackend implements StorageBackend {
+    /**
+     * Number of journal records after which the file of a journaled table is rewritten in full.
+     */
+    public static final int DEFAULT_COMPACTION_INTERVAL = 500;
+
+    /**
+     * Default time in milliseconds between background writes of changed files.
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL = 50;
+
+    /**
+     * Tables whose file is created empty when it does not exist. The other tables must exist.
+     */
+    private static final EnumSet<StorageTable> CREATED_IF_MISSING = EnumSet.of(StorageTable.Account, StorageTable.Request, StorageTable.Appointment);
+
+    /**
+     * Tables whose changes are appended to a journal, unless journaling is disabled.
+     */
+    private static final EnumSet<StorageTable> JOURNALED = EnumSet.of(StorageTable.Request, StorageTable.Appointment);
+
+    private EnumMap<StorageTable, String> paths;
+    private EnumMap<StorageTable, Supplier<Collection<? extends CsvCompatible>>> sources;
+    private WriteBehindFlusher flusher;
+    private int compactionInterval;
+    private EnumMap<StorageTable, TableJournal> journals;
+
+    /**
+     * Constructs a CsvStorageBackend that stores each table in the given file.
+     * The ID sequences are stored in Sequence_List.csv, next to the account list.
+     *
+     * @param staffListPath the path to the staff list CSV file
+     * @param patientListPath the path to the patient list CSV file
+     * @param medicineListPath the path to the medicine list CSV file
+     * @param requestListPath the path to the replenishment request list CSV file
+     * @param accountListPath the path to the account list CSV file
+     * @param appointmentListPath the path to the appointment list CSV file
+     * @param compactionInterval the number of journal records between rewrites of a journaled file,
+     *                           or 0 to rewrite the appointment and request files on every flush instead of journaling
+     */
+    public CsvStorageBackend(
+        String staffListPath,
+        String patientListPath,
+        String medicineListPath,
+        String requestListPath,
+        String accountListPath,
+        String appointmentListPath,
+        int compactionInterval
+    ) {
+        this(
+            staffListPath, patientListPath, medicineListPath, requestListPath, accountListPath, appointmentListPath,
+            Path.of(accountListPath).resolveSibling("Sequence_List.csv").toString(), compactionInterval
+        );
+    }
+
+    /**
+     * Constructs a CsvStorageBackend that stores each table in the given file.
+     * The keyword index of the outcome records is stored in Keyword_Index.csv, next to the appointment list.
+     *
+     * @param staffListPath the path to the staff list CSV file
+     * @param patientListPath the path to the patient list CSV file
+     * @param medicineListPath the path to the medicine list CSV file
+     * @param requestListPath the path to the replenishment request list CSV file
+     * @param accountListPath the path to the account list CSV file
+     * @param appointmentListPath the path to the appointment list CSV file
+     * @param sequenceListPath the path to the ID sequence CSV file
+     * @param compactionInterval the number of journal records between rewrites of a journaled file,
+     *                           or 0 to rewrite the appointment and request files on every flush instead of journaling
+     */
+    public CsvStorageBackend(
+        String staffListPath,
+        String patientListPath,
+        String medicineListPath,
+        String requestListPath,
+        String accountListPath,
+        String appointmentListPath,
+        String sequenceListPath,
+        int compactionInterval
+    ) {
+        this.paths = new EnumMap<>(StorageTable.class);
+        paths.put(StorageTable.Staff, staffListPath);
+        paths.put(StorageTable.Patient, patientListPath);
+        paths.put(StorageTable.Medicine, medicineListPath);
+        paths.put(StorageTable.Request, requestListPath);
+        paths.put(StorageTable.Account, accountListPath);
+        paths.put(StorageTable.Appointment, appointmentListPath);
+        paths.put(StorageTable.Sequence, sequenceListPath);
+        paths.put(StorageTable.Keyword, Path.of(appointmentListPath).resolveSibling("Keyword_Index.csv").toString());
+
+        this.sources = new EnumMap<>(StorageTable.class);
+        this.flusher = new WriteBehindFlusher(DEFAULT_FLUSH_INTERVAL);
+        this.compactionInterval = compactionInterval;
+        this.journals = new EnumMap<>(StorageTable.class);
+    }
+
+    /**
+     * Checks whether the file of a table exists.
+     *
+     * @param table the table to check
+     * @return true if the file exists
+     */
+    public boolean exists(StorageTable table) {
+        return Files.exists(Path.of(paths.get(table)));
+    }
+
+    /**
+     * Reads the file of a table row by row. If the file does not exist and the table is one that starts empty,
+     * an empty file is created. For a journaled table, the journal is replayed after the file.
+     * Each table has its own file, so different tables can be loaded at the same time.
+     *
+     * @param table the table to read
+     * @param handler the callback that receives each row
+     * @throws IOException if there is an error reading the file, or if the handler rejects a row
+     */
+    public void load(StorageTable table, CsvReader.RowHandler handler) throws IOException {
+        String path = paths.get(table);
+        if (!exists(table) && CREATED_IF_MISSING.contains(table)) {
+            System.out.printf("%s does not exist, creating new database...\n\n", path);
+            WriteFile.writeFile(new ArrayList<CsvCompatible>(), path);
+        } else {
+            CsvReader.read(path, handler);
+        }
+
+        if (isJournaled(table)) {
+            ArrayList<String> lines;
+            synchronized (this) {
+                lines = openJournal(table);
+            }
+            for (String line : lines) {
+                handler.handle(CsvReader.parseLine(line));
+            }
+        }
+    }
+
+    /**
+     * Registers the source of a table so that its file can be rewritten.
+     *
+     * @param table the table
+     * @param source returns a copy of the current records of the table
+     */
+    public synchronized void attach(StorageTable table, Supplier<Collection<? extends CsvCompatible>> source) {
+        sources.put(table, source);
+        flusher.register(paths.get(table), source);
+    }
+
+    /**
+     * Records a change to a record. Changes to a journaled table are appended to its journal and forced to disk;
+     * any other change marks the file of its table dirty.
+     *
+     * @param table the table of the record
+     * @param key the key of the record within its table
+     * @param item the current state of the record
+     * @return for a journaled table, a future that has already completed, or completed exceptionally if the change
+     *         could not be appended to the journal; otherwise the future of the next write of the table's file
+     */
+    public synchronized CompletableFuture<Void> upsert(StorageTable table, String key, CsvCompatible item) {
+        if (!isJournaled(table)) return flusher.markDirty(paths.get(table));
+
+        try {
+            TableJournal journal = journals.get(table);
+            if (journal == null) {
+                openJournal(table);
+                journal = journals.get(table);
+            }
+            journal.append(item);
+            if (journal.getRecordCount() >= compactionInterval) {
+                journal.compact(sources.get(table).get(), paths.get(table));
+            }
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Records changes to several records. Changes to a journaled table are appended to its journal in a single write
+     * and forced to disk once; any other change marks the file of its table dirty.
+     *
+     * @param table the table of the records
+     * @param items the current state of each record, by its key within the table
+     * @return for a journaled table, a future that has already completed, or completed exceptionally if the changes
+     *         could not be appended to the journal; otherwise the future of the next write of the table's file
+     */
+    public synchronized CompletableFuture<Void> upsertAll(StorageTable table, Map<String, ? extends CsvCompatible> items) {
+        if (!isJournaled(table)) return flusher.markDirty(paths.get(table));
+
+        try {
+            TableJournal journal = journals.get(table);
+            if (journal == null) {
+                openJournal(table);
+                journal = journals.get(table);
+            }
+            journal.appendAll(items.values());
+            if (journal.getRecordCount() >= compactionInterval) {
+                journal.compact(sources.get(table).get(), paths.get(table));
+            }
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Records the removal of a record by marking the file of its table dirty.
+     * Journaled tables are compacted immediately, since the journal cannot record a removal.
+     *
+     * @param table the table of the record
+     * @param key the key of the record within its table
+     * @return for a journaled table, a future that has already completed, or completed exceptionally if the file
+     *         could not be compacted; otherwise the future of the next write of the table's file
+     */
+    public synchronized CompletableFuture<Void> delete(StorageTable table, String key) {
+        if (!isJournaled(table)) return flusher.markDirty(paths.get(table));
+
+        try {
+            if (!journals.containsKey(table)) openJournal(table);
+            journals.get(table).compact(sources.get(table).get(), paths.get(table));
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Writes every dirty file now and waits until they are on disk.
+     */
+    public void flush() {
+        flusher.flush();
+    }
+
+    /**
+     * Changes the time between background writes of dirty files.
+     *
+     * @param intervalMillis the time between writes in milliseconds
+     */
+    public void setFlushInterval(long intervalMillis) {
+        flusher.setInterval(intervalMillis);
+    }
+
+    /**
+     * Returns the latest modification time of the table files and their journals.
+     *
+     * @return the time of the last change in milliseconds since the epoch
+     * @throws IOException if a modification time cannot be read
+     */
+    public long lastModified() throws IOException {
+        ArrayList<String> files = new ArrayList<>(paths.values());
+        for (StorageTable table : JOURNALED) {
+            files.add(paths.get(table) + ".journal");
+        }
+
+        long latest = 0;
+        for (String file : files) {
+            Path path = Path.of(file);
+            if (Files.exists(path)) latest = Math.max(latest, Files.getLastModifiedTime(path).toMillis());
+        }
+        return latest;
+    }
+
+    /**
+     * Writes every dirty file, stops the background writer and closes the journals.
+     *
+     * @throws IOException if there is an error closing a journal
+     */
+    public synchronized void close() throws IOException {
+        flusher.close();
+        for (TableJournal journal : journals.values()) {
+            journal.close();
+        }
+        journals.clear();
+    }
+
+    /**
+     * Checks whether changes to a table are appended to a journal.
+     *
+     * @param table the table to check
+     * @return true if the table is journaled
+     */
+    private boolean isJournaled(StorageTable table) {
+        return compactionInterval > 0 && JOURNALED.contains(table);
+    }
+
+    /**
+     * Opens the journal of a table and reads its records, truncating any torn record.
+     *
+     * @param table the journaled table
+     * @return the CSV lines of the journaled records, oldest first
+     * @throws IOException if the journal cannot be opened or read
+     */
+    private ArrayList<String> openJournal(StorageTable table) throws IOException {
+        TableJournal journal = journals.remove(table);
+        if (journal != null) journal.close();
+        journal = new TableJournal(paths.get(table) + ".journal");
+        journals.put(table, journal);
+        return journal.replay();
+    }
+}
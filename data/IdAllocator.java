@@ -0,0 +1,150 @@
+package data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import user.UserId;
+
+/**
+ * Hands out unique IDs for users and appointments.
+ *
+ * IDs are drawn from named sequences. User IDs use one sequence per prefix ('P', 'D', 'A'), so patients and
+ * pharmacists, which share the 'P' prefix, never get the same ID. Appointment IDs use the {@link #APPOINTMENT} sequence,
+ * and replenishment request IDs use the {@link #REQUEST} sequence.
+ * Each sequence keeps a high-water mark, the next ID it will hand out, which only ever increases.
+ * The marks are stored in the {@link StorageTable#Sequence} table, so IDs of removed users are never reused after a restart.
+ *
+ * Records loaded from storage are passed to {@link #observe(String, int)}, which raises the mark past them in case
+ * the stored mark was not written before the system stopped.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class IdAllocator {
+    /**
+     * Name of the sequence that appointment IDs are drawn from.
+     */
+    public static final String APPOINTMENT = "Appointment";
+
+    /**
+     * Name of the sequence that replenishment request IDs are drawn from.
+     */
+    public static final String REQUEST = "Request";
+
+    private HashMap<String, Integer> marks;
+    private StorageBackend backend;
+
+    /**
+     * Constructs an IdAllocator and loads the stored high-water marks from the storage backend.
+     *
+     * @param backend the storage backend holding the sequence table
+     * @throws IOException if there is an error reading the sequence table
+     */
+    public IdAllocator(StorageBackend backend) throws IOException {
+        this.marks = new HashMap<>();
+        this.backend = backend;
+
+        if (backend.exists(StorageTable.Sequence)) {
+            backend.load(StorageTable.Sequence, line -> {
+                if (line.length != 2) {
+                    throw new IOException("Invalid line " + String.join(",", line) + ": expected 2 elements.");
+                }
+                try {
+                    marks.put(line[0], Integer.parseInt(line[1]));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid line: expected " + line[1] + " to be an integer.");
+                }
+            });
+        }
+
+        backend.attach(StorageTable.Sequence, () -> {
+            synchronized (this) {
+                Collection<CsvCompatible> rows = new ArrayList<>();
+                for (Map.Entry<String, Integer> entry : marks.entrySet()) {
+                    rows.add(row(entry.getKey(), entry.getValue()));
+                }
+                return rows;
+            }
+        });
+    }
+
+    /**
+     * Records that an ID has been used, raising the high-water mark of its sequence past it if necessary.
+     * The mark is not written to storage until the next ID is handed out.
+     *
+     * @param sequence the name of the sequence
+     * @param id the ID in use
+     */
+    public synchronized void observe(String sequence, int id) {
+        if (id >= getMark(sequence)) marks.put(sequence, id + 1);
+    }
+
+    /**
+     * Records that a user ID has been used.
+     *
+     * @param id the user ID in use
+     */
+    public void observe(UserId id) {
+        observe(String.valueOf(id.getPrefix()), id.getNum());
+    }
+
+    /**
+     * Returns the next ID that a sequence will hand out, without using it.
+     *
+     * @param sequence the name of the sequence
+     * @return the high-water mark of the sequence
+     */
+    public synchronized int getMark(String sequence) {
+        return marks.getOrDefault(sequence, 0);
+    }
+
+    /**
+     * Hands out the next ID of a sequence.
+     *
+     * @param sequence the name of the sequence
+     * @return the new ID
+     */
+    public int next(String sequence) {
+        return reserve(sequence, 1);
+    }
+
+    /**
+     * Hands out the next user ID with the given prefix.
+     *
+     * @param prefix the prefix of the user ID
+     * @return the new user ID
+     */
+    public UserId nextUserId(char prefix) {
+        return UserId.of(prefix, next(String.valueOf(prefix)));
+    }
+
+    /**
+     * Reserves a block of consecutive IDs in a sequence, such as for a bulk import.
+     * The whole block is written to storage at once, so the IDs in it can be used without calling this class again.
+     *
+     * @param sequence the name of the sequence
+     * @param count the number of IDs to reserve, at least 1
+     * @return the first ID of the block
+     */
+    public synchronized int reserve(String sequence, int count) {
+        if (count < 1) throw new IllegalArgumentException("Must reserve at least one ID.");
+        int first = getMark(sequence);
+        marks.put(sequence, first + count);
+        StorageBackend.reportFailure(backend.upsert(StorageTable.Sequence, sequence, row(sequence, first + count)), "Error updating file: ");
+        return first;
+    }
+
+    /**
+     * Returns the stored form of a high-water mark.
+     *
+     * @param sequence the name of the sequence
+     * @param mark the high-water mark
+     * @return a record holding the sequence name and mark
+     */
+    private static CsvCompatible row(String sequence, int mark) {
+        String line = CsvCompatible.quote(sequence) + "," + mark;
+        return () -> line;
+    }
+}
@@ -0,0 +1,243 @@
+package data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Embedded storage backend that keeps every table in a single append-only log.
+ * Each change appends one record, {@code U,<table>,<key>,<fields...>} for an upsert or {@code D,<table>,<key>}
+ * for a delete, so a change costs one small append whatever the size of its table. On startup the log is
+ * replayed to rebuild the latest row of every record.
+ *
+ * Appends reach the OS when they are made and are forced to disk by {@link #flush()}. Once the log holds more
+ * than twice as many records as there are live rows, it is compacted by rewriting it with one record per row.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class LogStorageBackend implements StorageBackend {
+    /**
+     * The log is never compacted while it holds fewer records than this.
+     */
+    public static final int MIN_COMPACTION_RECORDS = 1000;
+
+    private AppendLog log;
+    private EnumMap<StorageTable, LinkedHashMap<String, String[]>> tables;
+    private int liveRows;
+
+    /**
+     * Opens the log at the given path, creating it if it does not exist, and replays it.
+     *
+     * @param path the path of the log file
+     * @throws IOException if the log cannot be opened or holds an invalid record
+     */
+    public LogStorageBackend(String path) throws IOException {
+        this.log = new AppendLog(path);
+        this.tables = new EnumMap<>(StorageTable.class);
+        this.liveRows = 0;
+
+        for (String line : log.replay()) {
+            String[] fields = CsvReader.parseLine(line);
+            if (fields.length < 3) throw new IOException("Invalid log record: " + line);
+            StorageTable table;
+            try {
+                table = StorageTable.valueOf(fields[1]);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid log record: unknown table " + fields[1] + ".");
+            }
+            switch (fields[0]) {
+                case "U":
+                    put(table, fields[2], Arrays.copyOfRange(fields, 3, fields.length));
+                    break;
+                case "D":
+                    remove(table, fields[2]);
+                    break;
+                default:
+                    throw new IOException("Invalid log record: unknown operation " + fields[0] + ".");
+            }
+        }
+    }
+
+    /**
+     * Checks whether a record has ever been written to a table.
+     *
+     * @param table the table to check
+     * @return true if the table exists
+     */
+    public synchronized boolean exists(StorageTable table) {
+        return tables.containsKey(table);
+    }
+
+    /**
+     * Passes the latest row of every record of a table to the handler, in the order the records were first written.
+     *
+     * @param table the table to read
+     * @param handler the callback that receives each row
+     * @throws IOException if the handler rejects a row
+     */
+    public void load(StorageTable table, CsvReader.RowHandler handler) throws IOException {
+        ArrayList<String[]> rows;
+        synchronized (this) {
+            LinkedHashMap<String, String[]> records = tables.get(table);
+            if (records == null) return;
+            rows = new ArrayList<>(records.values());
+        }
+        for (String[] row : rows) {
+            handler.handle(row);
+        }
+    }
+
+    /**
+     * Does nothing, since every change is logged individually.
+     *
+     * @param table the table
+     * @param source returns a copy of the current records of the table
+     */
+    public void attach(StorageTable table, Supplier<Collection<? extends CsvCompatible>> source) {
+    }
+
+    /**
+     * Appends the current state of a record to the log.
+     *
+     * @param table the table of the record
+     * @param key the key of the record within its table
+     * @param item the current state of the record
+     * @return a future that has already completed once the record is appended, or completed exceptionally if there
+     *         was an error writing to the log
+     */
+    public synchronized CompletableFuture<Void> upsert(StorageTable table, String key, CsvCompatible item) {
+        try {
+            String line = item.toCsv();
+            log.append("U," + table + "," + CsvCompatible.quote(key) + "," + line);
+            put(table, key, CsvReader.parseLine(line));
+            compactIfNeeded();
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Appends the current state of several records to the log in a single write.
+     *
+     * @param table the table of the records
+     * @param items the current state of each record, by its key within the table
+     * @return a future that has already completed once the records are appended, or completed exceptionally if there
+     *         was an error writing to the log
+     */
+    public synchronized CompletableFuture<Void> upsertAll(StorageTable table, Map<String, ? extends CsvCompatible> items) {
+        ArrayList<String> lines = new ArrayList<>(items.size());
+        LinkedHashMap<String, String> rows = new LinkedHashMap<>();
+        for (Map.Entry<String, ? extends CsvCompatible> item : items.entrySet()) {
+            String line = item.getValue().toCsv();
+            lines.add("U," + table + "," + CsvCompatible.quote(item.getKey()) + "," + line);
+            rows.put(item.getKey(), line);
+        }
+        try {
+            log.append(lines);
+            for (Map.Entry<String, String> row : rows.entrySet()) {
+                put(table, row.getKey(), CsvReader.parseLine(row.getValue()));
+            }
+            compactIfNeeded();
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Appends the removal of a record to the log.
+     *
+     * @param table the table of the record
+     * @param key the key of the record within its table
+     * @return a future that has already completed once the removal is appended, or completed exceptionally if there
+     *         was an error writing to the log
+     */
+    public synchronized CompletableFuture<Void> delete(StorageTable table, String key) {
+        try {
+            log.append("D," + table + "," + CsvCompatible.quote(key));
+            remove(table, key);
+            compactIfNeeded();
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Forces every appended record to disk.
+     */
+    public synchronized void flush() {
+        try {
+            log.force();
+        } catch (IOException e) {
+            System.out.println("Error writing log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the time the log was last changed.
+     *
+     * @return the modification time of the log in milliseconds since the epoch
+     * @throws IOException if the modification time cannot be read
+     */
+    public long lastModified() throws IOException {
+        return log.lastModified();
+    }
+
+    /**
+     * Forces every appended record to disk and closes the log.
+     *
+     * @throws IOException if there is an error closing the log
+     */
+    public synchronized void close() throws IOException {
+        log.force();
+        log.close();
+    }
+
+    /**
+     * Stores the latest row of a record.
+     *
+     * @param table the table of the record
+     * @param key the key of the record
+     * @param row the fields of the record
+     */
+    private void put(StorageTable table, String key, String[] row) {
+        if (tables.computeIfAbsent(table, t -> new LinkedHashMap<>()).put(key, row) == null) liveRows++;
+    }
+
+    /**
+     * Removes a record, keeping its table marked as existing.
+     *
+     * @param table the table of the record
+     * @param key the key of the record
+     */
+    private void remove(StorageTable table, String key) {
+        if (tables.computeIfAbsent(table, t -> new LinkedHashMap<>()).remove(key) != null) liveRows--;
+    }
+
+    /**
+     * Rewrites the log with one record per live row once it holds more than twice as many records.
+     *
+     * @throws IOException if there is an error rewriting the log
+     */
+    private void compactIfNeeded() throws IOException {
+        int records = log.getRecordCount();
+        if (records < MIN_COMPACTION_RECORDS || records <= 2 * liveRows) return;
+
+        ArrayList<String> lines = new ArrayList<>(liveRows);
+        for (Map.Entry<StorageTable, LinkedHashMap<String, String[]>> table : tables.entrySet()) {
+            for (Map.Entry<String, String[]> row : table.getValue().entrySet()) {
+                String fields = String.join(",", Arrays.stream(row.getValue()).map(CsvCompatible::quote).toArray(String[]::new));
+                lines.add("U," + table.getKey() + "," + CsvCompatible.quote(row.getKey()) + "," + fields);
+            }
+        }
+        log.rewrite(lines);
+    }
+}
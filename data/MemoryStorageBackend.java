@@ -0,0 +1,123 @@
+package data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Storage backend that keeps every table in memory and never writes to disk.
+ * Changes only store a reference to the changed record, so the databases can be exercised and benchmarked
+ * without any file I/O. Records are converted to rows only when a table is loaded.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class MemoryStorageBackend implements StorageBackend {
+    private EnumMap<StorageTable, LinkedHashMap<String, CsvCompatible>> tables;
+
+    /**
+     * Constructs an empty MemoryStorageBackend.
+     */
+    public MemoryStorageBackend() {
+        this.tables = new EnumMap<>(StorageTable.class);
+    }
+
+    /**
+     * Constructs a MemoryStorageBackend holding a copy of every table of another backend.
+     *
+     * @param source the backend to copy from
+     * @throws IOException if there is an error reading the source
+     */
+    public MemoryStorageBackend(StorageBackend source) throws IOException {
+        this();
+        StorageBackend.copy(source, this);
+    }
+
+    /**
+     * Checks whether a table has been written.
+     *
+     * @param table the table to check
+     * @return true if a record has been written to the table
+     */
+    public synchronized boolean exists(StorageTable table) {
+        return tables.containsKey(table);
+    }
+
+    /**
+     * Converts every record of a table to a row and passes it to the handler in order.
+     *
+     * @param table the table to read
+     * @param handler the callback that receives each row
+     * @throws IOException if the handler rejects a row
+     */
+    public void load(StorageTable table, CsvReader.RowHandler handler) throws IOException {
+        ArrayList<CsvCompatible> items;
+        synchronized (this) {
+            LinkedHashMap<String, CsvCompatible> rows = tables.get(table);
+            if (rows == null) return;
+            items = new ArrayList<>(rows.values());
+        }
+        for (CsvCompatible item : items) {
+            handler.handle(CsvReader.parseLine(item.toCsv()));
+        }
+    }
+
+    /**
+     * Does nothing, since the records are kept by reference.
+     *
+     * @param table the table
+     * @param source returns a copy of the current records of the table
+     */
+    public void attach(StorageTable table, Supplier<Collection<? extends CsvCompatible>> source) {
+    }
+
+    /**
+     * Stores a reference to a record.
+     *
+     * @param table the table of the record
+     * @param key the key of the record within its table
+     * @param item the record
+     * @return a future that has already completed
+     */
+    public synchronized CompletableFuture<Void> upsert(StorageTable table, String key, CsvCompatible item) {
+        tables.computeIfAbsent(table, t -> new LinkedHashMap<>()).put(key, item);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Removes a record.
+     *
+     * @param table the table of the record
+     * @param key the key of the record within its table
+     * @return a future that has already completed
+     */
+    public synchronized CompletableFuture<Void> delete(StorageTable table, String key) {
+        LinkedHashMap<String, CsvCompatible> rows = tables.get(table);
+        if (rows != null) rows.remove(key);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Does nothing, since nothing is stored on disk.
+     */
+    public void flush() {
+    }
+
+    /**
+     * Returns {@link Long#MAX_VALUE}, since nothing is stored on disk.
+     *
+     * @return {@link Long#MAX_VALUE}
+     */
+    public long lastModified() {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Does nothing, since the backend holds no resources.
+     */
+    public void close() {
+    }
+}
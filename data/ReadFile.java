@@ -1,10 +1,7 @@
 package data;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.List;
 
 import appointment.Appointment;
 import medicine.Medicine;
@@ -22,28 +19,12 @@ import user.UserId;
  * Utility class for reading data from CSV files and converting them into corresponding objects.
  * This class handles the reading and parsing of CSV files to create lists of objects for users,
  * staff, patients, appointments, medicines, and replenishment requests.
+ * Files are streamed through {@link CsvReader}, and each row is parsed as soon as it is read.
  * @author NATANAEL TAN TIONG OON
  * @version 1.0
  * @since 2024-11-21
  */
 public class ReadFile {
-    /**
-     * Reads a CSV file from the specified path and returns a 2D array where each row represents a line of the CSV,
-     * and each element in the row represents a field in that line.
-     *
-     * @param path the path to the CSV file
-     * @return a 2D array containing the CSV data
-     * @throws IOException if there is an error reading the file
-     */
-    private static String[][] readCSV(String path) throws IOException {
-        List<String> lines = Files.readAllLines(Paths.get(path));
-        String[][] lines_separated = new String[lines.size()][];
-        for (int i = 0; i < lines_separated.length; i++) {
-            lines_separated[i] = lines.get(i).split(",", -1);
-        }
-        return lines_separated;
-    }
-
     /**
      * Reads a CSV file containing user account information and returns a list of UserAccount objects.
      * 
@@ -52,35 +33,41 @@ public class ReadFile {
      * @throws IOException if there is an error reading or parsing the file
      */
     public static ArrayList<UserAccount> readAccountListFile(String path) throws IOException {
-        String[][] values = ReadFile.readCSV(path);
-
         ArrayList<UserAccount> accounts = new ArrayList<UserAccount>();
-        for (int i = 0; i < values.length; i++) {
-            String[] line = values[i];
-            if (line.length != 4) {
-                String line_full = String.join(",", line);
-                throw new IOException("Invalid line " + line_full + ": expected 4 elements.");
-            }
-            String username = line[1], password = line[2];
-
-            UserId id;
-            try {
-                id = new UserId(line[0]);
-            } catch (IllegalArgumentException e) {
-                throw new IOException("Invalid line: expected " + line[0] + "to be a user ID.");
-            }
-
-            Role role;
-            try {
-                role = Role.valueOf(line[3]);
-            } catch (IllegalArgumentException e) {
-                throw new IOException("Invalid line: expected " + line[3] + " to be one of 'Patient', 'Doctor', 'Pharmacist', 'Administrator'.");
-            }
-
-            accounts.add(new UserAccount(id, username, password, role));
-        }
+        CsvReader.read(path, line -> accounts.add(parseAccount(line)));
         return accounts;
     }
+
+    /**
+     * Parses one row of the account list file into a UserAccount object.
+     *
+     * @param line the fields of the row
+     * @return the parsed UserAccount
+     * @throws IOException if the row is invalid
+     */
+    public static UserAccount parseAccount(String[] line) throws IOException {
+        if (line.length != 4) {
+            String line_full = String.join(",", line);
+            throw new IOException("Invalid line " + line_full + ": expected 4 elements.");
+        }
+        String username = line[1], password = line[2];
+
+        UserId id;
+        try {
+            id = UserId.parse(line[0]);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid line: expected " + line[0] + "to be a user ID.");
+        }
+
+        Role role;
+        try {
+            role = Role.valueOf(line[3]);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid line: expected " + line[3] + " to be one of 'Patient', 'Doctor', 'Pharmacist', 'Administrator'.");
+        }
+
+        return new UserAccount(id, username, password, role);
+    }
     
     /**
      * Reads a CSV file containing staff information and returns a list of Staff objects.
@@ -90,52 +77,51 @@ public class ReadFile {
      * @throws IOException if there is an error reading or parsing the file
      */
     public static ArrayList<Staff> readStaffListFile(String path) throws IOException {
-        String[][] values = ReadFile.readCSV(path);
-
         ArrayList<Staff> staffs = new ArrayList<Staff>();
-        for (int i = 0; i < values.length; i++) {
-            String[] line = values[i];
-            if (line.length != 5) {
-                String line_full = String.join(",", line);
-                throw new IOException("Invalid line " + line_full + ": expected 5 elements.");
-            }
-            String name = line[1], gender = line[3];
-
-            UserId id;
-            try {
-                id = new UserId(line[0]);
-            } catch (IllegalArgumentException e) {
-                e.printStackTrace();
-                throw new IOException("Invalid line: expected " + line[0] + "to be a user ID.");
-            }
-
-            Role role = Role.valueOf(line[2]);
-            int age;
-            try {
-                age = Integer.parseInt(line[4]);
-            } catch (NumberFormatException e) {
-                throw new IOException("Invalid line: expected " + line[4] + " to be an integer.");
-            }
-
-            Staff staff;
-            switch (role) {
-                case Doctor:
-                    staff = new Doctor(id, name, role, gender, age);
-                    break;
-                case Pharmacist:
-                    staff = new Pharmacist(id, name, role, gender, age);
-                    break;
-                case Administrator:
-                    staff = new Administrator(id, name, role, gender, age);
-                    break;
-                default:
-                    throw new IOException("Invalid line: expected " + line[2] + " to be one of 'Doctor', 'Pharmacist', 'Administrator'.");
-            }
-
-            staffs.add(staff);
+        CsvReader.read(path, line -> staffs.add(parseStaff(line)));
+        return staffs;
+    }
+
+    /**
+     * Parses one row of the staff list file into a Doctor, Pharmacist or Administrator object.
+     *
+     * @param line the fields of the row
+     * @return the parsed Staff
+     * @throws IOException if the row is invalid
+     */
+    public static Staff parseStaff(String[] line) throws IOException {
+        if (line.length != 5) {
+            String line_full = String.join(",", line);
+            throw new IOException("Invalid line " + line_full + ": expected 5 elements.");
+        }
+        String name = line[1], gender = line[3];
+
+        UserId id;
+        try {
+            id = UserId.parse(line[0]);
+        } catch (IllegalArgumentException e) {
+            e.printStackTrace();
+            throw new IOException("Invalid line: expected " + line[0] + "to be a user ID.");
         }
 
-        return staffs;
+        Role role = Role.valueOf(line[2]);
+        int age;
+        try {
+            age = Integer.parseInt(line[4]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid line: expected " + line[4] + " to be an integer.");
+        }
+
+        switch (role) {
+            case Doctor:
+                return new Doctor(id, name, role, gender, age);
+            case Pharmacist:
+                return new Pharmacist(id, name, role, gender, age);
+            case Administrator:
+                return new Administrator(id, name, role, gender, age);
+            default:
+                throw new IOException("Invalid line: expected " + line[2] + " to be one of 'Doctor', 'Pharmacist', 'Administrator'.");
+        }
     }
     
     /**
@@ -146,27 +132,32 @@ public class ReadFile {
      * @throws IOException if there is an error reading or parsing the file
      */
     public static ArrayList<Patient> readPatientListFile(String path) throws IOException {
-        String[][] values = ReadFile.readCSV(path);
-
         ArrayList<Patient> patients = new ArrayList<Patient>();
-        for (int i = 0; i < values.length; i++) {
-            String[] line = values[i];
-            if (line.length != 6) {
-                String line_full = String.join(",", line);
-                throw new IOException("Invalid line " + line_full + ": expected 6 elements.");
-            }
-            String name = line[1], birthDate = line[2], gender = line[3], bloodType = line[4], contactInfo = line[5];
-            UserId id;
-            try {
-                id = new UserId(line[0]);
-            } catch (IllegalArgumentException e) {
-                throw new IOException("Invalid line: expected " + line[0] + "to be a user ID.");
-            }
-
-            patients.add(new Patient(id, name, birthDate, gender, bloodType, contactInfo));
+        CsvReader.read(path, line -> patients.add(parsePatient(line)));
+        return patients;
+    }
+
+    /**
+     * Parses one row of the patient list file into a Patient object.
+     *
+     * @param line the fields of the row
+     * @return the parsed Patient
+     * @throws IOException if the row is invalid
+     */
+    public static Patient parsePatient(String[] line) throws IOException {
+        if (line.length != 6) {
+            String line_full = String.join(",", line);
+            throw new IOException("Invalid line " + line_full + ": expected 6 elements.");
+        }
+        String name = line[1], birthDate = line[2], gender = line[3], bloodType = line[4], contactInfo = line[5];
+        UserId id;
+        try {
+            id = UserId.parse(line[0]);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid line: expected " + line[0] + "to be a user ID.");
         }
 
-        return patients;
+        return new Patient(id, name, birthDate, gender, bloodType, contactInfo);
     }
 
     /**
@@ -177,32 +168,37 @@ public class ReadFile {
      * @throws IOException if there is an error reading or parsing the file
      */
     public static ArrayList<Medicine> readMedicineListFile(String path) throws IOException {
-        String[][] values = ReadFile.readCSV(path);
-
         ArrayList<Medicine> inventory = new ArrayList<Medicine>();
-        for (int i = 0; i < values.length; i++) {
-            String[] line = values[i];
-            if (line.length != 3) {
-                String line_full = String.join(",", line);
-                throw new IOException("Invalid line " + line_full + ": expected 3 elements.");
-            }
-            String name = line[0];
-            int initialStock, lowStockLevelAlert;
-            try {
-                initialStock = Integer.parseInt(line[1]);
-            } catch (NumberFormatException e) {
-                throw new IOException("Invalid line: expected " + line[1] + " to be an integer.");
-            }
-            try {
-                lowStockLevelAlert = Integer.parseInt(line[2]);
-            } catch (NumberFormatException e) {
-                throw new IOException("Invalid line: expected " + line[2] + " to be an integer.");
-            }
-
-            inventory.add(new Medicine(name, initialStock, lowStockLevelAlert));
+        CsvReader.read(path, line -> inventory.add(parseMedicine(line)));
+        return inventory;
+    }
+
+    /**
+     * Parses one row of the medicine list file into a Medicine object.
+     *
+     * @param line the fields of the row
+     * @return the parsed Medicine
+     * @throws IOException if the row is invalid
+     */
+    public static Medicine parseMedicine(String[] line) throws IOException {
+        if (line.length != 3) {
+            String line_full = String.join(",", line);
+            throw new IOException("Invalid line " + line_full + ": expected 3 elements.");
+        }
+        String name = line[0];
+        int initialStock, lowStockLevelAlert;
+        try {
+            initialStock = Integer.parseInt(line[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid line: expected " + line[1] + " to be an integer.");
+        }
+        try {
+            lowStockLevelAlert = Integer.parseInt(line[2]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid line: expected " + line[2] + " to be an integer.");
         }
 
-        return inventory;
+        return new Medicine(name, initialStock, lowStockLevelAlert);
     }
 
     /**
@@ -213,13 +209,8 @@ public class ReadFile {
      * @throws IOException if there is an error reading or parsing the file
      */
     public static ArrayList<ReplenishmentRequest> readRequestListFile(String path) throws IOException {
-        String[][] values = ReadFile.readCSV(path);
-
         ArrayList<ReplenishmentRequest> requests = new ArrayList<>();
-        for (int i = 0; i < values.length; i++) {
-            String[] line = values[i];
-            requests.add(new ReplenishmentRequest(line));
-        }
+        CsvReader.read(path, line -> requests.add(new ReplenishmentRequest(line)));
         return requests;
     }
 
@@ -231,14 +222,8 @@ public class ReadFile {
      * @throws IOException if there is an error reading or parsing the file
      */
     public static ArrayList<Appointment> readAppointmentListFile(String path) throws IOException {
-        String[][] values = ReadFile.readCSV(path);
-
         ArrayList<Appointment> appointments = new ArrayList<Appointment>();
-        for (int i = 0; i < values.length; i++) {
-            String[] line = values[i];
-            appointments.add(new Appointment(line));
-        }
-
+        CsvReader.read(path, line -> appointments.add(new Appointment(line)));
         return appointments;
     }
 }
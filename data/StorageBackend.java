@@ -0,0 +1,152 @@
+package data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Storage used by the user database, the inventory and the appointment database to persist their records.
+ * Records are read back as rows of CSV fields, so that each database parses them the same way whichever
+ * backend is used, and are written as {@link CsvCompatible} objects identified by a key within their table.
+ * Every change returns a future that completes once the backend has recorded it, or completes exceptionally if it
+ * cannot be recorded, so a caller can wait for its change or check whether it failed.
+ *
+ * @see CsvStorageBackend
+ * @see MemoryStorageBackend
+ * @see LogStorageBackend
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public interface StorageBackend {
+    /**
+     * Checks whether a table has been stored before.
+     *
+     * @param table the table to check
+     * @return true if the table exists, even if it is empty
+     */
+    public abstract boolean exists(StorageTable table);
+
+    /**
+     * Reads every row of a table and passes each one to the handler in order.
+     * A table that does not exist is read as empty.
+     *
+     * @param table the table to read
+     * @param handler the callback that receives each row
+     * @throws IOException if there is an error reading the table, or if the handler rejects a row
+     */
+    public abstract void load(StorageTable table, CsvReader.RowHandler handler) throws IOException;
+
+    /**
+     * Gives the backend access to every current record of a table.
+     * Backends that can only write a table as a whole use this to write it; others may ignore it.
+     * The source may be called from another thread, so it should return a copy made under the owner's lock.
+     *
+     * @param table the table
+     * @param source returns a copy of the current records of the table
+     */
+    public abstract void attach(StorageTable table, Supplier<Collection<? extends CsvCompatible>> source);
+
+    /**
+     * Adds or replaces a record.
+     *
+     * @param table the table of the record
+     * @param key the key of the record within its table
+     * @param item the current state of the record
+     * @return a future that completes once the change is recorded, or completes exceptionally if it cannot be
+     */
+    public abstract CompletableFuture<Void> upsert(StorageTable table, String key, CsvCompatible item);
+
+    /**
+     * Adds or replaces several records of a table at once.
+     * Backends that record each change override this to record them all in a single write.
+     *
+     * @param table the table of the records
+     * @param items the current state of each record, by its key within the table
+     * @return a future that completes once every change is recorded, or completes exceptionally if one cannot be
+     */
+    public default CompletableFuture<Void> upsertAll(StorageTable table, Map<String, ? extends CsvCompatible> items) {
+        ArrayList<CompletableFuture<Void>> futures = new ArrayList<>(items.size());
+        for (Map.Entry<String, ? extends CsvCompatible> item : items.entrySet()) {
+            futures.add(upsert(table, item.getKey(), item.getValue()));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Removes a record.
+     *
+     * @param table the table of the record
+     * @param key the key of the record within its table
+     * @return a future that completes once the removal is recorded, or completes exceptionally if it cannot be
+     */
+    public abstract CompletableFuture<Void> delete(StorageTable table, String key);
+
+    /**
+     * Writes every recorded change to durable storage and waits until it is done.
+     */
+    public abstract void flush();
+
+    /**
+     * Returns the time the stored data was last changed.
+     * This is used to decide whether a cache of the data, such as a {@link BinarySnapshot}, is up to date.
+     *
+     * @return the time of the last change in milliseconds since the epoch, or {@link Long#MAX_VALUE} if the
+     *         data is not stored on disk
+     * @throws IOException if the modification time cannot be read
+     */
+    public abstract long lastModified() throws IOException;
+
+    /**
+     * Flushes every change and releases the resources held by the backend.
+     *
+     * @throws IOException if there is an error closing the backend
+     */
+    public abstract void close() throws IOException;
+
+    /**
+     * Prints an error if a change cannot be recorded, and returns the same future so that the caller can pass it on.
+     *
+     * @param future the future of the change
+     * @param message the text printed before the cause of the failure
+     * @return the future
+     */
+    public static CompletableFuture<Void> reportFailure(CompletableFuture<Void> future, String message) {
+        future.whenComplete((result, error) -> {
+            if (error == null) return;
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            System.out.println(message + cause.getMessage());
+        });
+        return future;
+    }
+
+    /**
+     * Copies every existing table from one backend into another.
+     *
+     * @param source the backend to copy from
+     * @param target the backend to copy into
+     * @throws IOException if there is an error reading the source or writing the target
+     */
+    public static void copy(StorageBackend source, StorageBackend target) throws IOException {
+        ArrayList<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (StorageTable table : StorageTable.values()) {
+            if (!source.exists(table)) continue;
+            int[] index = { 0 };
+            source.load(table, row -> {
+                String line = String.join(",", Arrays.stream(row).map(CsvCompatible::quote).toArray(String[]::new));
+                futures.add(target.upsert(table, table.keyOf(row, index[0]++), () -> line));
+            });
+        }
+
+        target.flush();
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            throw new IOException("Error copying records: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+}
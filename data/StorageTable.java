@@ -0,0 +1,32 @@
+package data;
+
+/**
+ * Enum representing the tables that a {@link StorageBackend} stores.
+ * Each table holds one type of record, and each record in a table is identified by a key.
+ * 
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public enum StorageTable {
+    Account,
+    Patient,
+    Staff,
+    Medicine,
+    Request,
+    Appointment,
+    Sequence,
+    Keyword;
+
+    /**
+     * Returns the key of a row of this table.
+     * Every record is keyed by its first field, except replenishment requests stored before requests had IDs,
+     * which are keyed by their position in the table. That position is also the ID they are given when loaded.
+     *
+     * @param row the fields of the row
+     * @param index the position of the row in the table
+     * @return the key of the row
+     */
+    public String keyOf(String[] row, int index) {
+        return this == Request && row.length == 3 ? String.valueOf(index) : row[0];
+    }
+}
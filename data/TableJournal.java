@@ -0,0 +1,69 @@
+package data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Append-only write-ahead journal for the CSV file of a table.
+ * Every mutation appends one record holding the CSV line of the changed record,
+ * so a booking or a status change costs a single small append instead of a rewrite of the whole file.
+ * The full CSV snapshot is only rewritten during compaction.
+ *
+ * Records are checksummed by {@link AppendLog}, so a record torn by a crash is discarded on replay.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class TableJournal extends AppendLog {
+    /**
+     * Constructs a TableJournal backed by the file at the given path.
+     * The journal file is created if it does not exist. Call {@link #replay()} before appending
+     * so that any torn record left by a crash is truncated first.
+     *
+     * @param path the file path of the journal
+     * @throws IOException if the journal file cannot be opened
+     */
+    public TableJournal(String path) throws IOException {
+        super(path);
+    }
+
+    /**
+     * Appends the current state of one record to the journal and forces it to disk.
+     *
+     * @param item the changed record
+     * @throws IOException if there is an error writing to the journal
+     */
+    public void append(CsvCompatible item) throws IOException {
+        append(item.toCsv());
+        force();
+    }
+
+    /**
+     * Appends the current state of several records to the journal in a single write and forces them to disk once.
+     *
+     * @param items the changed records
+     * @throws IOException if there is an error writing to the journal
+     */
+    public void appendAll(Collection<? extends CsvCompatible> items) throws IOException {
+        ArrayList<String> lines = new ArrayList<>(items.size());
+        for (CsvCompatible item : items) {
+            lines.add(item.toCsv());
+        }
+        append(lines);
+        force();
+    }
+
+    /**
+     * Rewrites the full snapshot file from the given items and then empties the journal.
+     * The snapshot is written before the journal is truncated, so a crash in between only
+     * leaves records that are replayed again on top of the new snapshot.
+     *
+     * @param items the full collection of records in the table
+     * @param snapshotPath the path of the CSV file of the table
+     * @throws IOException if there is an error writing the snapshot or truncating the journal
+     */
+    public void compact(Collection<? extends CsvCompatible> items, String snapshotPath) throws IOException {
+        WriteFile.writeFile(items, snapshotPath);
+        clear();
+    }
+}
@@ -0,0 +1,158 @@
+package data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind persistence for CSV tables.
+ * A change only marks its table dirty and returns immediately. A background thread writes each dirty table
+ * once per interval, so any number of changes to a table between two flushes cost a single file write.
+ * Tables are also written when {@link #flush()} or {@link #close()} is called.
+ * Marking a table dirty returns a future that completes once a write covering the change is on disk, so a caller
+ * that needs to know its change is durable can wait for the grouped write instead of forcing one of its own.
+ *
+ * Each table is registered with a source that returns a copy of its current rows. The source is called on the
+ * flushing thread, so it should take whatever lock the owner of the table uses for its changes.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class WriteBehindFlusher {
+    private final LinkedHashMap<String, Supplier<Collection<? extends CsvCompatible>>> tables;
+    private final LinkedHashSet<String> dirty;
+    private final HashMap<String, CompletableFuture<Void>> pending;
+    private final Object flushLock;
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> task;
+    private long intervalMillis;
+
+    /**
+     * Constructs a WriteBehindFlusher that writes dirty tables on a background thread at the given interval.
+     *
+     * @param intervalMillis the time between background flushes in milliseconds
+     */
+    public WriteBehindFlusher(long intervalMillis) {
+        this.tables = new LinkedHashMap<>();
+        this.dirty = new LinkedHashSet<>();
+        this.pending = new HashMap<>();
+        this.flushLock = new Object();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        setInterval(intervalMillis);
+    }
+
+    /**
+     * Registers a table that can be marked dirty.
+     *
+     * @param path the path of the CSV file of the table
+     * @param source returns a copy of the current rows of the table
+     */
+    public synchronized void register(String path, Supplier<Collection<? extends CsvCompatible>> source) {
+        tables.put(path, source);
+    }
+
+    /**
+     * Marks a table as changed, so that it is written by the next flush.
+     * Every change marked before the same write shares one future.
+     *
+     * @param path the path of the CSV file of the table
+     * @return a future that completes once the table has been written with the change, or completes exceptionally
+     *         if the flusher is closed before the table could be written
+     */
+    public synchronized CompletableFuture<Void> markDirty(String path) {
+        if (!tables.containsKey(path)) throw new IllegalArgumentException(path + " is not a registered table.");
+        dirty.add(path);
+        return pending.computeIfAbsent(path, (key) -> new CompletableFuture<>());
+    }
+
+    /**
+     * Changes the time between background flushes.
+     *
+     * @param intervalMillis the time between background flushes in milliseconds
+     */
+    public synchronized void setInterval(long intervalMillis) {
+        if (intervalMillis <= 0) throw new IllegalArgumentException("Flush interval must be positive.");
+        this.intervalMillis = intervalMillis;
+        if (task != null) task.cancel(false);
+        task = executor.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the time between background flushes.
+     *
+     * @return the flush interval in milliseconds
+     */
+    public synchronized long getInterval() {
+        return this.intervalMillis;
+    }
+
+    /**
+     * Writes every dirty table now and waits until they are on disk, completing the futures of their changes.
+     * A table that fails to write is reported and stays dirty, so it is retried by the next flush;
+     * the futures of its changes complete when a later write succeeds.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            ArrayList<String> paths;
+            HashMap<String, CompletableFuture<Void>> written;
+            synchronized (this) {
+                if (dirty.isEmpty()) return;
+                paths = new ArrayList<>(dirty);
+                written = new HashMap<>(pending);
+                dirty.clear();
+                pending.clear();
+            }
+
+            for (String path : paths) {
+                Supplier<Collection<? extends CsvCompatible>> source;
+                synchronized (this) {
+                    source = tables.get(path);
+                }
+                try {
+                    WriteFile.writeFile(source.get(), path);
+                    written.get(path).complete(null);
+                } catch (IOException e) {
+                    System.out.println("Error updating file: " + e.getMessage());
+                    CompletableFuture<Void> future = written.get(path);
+                    markDirty(path).whenComplete((result, error) -> {
+                        if (error == null) future.complete(null);
+                        else future.completeExceptionally(error);
+                    });
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes every dirty table and stops the background thread.
+     */
+    public void close() {
+        synchronized (this) {
+            if (task != null) task.cancel(false);
+            task = null;
+        }
+        flush();
+        executor.shutdown();
+
+        ArrayList<CompletableFuture<Void>> unwritten;
+        synchronized (this) {
+            unwritten = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        for (CompletableFuture<Void> future : unwritten) {
+            future.completeExceptionally(new IOException("Changes were not written before the flusher was closed."));
+        }
+    }
+}
@@ -1,34 +1,107 @@
 package data;
 
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Utility class for writing objects that implement the CsvCompatible interface to a CSV file.
  * This class provides a method to serialize a collection of CsvCompatible objects into a CSV file.
+ *
+ * Files are never overwritten in place: the data is written to a temporary file through a large buffer,
+ * forced to disk and then atomically renamed over the target, so a crash leaves either the old or the new file.
+ * Batching many changes into one write is done by {@link WriteBehindFlusher}.
  * @author NATANAEL TAN TIONG OON
  * @version 1.0
  * @since 2024-11-21
  */
 public class WriteFile {
+    private static final int BUFFER_SIZE = 1 << 20;
+
     /**
      * Writes a collection of CsvCompatible objects to a CSV file.
      * Each object in the collection is serialized using its {@code toCsv} method.
-     * 
+     * The write is crash-safe and has completed on disk when this method returns.
+     *
      * @param items the collection of objects to write to the file
      * @param path the path of the file where the data will be written
      * @throws IOException if there is an error writing to the file
      */
-    public static void writeFile(Collection<? extends CsvCompatible> items, String path) {
-        try {
-            FileWriter fstream = new FileWriter(path, false);
-            for (CsvCompatible item : items) {
-                fstream.write(item.toCsv() + "\n");
+    public static void writeFile(Collection<? extends CsvCompatible> items, String path) throws IOException {
+        writeLines(toLines(items), path);
+    }
+
+    /**
+     * Writes lines to a temporary file, forces it to disk and renames it over the target file.
+     *
+     * @param lines the lines to write
+     * @param path the path of the target file
+     * @throws IOException if there is an error writing or renaming the file
+     */
+    private static void writeLines(List<String> lines, String path) throws IOException {
+        Path target = Path.of(path);
+        Path temp = Path.of(path + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            for (String line : lines) {
+                byte[] data = (line + "\n").getBytes(StandardCharsets.UTF_8);
+                if (data.length > buffer.remaining()) drain(channel, buffer);
+                if (data.length > buffer.capacity()) {
+                    ByteBuffer large = ByteBuffer.wrap(data);
+                    while (large.hasRemaining()) {
+                        channel.write(large);
+                    }
+                } else {
+                    buffer.put(data);
+                }
             }
-            fstream.close();
-        } catch (IOException e) {
-            System.out.println("Error writing file: " + e);
+            drain(channel, buffer);
+            channel.force(true);
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Writes the contents of a buffer to a channel and clears the buffer.
+     *
+     * @param channel the channel to write to
+     * @param buffer the buffer in write mode
+     * @throws IOException if there is an error writing to the channel
+     */
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Serializes a collection of CsvCompatible objects into CSV lines.
+     *
+     * @param items the objects to serialize
+     * @return the CSV lines, one per object
+     */
+    private static List<String> toLines(Collection<? extends CsvCompatible> items) {
+        ArrayList<String> lines = new ArrayList<>(items.size());
+        for (CsvCompatible item : items) {
+            lines.add(item.toCsv());
         }
+        return lines;
     }
 }
@@ -1,60 +1,346 @@
 package data.appointment;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 
 import appointment.Appointment;
 import appointment.AppointmentSlot;
-import data.ReadFile;
-import data.WriteFile;
+import appointment.AppointmentStatus;
+import appointment.BookingResult;
+import appointment.RecurrenceRule;
+import appointment.Schedule;
+import data.IdAllocator;
+import data.StorageBackend;
+import data.StorageTable;
+import medicine.InventoryApiPharmacist;
+import medicine.PrescriptionStatus;
 import record.AppointmentOutcomeRecord;
+import user.DoctorApiPatient;
 import user.UserId;
 
 /**
  * Manages the database of appointments for patients, doctors, pharmacists, and administrators.
  * This class allows for CRUD operations on appointments, including creating, rescheduling, 
  * canceling, accepting, completing, and dispensing prescriptions.
+ *
+ * Appointments are also indexed by patient, by doctor, and by doctor and status, so that looking up the
+ * appointments of one user costs time proportional to the number of results rather than to the whole database.
+ * A time index, both for all appointments and for each doctor, answers range queries in order of appointment time.
+ * Every change to an appointment goes through this class, which keeps the indexes up to date.
+ * Completed appointments whose prescription has not been dispensed are also kept in a queue, oldest appointment first,
+ * so pharmacists can page through the pending prescriptions without walking the whole appointment history.
+ * The words of every outcome record are kept in a {@link KeywordIndex}, which is updated whenever an outcome is set
+ * and stored in the {@link StorageTable#Keyword} table, so past visits can be searched without decoding every record.
  * @author NATANAEL TAN TIONG OON
  * @version 1.0
  * @since 2024-11-21
  */
 public class AppointmentDatabase implements AppointmentDatabaseApiPatient, AppointmentDatabaseApiDoctor, AppointmentDatabaseApiPharmacist, AppointmentDatabaseApiAdministrator{
     private HashMap<Integer, Appointment> appointments;
-    private int id;
-    private String path;
+    private HashMap<UserId, TreeMap<Integer, Appointment>> byPatient;
+    private HashMap<UserId, TreeMap<Integer, Appointment>> byDoctor;
+    private HashMap<UserId, EnumMap<AppointmentStatus, TreeMap<Integer, Appointment>>> byDoctorStatus;
+    private TreeMap<LocalDateTime, TreeMap<Integer, Appointment>> byTime;
+    private HashMap<UserId, TreeMap<LocalDateTime, TreeMap<Integer, Appointment>>> byDoctorTime;
+    private TreeSet<Appointment> pendingPrescriptions;
+    private KeywordIndex keywords;
+    private IdAllocator ids;
+    private StorageBackend backend;
+    private MappedAppointmentStore store;
 
     /**
-     * Constructs an AppointmentDatabase and initializes it from a file.
-     * If the file does not exist, it creates a new file and initializes an empty database.
+     * Constructs an AppointmentDatabase and loads its appointments from the storage backend.
      *
-     * @param path the file path for storing the appointment data
-     * @throws IOException if there is an error reading or writing the file
+     * @param backend the storage backend holding the appointment records
+     * @param ids the allocator that hands out IDs for new appointments
+     * @throws IOException if there is an error reading the appointment records
      */
-    public AppointmentDatabase(String path) throws IOException {
-        this.path = path;
-        id = 0;
+    public AppointmentDatabase(StorageBackend backend, IdAllocator ids) throws IOException {
+        this(backend, ids, (ArrayList<Appointment>) null);
+    }
+
+    /**
+     * Constructs an AppointmentDatabase from appointments that have already been loaded, such as from a snapshot.
+     * The storage backend is still used to write changes.
+     *
+     * @param backend the storage backend that changes are written to
+     * @param ids the allocator that hands out IDs for new appointments
+     * @param appointmentsList the loaded appointments, or null to load them from the backend
+     * @throws IOException if there is an error reading the appointment records
+     */
+    public AppointmentDatabase(StorageBackend backend, IdAllocator ids, ArrayList<Appointment> appointmentsList) throws IOException {
+        this.backend = backend;
+        this.store = null;
+        this.ids = ids;
         appointments = new HashMap<>();
+        byPatient = new HashMap<>();
+        byDoctor = new HashMap<>();
+        byDoctorStatus = new HashMap<>();
+        byTime = new TreeMap<>();
+        byDoctorTime = new HashMap<>();
+        pendingPrescriptions = newPrescriptionQueue();
 
-        if (Files.notExists(Path.of(path))) {
-            System.out.printf("%s does not exist, creating new database...\n\n", path);
-            WriteFile.writeFile(appointments.values(), path);
+        if (appointmentsList == null) {
+            backend.load(StorageTable.Appointment, line -> put(new Appointment(line)));
         } else {
-            ArrayList<Appointment> appointmentsList = ReadFile.readAppointmentListFile(path);
             for (Appointment appointment : appointmentsList) {
-                appointments.put(appointment.getId(), appointment);
-                if (appointment.getId() >= id) id = appointment.getId() + 1;
+                put(appointment);
+            }
+        }
+
+        backend.attach(StorageTable.Appointment, () -> {
+            synchronized (this) {
+                return new ArrayList<>(appointments.values());
+            }
+        });
+        loadKeywords();
+    }
+
+    /**
+     * Constructs an AppointmentDatabase backed by a memory-mapped appointment store.
+     * Changes are written into the store instead of the storage backend, and status changes only rewrite
+     * a few bytes in place. If the store is empty, the appointments in the storage backend are imported into it.
+     *
+     * @param backend the storage backend to import appointments from
+     * @param ids the allocator that hands out IDs for new appointments
+     * @param store the memory-mapped appointment store
+     * @throws IOException if there is an error reading the appointment records or writing the store
+     */
+    public AppointmentDatabase(StorageBackend backend, IdAllocator ids, MappedAppointmentStore store) throws IOException {
+        this.backend = backend;
+        this.store = store;
+        this.ids = ids;
+        appointments = new HashMap<>();
+        byPatient = new HashMap<>();
+        byDoctor = new HashMap<>();
+        byDoctorStatus = new HashMap<>();
+        byTime = new TreeMap<>();
+        byDoctorTime = new HashMap<>();
+        pendingPrescriptions = newPrescriptionQueue();
+
+        if (store.isEmpty() && backend.exists(StorageTable.Appointment)) {
+            System.out.println("Importing appointments into the appointment store...\n");
+            backend.load(StorageTable.Appointment, line -> put(new Appointment(line)));
+            for (Appointment appointment : appointments.values()) {
+                store.write(appointment);
+            }
+            store.force();
+        } else {
+            for (Appointment appointment : store.readAll()) {
+                put(appointment);
             }
         }
+        loadKeywords();
+    }
+
+    /**
+     * Loads the keyword index from the storage backend. Completed appointments missing from it, such as ones
+     * completed before the index existed, have their outcome records decoded and indexed.
+     *
+     * @throws IOException if there is an error reading the keyword index
+     */
+    private void loadKeywords() throws IOException {
+        keywords = new KeywordIndex();
+        if (backend.exists(StorageTable.Keyword)) {
+            backend.load(StorageTable.Keyword, line -> {
+                if (line.length != 2) {
+                    throw new IOException("Invalid line " + String.join(",", line) + ": expected 2 elements.");
+                }
+                int id;
+                try {
+                    id = Integer.parseInt(line[0]);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid line: expected " + line[0] + " to be an integer.");
+                }
+                if (appointments.containsKey(id)) keywords.put(id, KeywordIndex.parseTerms(line[1]));
+            });
+        }
+
+        backend.attach(StorageTable.Keyword, () -> {
+            synchronized (this) {
+                return keywords.rows();
+            }
+        });
+        for (Appointment appointment : appointments.values()) {
+            if (appointment.hasRecord() && !keywords.contains(appointment.getId())) indexOutcome(appointment);
+        }
+    }
+
+    /**
+     * Indexes the words of the outcome record of an appointment and writes them to the storage backend.
+     *
+     * @param appointment the appointment whose outcome record was set or changed
+     */
+    private void indexOutcome(Appointment appointment) {
+        AppointmentOutcomeRecord record = appointment.getRecord();
+        if (record == null) return;
+        keywords.put(appointment.getId(), KeywordIndex.termsOf(record));
+        StorageBackend.reportFailure(backend.upsert(StorageTable.Keyword, String.valueOf(appointment.getId()), keywords.row(appointment.getId())), "Error writing keyword index: ");
     }
 
     /**
-     * Updates the appointment database file with the current appointments.
+     * Adds or replaces an appointment loaded from disk and advances the appointment sequence past it.
+     *
+     * @param appointment the loaded appointment
+     */
+    private void put(Appointment appointment) {
+        Appointment previous = appointments.put(appointment.getId(), appointment);
+        if (previous != null) unindex(previous, previous.getAppointmentStatus());
+        index(appointment);
+        ids.observe(IdAllocator.APPOINTMENT, appointment.getId());
+    }
+
+    /**
+     * Creates an empty queue of appointments ordered by appointment time, then by ID.
+     *
+     * @return the empty queue
+     */
+    private static TreeSet<Appointment> newPrescriptionQueue() {
+        return new TreeSet<>(
+            Comparator.comparing((Appointment appointment) -> appointment.getSlot().getDate()).thenComparingInt(Appointment::getId)
+        );
+    }
+
+    /**
+     * Adds an appointment to the patient, doctor, status and time indexes, and to the pending prescription queue
+     * if its prescription has not been dispensed.
+     *
+     * @param appointment the appointment to index
+     */
+    private void index(Appointment appointment) {
+        byPatient.computeIfAbsent(appointment.getPatientId(), (key) -> new TreeMap<>()).put(appointment.getId(), appointment);
+        byDoctor.computeIfAbsent(appointment.getDoctorId(), (key) -> new TreeMap<>()).put(appointment.getId(), appointment);
+        byDoctorStatus.computeIfAbsent(appointment.getDoctorId(), (key) -> new EnumMap<>(AppointmentStatus.class))
+            .computeIfAbsent(appointment.getAppointmentStatus(), (key) -> new TreeMap<>())
+            .put(appointment.getId(), appointment);
+        LocalDateTime time = appointment.getSlot().getDate();
+        byTime.computeIfAbsent(time, (key) -> new TreeMap<>()).put(appointment.getId(), appointment);
+        byDoctorTime.computeIfAbsent(appointment.getDoctorId(), (key) -> new TreeMap<>())
+            .computeIfAbsent(time, (key) -> new TreeMap<>())
+            .put(appointment.getId(), appointment);
+        if (appointment.getPrescriptionStatus() == PrescriptionStatus.Pending) pendingPrescriptions.add(appointment);
+    }
+
+    /**
+     * Removes an appointment from the patient, doctor, status and time indexes, and from the pending prescription queue.
+     *
+     * @param appointment the appointment to remove
+     * @param status the status the appointment was indexed under
+     */
+    private void unindex(Appointment appointment, AppointmentStatus status) {
+        byPatient.get(appointment.getPatientId()).remove(appointment.getId());
+        byDoctor.get(appointment.getDoctorId()).remove(appointment.getId());
+        byDoctorStatus.get(appointment.getDoctorId()).get(status).remove(appointment.getId());
+        removeByTime(byTime, appointment);
+        removeByTime(byDoctorTime.get(appointment.getDoctorId()), appointment);
+        pendingPrescriptions.remove(appointment);
+    }
+
+    /**
+     * Removes an appointment from a time index, dropping its time from the index if no other appointment has it.
+     *
+     * @param index the time index
+     * @param appointment the appointment to remove
+     */
+    private static void removeByTime(TreeMap<LocalDateTime, TreeMap<Integer, Appointment>> index, Appointment appointment) {
+        LocalDateTime time = appointment.getSlot().getDate();
+        TreeMap<Integer, Appointment> appointments = index.get(time);
+        if (appointments == null) return;
+        appointments.remove(appointment.getId());
+        if (appointments.isEmpty()) index.remove(time);
+    }
+
+    /**
+     * Moves an appointment whose status has changed to its new place in the status index.
+     *
+     * @param appointment the appointment whose status changed
+     * @param previous the status the appointment had before the change
      */
-    private void update() {
-        WriteFile.writeFile(appointments.values(), path);
+    private void reindex(Appointment appointment, AppointmentStatus previous) {
+        AppointmentStatus status = appointment.getAppointmentStatus();
+        if (status == previous) return;
+        EnumMap<AppointmentStatus, TreeMap<Integer, Appointment>> statuses = byDoctorStatus.get(appointment.getDoctorId());
+        statuses.get(previous).remove(appointment.getId());
+        statuses.computeIfAbsent(status, (key) -> new TreeMap<>()).put(appointment.getId(), appointment);
+    }
+
+    /**
+     * Persists a change to one appointment.
+     * In memory-mapped mode the fixed-width fields of the appointment are rewritten in place.
+     * Otherwise the appointment is written to the storage backend.
+     *
+     * @param appointment the appointment that was changed
+     * @return a future that completes once the change is stored, or completes exceptionally if it cannot be
+     */
+    private CompletableFuture<Void> update(Appointment appointment) {
+        if (store == null) {
+            return StorageBackend.reportFailure(backend.upsert(StorageTable.Appointment, String.valueOf(appointment.getId()), appointment), "Error writing appointments: ");
+        }
+        try {
+            store.writeHeader(appointment);
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return StorageBackend.reportFailure(CompletableFuture.failedFuture(e), "Error writing appointments: ");
+        }
+    }
+
+    /**
+     * Persists a batch of new appointments in a single write, so that after a crash either all of them are stored
+     * or none are. In memory-mapped mode the fixed-width fields of the appointments are written as one batch.
+     * Otherwise the appointments are written to the storage backend together.
+     *
+     * @param batch the appointments that were created
+     * @return a future that completes once the batch is stored, or completes exceptionally if it cannot be
+     */
+    private CompletableFuture<Void> updateAll(ArrayList<Appointment> batch) {
+        if (store == null) {
+            LinkedHashMap<String, Appointment> items = new LinkedHashMap<>();
+            for (Appointment appointment : batch) {
+                items.put(String.valueOf(appointment.getId()), appointment);
+            }
+            return StorageBackend.reportFailure(backend.upsertAll(StorageTable.Appointment, items), "Error writing appointments: ");
+        }
+        try {
+            store.writeBatch(batch);
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return StorageBackend.reportFailure(CompletableFuture.failedFuture(e), "Error writing appointments: ");
+        }
+    }
+
+    /**
+     * Persists a change to one appointment whose outcome record has been set.
+     * In memory-mapped mode the outcome record is appended to the store; otherwise this is the same as {@link #update(Appointment)}.
+     *
+     * @param appointment the appointment that was changed
+     * @return a future that completes once the change is stored, or completes exceptionally if it cannot be
+     */
+    private CompletableFuture<Void> updateOutcome(Appointment appointment) {
+        if (store == null) return update(appointment);
+        try {
+            store.write(appointment);
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return StorageBackend.reportFailure(CompletableFuture.failedFuture(e), "Error writing appointments: ");
+        }
+    }
+
+    /**
+     * Writes every change held in memory-mapped storage to the storage device.
+     * This does nothing unless the database is backed by a memory-mapped store.
+     */
+    public void flush() {
+        if (store != null) store.force();
     }
 
     /**
@@ -68,87 +354,139 @@ public class AppointmentDatabase implements AppointmentDatabaseApiPatient, Appoi
 
     /**
      * Creates a new appointment and adds it to the database.
+     * The slot is taken first, so that if another session has taken it in the meantime no appointment is created.
      *
      * @param patientId the patient ID associated with the appointment
      * @param doctorId the doctor ID associated with the appointment
      * @param slot the appointment slot for the appointment
-     * @return the created Appointment object
+     * @return the created Appointment object, or null if the slot is no longer available
      */
-    public Appointment newAppointment(UserId patientId, UserId doctorId, AppointmentSlot slot) {
+    public synchronized Appointment newAppointment(UserId patientId, UserId doctorId, AppointmentSlot slot) {
+        if (!slot.tryReserve()) return null;
+        int id = ids.next(IdAllocator.APPOINTMENT);
         Appointment appointment = new Appointment(id, patientId, doctorId, slot);
         this.appointments.put(id, appointment);
-        update();
-        id++;
+        index(appointment);
+        update(appointment);
         return appointment;
     }
 
+    /**
+     * Creates a series of appointments with one doctor, following a recurrence rule.
+     * Every slot of the series is taken as a single step, so either all of the appointments are created or none are.
+     * If any slot is taken, outside the doctor's schedule or not the start of a slot, nothing is booked and
+     * every such time is reported at once.
+     * The slots are taken from the doctor's own schedule, so a series is always booked with the doctor whose slots it holds.
+     *
+     * @param patientId the patient ID associated with the appointments
+     * @param doctor the doctor associated with the appointments
+     * @param rule the times of the appointments
+     * @return the result, holding either the created appointments or the conflicting times
+     */
+    public synchronized BookingResult newAppointments(UserId patientId, DoctorApiPatient doctor, RecurrenceRule rule) {
+        UserId doctorId = doctor.getId();
+        Schedule schedule = doctor.getPersonalSchedule();
+        ArrayList<LocalDateTime> times = rule.getOccurrences();
+        ArrayList<Appointment> booked = new ArrayList<>();
+        ArrayList<LocalDateTime> conflicts = schedule.tryReserveAll(times);
+        if (!conflicts.isEmpty()) return new BookingResult(booked, conflicts);
+
+        for (LocalDateTime time : times) {
+            int id = ids.next(IdAllocator.APPOINTMENT);
+            Appointment appointment = new Appointment(id, patientId, doctorId, schedule.getSlot(time));
+            this.appointments.put(id, appointment);
+            index(appointment);
+            booked.add(appointment);
+        }
+        updateAll(booked);
+        return new BookingResult(booked, conflicts);
+    }
+
     /**
      * Reschedules an appointment for a patient.
      * Only the patient who made the appointment can reschedule it.
+     * The new slot is taken before the old one is freed, so if another session has taken it in the meantime
+     * the appointment keeps its old slot. Only a pending or confirmed appointment can be rescheduled.
      *
      * @param patientId the patient ID requesting the reschedule
      * @param id the appointment ID to reschedule
      * @param slot the new appointment slot
      * @return the rescheduled Appointment object, or null if the appointment could not be rescheduled
+     *         or the slot is no longer available
      */
-    public Appointment rescheduleAppointment(UserId patientId, int id, AppointmentSlot slot) {
+    public synchronized Appointment rescheduleAppointment(UserId patientId, int id, AppointmentSlot slot) {
         Appointment appointment = this.appointments.get(id);
         if (appointment == null) return null;
         if (!appointment.getPatientId().equals(patientId)) return null;
+        if (!appointment.isActive()) return null;
+        if (!slot.tryReserve()) return null;
+        // the time changes, so the appointment is indexed again from scratch
+        unindex(appointment, appointment.getAppointmentStatus());
         appointment.patientReschedule(slot);
-        update();
+        index(appointment);
+        update(appointment);
         return appointment;
     }
 
     /**
      * Cancels an appointment for a patient.
-     * Only the patient who made the appointment can cancel it.
+     * Only the patient who made the appointment can cancel it, and only while it is pending or confirmed.
      *
      * @param patientId the patient ID requesting the cancellation
      * @param id the appointment ID to cancel
      * @return the canceled Appointment object, or null if the appointment could not be canceled
      */
-    public Appointment cancelAppointment(UserId patientId, int id) {
+    public synchronized Appointment cancelAppointment(UserId patientId, int id) {
         Appointment appointment = this.appointments.get(id);
         if (appointment == null) return null;
         if (!appointment.getPatientId().equals(patientId)) return null;
-        appointment.patientCancel();
+        AppointmentStatus previous = appointment.getAppointmentStatus();
+        if (!appointment.patientCancel()) return null;
+        reindex(appointment, previous);
         // this.appointments.remove(id);
-        update();
+        update(appointment);
         return appointment;
     }
 
     /**
-     * Accepts or declines an appointment by a doctor.
+     * Accepts or declines an appointment by a doctor. Only a pending appointment can be accepted or declined.
      *
      * @param doctorId the doctor ID accepting or declining the appointment
      * @param id the appointment ID to accept or decline
      * @param accepted true if the doctor accepts the appointment, false if they decline it
      * @return the updated Appointment object, or null if the appointment could not be accepted or declined
      */
-    public Appointment acceptAppointment(UserId doctorId, int id, boolean accepted) {
+    public synchronized Appointment acceptAppointment(UserId doctorId, int id, boolean accepted) {
         Appointment appointment = this.appointments.get(id);
         if (appointment == null) return null;
         if (!appointment.getDoctorId().equals(doctorId)) return null;
-        appointment.doctorAccept(accepted);
-        update();
+        AppointmentStatus previous = appointment.getAppointmentStatus();
+        if (!appointment.doctorAccept(accepted)) return null;
+        reindex(appointment, previous);
+        update(appointment);
         return appointment;
     }
 
     /**
      * Sets the outcome of an appointment, including medical records and treatments.
+     * Only a confirmed or completed appointment can have its outcome set.
      *
      * @param doctorId the doctor ID who is setting the outcome
      * @param id the appointment ID to set the outcome for
      * @param record the AppointmentOutcomeRecord containing the outcome details
      * @return the updated Appointment object, or null if the outcome could not be set
      */
-    public Appointment setOutcome(UserId doctorId, int id, AppointmentOutcomeRecord record) {
+    public synchronized Appointment setOutcome(UserId doctorId, int id, AppointmentOutcomeRecord record) {
         Appointment appointment = this.appointments.get(id);
         if (appointment == null) return null;
         if (!appointment.getDoctorId().equals(doctorId)) return null;
-        appointment.complete(record);
-        update();
+        AppointmentStatus previous = appointment.getAppointmentStatus();
+        if (!appointment.complete(record)) return null;
+        reindex(appointment, previous);
+        if (record.getPrescriptionStatus() == PrescriptionStatus.Pending) pendingPrescriptions.add(appointment);
+        else pendingPrescriptions.remove(appointment);
+        updateOutcome(appointment);
+        indexOutcome(appointment);
         return appointment;
     }
 
@@ -163,72 +501,155 @@ public class AppointmentDatabase implements AppointmentDatabaseApiPatient, Appoi
     }
 
     /**
-     * Retrieves all appointments for a specific patient.
+     * Retrieves all appointments for a specific patient, in order of ID.
      *
      * @param patientId the patient ID to retrieve appointments for
      * @return a list of Appointment objects for the specified patient
      */
-    public ArrayList<Appointment> getPatientAppointments(UserId patientId) {
-        ArrayList<Appointment> result = new ArrayList<>();
-        for (Appointment appointment : appointments.values()) {
-            if (appointment.getPatientId().equals(patientId)) {
-                result.add(appointment);
-            }
-        }
-        return result;
+    public synchronized ArrayList<Appointment> getPatientAppointments(UserId patientId) {
+        TreeMap<Integer, Appointment> result = byPatient.get(patientId);
+        return result == null ? new ArrayList<>() : new ArrayList<>(result.values());
     }
 
-
     /**
-     * Retrieves all appointments for a specific doctor.
+     * Retrieves all appointments for a specific doctor, in order of ID.
      *
      * @param doctorId the doctor ID to retrieve appointments for
      * @return a list of Appointment objects for the specified doctor
      */
-    public ArrayList<Appointment> getDoctorAppointments(UserId doctorId) {
+    public synchronized ArrayList<Appointment> getDoctorAppointments(UserId doctorId) {
+        TreeMap<Integer, Appointment> result = byDoctor.get(doctorId);
+        return result == null ? new ArrayList<>() : new ArrayList<>(result.values());
+    }
+
+    /**
+     * Retrieves the appointments for a specific doctor that have the given status, in order of ID.
+     *
+     * @param doctorId the doctor ID to retrieve appointments for
+     * @param status the status of the appointments to retrieve
+     * @return a list of Appointment objects for the specified doctor and status
+     */
+    public synchronized ArrayList<Appointment> getDoctorAppointments(UserId doctorId, AppointmentStatus status) {
+        EnumMap<AppointmentStatus, TreeMap<Integer, Appointment>> statuses = byDoctorStatus.get(doctorId);
+        if (statuses == null || !statuses.containsKey(status)) return new ArrayList<>();
+        return new ArrayList<>(statuses.get(status).values());
+    }
+
+    /**
+     * Retrieves the appointments in a time range, in order of appointment time and then ID.
+     * The appointments can be limited to one doctor and to one status.
+     *
+     * @param from the earliest appointment time to include, or null for no lower limit
+     * @param to the appointment time to stop before, or null for no upper limit
+     * @param doctorId the doctor ID to retrieve appointments for, or null for all doctors
+     * @param status the status of the appointments to retrieve, or null for any status
+     * @return a list of Appointment objects in the range
+     */
+    public synchronized ArrayList<Appointment> findAppointments(LocalDateTime from, LocalDateTime to, UserId doctorId, AppointmentStatus status) {
         ArrayList<Appointment> result = new ArrayList<>();
-        for (Appointment appointment : appointments.values()) {
-            if (appointment.getDoctorId().equals(doctorId)) {
-                result.add(appointment);
+        TreeMap<LocalDateTime, TreeMap<Integer, Appointment>> index = doctorId == null ? byTime : byDoctorTime.get(doctorId);
+        if (index == null || (from != null && to != null && !from.isBefore(to))) return result;
+
+        NavigableMap<LocalDateTime, TreeMap<Integer, Appointment>> range = index;
+        if (from != null) range = range.tailMap(from, true);
+        if (to != null) range = range.headMap(to, false);
+        for (TreeMap<Integer, Appointment> appointments : range.values()) {
+            for (Appointment appointment : appointments.values()) {
+                if (status == null || appointment.getAppointmentStatus() == status) result.add(appointment);
             }
         }
         return result;
     }
 
-
     /**
-     * Retrieves all appointment outcome records.
+     * Retrieves all appointment outcome records, in order of appointment time.
+     * Records are read without being added to the cache of decoded records, so listing every record does not evict
+     * the ones in use; records that were not decoded are returned as copies, so changes made to them are not kept.
      *
      * @return a list of AppointmentOutcomeRecord objects
      */
-    public ArrayList<AppointmentOutcomeRecord> getRecords() {
+    public synchronized ArrayList<AppointmentOutcomeRecord> getRecords() {
         ArrayList<AppointmentOutcomeRecord> records = new ArrayList<>();
 
-        for (Appointment appointment : appointments.values()) {
-            AppointmentOutcomeRecord record = appointment.getRecord();
-            if (record == null) continue;
-            records.add(record);
+        for (TreeMap<Integer, Appointment> atTime : byTime.values()) {
+            for (Appointment appointment : atTime.values()) {
+                if (!appointment.hasRecord()) continue;
+                AppointmentOutcomeRecord record = appointment.readRecord();
+                if (record != null) records.add(record);
+            }
         }
 
         return records;
     }
 
+    /**
+     * Retrieves a page of the outcome records whose prescription has not been dispensed yet,
+     * ordered by appointment time, oldest first.
+     *
+     * @param offset the number of pending records to skip
+     * @param limit the maximum number of records to return
+     * @return a list of at most limit AppointmentOutcomeRecord objects with a Pending prescription status
+     */
+    public synchronized ArrayList<AppointmentOutcomeRecord> getPendingPrescriptions(int offset, int limit) {
+        ArrayList<AppointmentOutcomeRecord> records = new ArrayList<>();
+        Iterator<Appointment> iterator = pendingPrescriptions.iterator();
+        for (int i = 0; i < offset && iterator.hasNext(); i++) iterator.next();
+        while (records.size() < limit && iterator.hasNext()) {
+            AppointmentOutcomeRecord record = iterator.next().getRecord();
+            if (record != null) records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * Returns the number of outcome records whose prescription has not been dispensed yet.
+     *
+     * @return the number of pending prescriptions
+     */
+    public synchronized int countPendingPrescriptions() {
+        return pendingPrescriptions.size();
+    }
+
+    /**
+     * Searches the consultation notes, diagnoses and treatment plans of completed appointments by keyword.
+     * See {@link KeywordIndex#search(String)} for the query syntax.
+     *
+     * @param query the search query
+     * @param doctorId the doctor whose appointments to search, or null to search every appointment
+     * @return the matching appointments, in order of ID
+     */
+    public synchronized ArrayList<Appointment> searchAppointments(String query, UserId doctorId) {
+        ArrayList<Appointment> result = new ArrayList<>();
+        for (Integer id : keywords.search(query)) {
+            Appointment appointment = appointments.get(id);
+            if (doctorId == null || appointment.getDoctorId().equals(doctorId)) result.add(appointment);
+        }
+        return result;
+    }
+
     /**
      * Dispenses a prescription for the specified appointment.
+     * The prescription must still be pending, and the medicines are taken from the inventory while the database
+     * is locked, so a prescription is never dispensed twice.
      *
      * @param id the appointment ID for which the prescription is to be dispensed
+     * @param inventory the inventory to take the prescribed medicines from
      * @return the AppointmentOutcomeRecord associated with the appointment, or null if the prescription cannot be dispensed
      */
-    public AppointmentOutcomeRecord dispensePrescription(int id) {
+    public synchronized AppointmentOutcomeRecord dispensePrescription(int id, InventoryApiPharmacist inventory) {
         Appointment appointment = appointments.get(id);
         if (appointment == null) return null;
 
         AppointmentOutcomeRecord record = appointment.getRecord();
         if (record == null) return null;
+        if (record.getPrescriptionStatus() != PrescriptionStatus.Pending) return null;
+        if (!inventory.dispensePrescription(record.getPrescription())) return null;
 
-        record.dispensePrescription();
+        // The record may have been evicted while the inventory was updated, so change the appointment's current form.
+        appointment.dispensePrescription();
+        pendingPrescriptions.remove(appointment);
 
-        update();
-        return record;
+        update(appointment);
+        return appointment.getRecord();
     }
 }
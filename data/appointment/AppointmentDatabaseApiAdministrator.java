@@ -1,10 +1,15 @@
 package data.appointment;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import appointment.Appointment;
+import appointment.AppointmentStatus;
+import user.UserId;
 
 /**
  * This interface defines the methods for administrator to interact with appointment database.
- * This interface provides functionality to retrieve the list of all appointments in the system (appointment database).
+ * This interface provides functionality to retrieve the list of all appointments in the system (appointment database),
+ * or the appointments in a time range.
  * @author LOW KAN YUI (LIU GENGRUI)
  * @version 1.0
  * @since 2024-11-21
@@ -17,4 +22,15 @@ public interface AppointmentDatabaseApiAdministrator {
      *         and the value is the corresponding Appointment object
      */
     public abstract HashMap<Integer, Appointment> getAppointments();
+
+    /**
+     * Retrieves the appointments in a time range, in order of appointment time.
+     *
+     * @param from the earliest appointment time to include, or null for no lower limit
+     * @param to the appointment time to stop before, or null for no upper limit
+     * @param doctorId the ID of the doctor whose appointments are to be retrieved, or null for all doctors
+     * @param status the status of the appointments to retrieve, or null for any status
+     * @return a list of the appointments in the range
+     */
+    public abstract ArrayList<Appointment> findAppointments(LocalDateTime from, LocalDateTime to, UserId doctorId, AppointmentStatus status);
 }
@@ -1,8 +1,10 @@
 package data.appointment;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 
 import appointment.Appointment;
+import appointment.AppointmentStatus;
 import record.AppointmentOutcomeRecord;
 import user.UserId;
 
@@ -22,6 +24,36 @@ public interface AppointmentDatabaseApiDoctor {
      * @return a list of Appointment objects associated with the specified doctor
      */
     public abstract ArrayList<Appointment> getDoctorAppointments(UserId doctorId);
+
+    /**
+     * Retrieves the appointments associated with a specific doctor that have the given status.
+     *
+     * @param doctorId the unique identifier of the doctor whose appointments are to be retrieved
+     * @param status the status of the appointments to retrieve
+     * @return a list of Appointment objects associated with the specified doctor and status
+     */
+    public abstract ArrayList<Appointment> getDoctorAppointments(UserId doctorId, AppointmentStatus status);
+
+    /**
+     * Retrieves the appointments of a specific doctor in a time range, in order of appointment time.
+     *
+     * @param from the earliest appointment time to include, or null for no lower limit
+     * @param to the appointment time to stop before, or null for no upper limit
+     * @param doctorId the unique identifier of the doctor whose appointments are to be retrieved
+     * @param status the status of the appointments to retrieve, or null for any status
+     * @return a list of Appointment objects associated with the specified doctor in the range
+     */
+    public abstract ArrayList<Appointment> findAppointments(LocalDateTime from, LocalDateTime to, UserId doctorId, AppointmentStatus status);
+
+    /**
+     * Searches the consultation notes, diagnoses and treatment plans of completed appointments by keyword.
+     * Words in the query must all appear in a record; alternatives are separated by {@code OR}.
+     *
+     * @param query the search query
+     * @param doctorId the doctor whose appointments to search, or null to search every appointment
+     * @return the matching appointments, in order of ID
+     */
+    public abstract ArrayList<Appointment> searchAppointments(String query, UserId doctorId);
     /**
      * Allow the doctor to accept or decline the appointment.
      * Appoinment is selected using the id
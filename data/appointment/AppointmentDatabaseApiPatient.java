@@ -4,6 +4,9 @@ import java.util.ArrayList;
 
 import appointment.Appointment;
 import appointment.AppointmentSlot;
+import appointment.BookingResult;
+import appointment.RecurrenceRule;
+import user.DoctorApiPatient;
 import user.UserId;
 
 /**
@@ -29,17 +32,28 @@ public interface AppointmentDatabaseApiPatient {
      * @param patientId the unique identifier of the patient scheduling the appointment
      * @param doctorId the unique identifier of the doctor with whom the appointment is being scheduled
      * @param slot the appointment slot where the patient wants to schedule the appointment
-     * @return the newly created Appointment object
+     * @return the newly created Appointment object, or null if the slot has been taken in the meantime
      */
     public abstract Appointment newAppointment(UserId patientId, UserId doctorId, AppointmentSlot slot);
 
+    /**
+     * Allows a patient to book a series of appointments with a doctor, such as weekly visits.
+     * Either every appointment in the series is booked or none are.
+     *
+     * @param patientId the unique identifier of the patient scheduling the appointments
+     * @param doctor the doctor with whom the appointments are being scheduled, whose schedule holds the slots
+     * @param rule the times of the appointments
+     * @return the result, holding either the booked appointments or every time that could not be booked
+     */
+    public abstract BookingResult newAppointments(UserId patientId, DoctorApiPatient doctor, RecurrenceRule rule);
+
     /**
      * Allows a patient to reschedule an existing appointment to a new slot.
      *
      * @param patientId the unique identifier of the patient rescheduling the appointment
      * @param id the ID of the appointment being rescheduled
      * @param slot the new appointment slot for the rescheduled appointment
-     * @return the updated Appointment object after rescheduling
+     * @return the updated Appointment object after rescheduling, or null if it could not be rescheduled
      */
     public abstract Appointment rescheduleAppointment(UserId patiendId, int id, AppointmentSlot slot);
 
@@ -2,6 +2,7 @@ package data.appointment;
 
 import java.util.ArrayList;
 
+import medicine.InventoryApiPharmacist;
 import record.AppointmentOutcomeRecord;
 
 /**
@@ -13,17 +14,37 @@ import record.AppointmentOutcomeRecord;
  */
 public interface AppointmentDatabaseApiPharmacist {
     /**
-     * Retrieves all appointment outcome records from the appointment database.
+     * Retrieves all appointment outcome records from the appointment database, in order of appointment time.
+     * Records that have not been decoded are returned as copies, so changes made to them are not kept.
      *
      * @return a list of AppointmentOutcomeRecord objects, each representing the outcome of an appointment
      */
     public abstract ArrayList<AppointmentOutcomeRecord> getRecords();
+
+    /**
+     * Retrieves a page of the outcome records whose prescription has not been dispensed yet, oldest appointment first.
+     *
+     * @param offset the number of pending records to skip
+     * @param limit the maximum number of records to return
+     * @return a list of at most limit AppointmentOutcomeRecord objects with a Pending prescription status
+     */
+    public abstract ArrayList<AppointmentOutcomeRecord> getPendingPrescriptions(int offset, int limit);
+
+    /**
+     * Returns the number of outcome records whose prescription has not been dispensed yet.
+     *
+     * @return the number of pending prescriptions
+     */
+    public abstract int countPendingPrescriptions();
     
     /**
      * Dispenses a prescription based on the outcome record of an appointment.
+     * The prescribed medicines are taken from the inventory only if the prescription is still pending.
      *
      * @param id the ID of the appointment whose prescription is to be dispensed
-     * @return the updated AppointmentOutcomeRecord with the prescription dispensed, or null if no such record exists
+     * @param inventory the inventory to take the prescribed medicines from
+     * @return the updated AppointmentOutcomeRecord with the prescription dispensed, or null if no such record exists,
+     *         the prescription has already been dispensed or there is not enough stock
      */
-    public abstract AppointmentOutcomeRecord dispensePrescription(int id);
+    public abstract AppointmentOutcomeRecord dispensePrescription(int id, InventoryApiPharmacist inventory);
 }
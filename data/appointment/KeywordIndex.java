@@ -0,0 +1,194 @@
+package data.appointment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.TreeSet;
+
+import data.CsvCompatible;
+import record.AppointmentOutcomeRecord;
+
+/**
+ * Inverted index from the words in outcome records to the IDs of their appointments.
+ * The consultation notes, diagnoses and treatment plan of a record are split into lowercase words, and each word
+ * keeps a posting list of the appointments whose record contains it, so a search only visits the matching appointments.
+ *
+ * The words of each appointment are also kept, so that an updated record replaces its old words. They are what gets
+ * stored, one row per appointment, and the posting lists are rebuilt from them when the index is loaded.
+ *
+ * This class is not thread-safe; the appointment database guards it with its own lock.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class KeywordIndex {
+    private HashMap<String, TreeSet<Integer>> postings;
+    private HashMap<Integer, String[]> terms;
+
+    /**
+     * Constructs an empty KeywordIndex.
+     */
+    public KeywordIndex() {
+        this.postings = new HashMap<>();
+        this.terms = new HashMap<>();
+    }
+
+    /**
+     * Splits text into lowercase words, dropping punctuation and whitespace.
+     *
+     * @param text the text to split
+     * @return the distinct words of the text, in alphabetical order
+     */
+    public static String[] tokenize(String text) {
+        TreeSet<String> words = new TreeSet<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) words.add(word);
+        }
+        return words.toArray(new String[0]);
+    }
+
+    /**
+     * Returns the words of the consultation notes, diagnoses and treatment plan of an outcome record.
+     *
+     * @param record the outcome record
+     * @return the distinct words of the record, in alphabetical order
+     */
+    public static String[] termsOf(AppointmentOutcomeRecord record) {
+        StringBuilder text = new StringBuilder(record.getConsultationNotes());
+        for (String diagnosis : record.getDiagnoses()) {
+            text.append(' ').append(diagnosis);
+        }
+        for (String treatmentPlan : record.getTreatmentPlan()) {
+            text.append(' ').append(treatmentPlan);
+        }
+        return tokenize(text.toString());
+    }
+
+    /**
+     * Indexes the words of an appointment, replacing any words it was indexed under before.
+     *
+     * @param id the appointment ID
+     * @param words the distinct words of its outcome record
+     */
+    public void put(int id, String[] words) {
+        remove(id);
+        terms.put(id, words);
+        for (String word : words) {
+            postings.computeIfAbsent(word, key -> new TreeSet<>()).add(id);
+        }
+    }
+
+    /**
+     * Removes an appointment from the index.
+     *
+     * @param id the appointment ID
+     */
+    public void remove(int id) {
+        String[] words = terms.remove(id);
+        if (words == null) return;
+        for (String word : words) {
+            TreeSet<Integer> ids = postings.get(word);
+            ids.remove(id);
+            if (ids.isEmpty()) postings.remove(word);
+        }
+    }
+
+    /**
+     * Checks whether an appointment has been indexed.
+     *
+     * @param id the appointment ID
+     * @return true if the appointment is in the index
+     */
+    public boolean contains(int id) {
+        return terms.containsKey(id);
+    }
+
+    /**
+     * Finds the appointments matching a query. The query is a list of words that must all appear in a record;
+     * alternatives are separated by {@code OR}, and {@code AND} may be written between words for clarity.
+     * For example, {@code chest pain OR hypertension} matches records mentioning both "chest" and "pain",
+     * or mentioning "hypertension". Words are matched whole and case is ignored.
+     *
+     * Each group of words is answered by walking the shortest posting list in it and checking the others,
+     * so the time taken depends on the number of matches rather than on the number of records.
+     *
+     * @param query the search query
+     * @return the IDs of the matching appointments, in ascending order
+     */
+    public TreeSet<Integer> search(String query) {
+        TreeSet<Integer> result = new TreeSet<>();
+        ArrayList<String> group = new ArrayList<>();
+        for (String token : query.trim().split("\\s+")) {
+            if (token.equals("OR")) {
+                result.addAll(searchAll(group));
+                group.clear();
+            } else if (!token.equals("AND")) {
+                group.addAll(Arrays.asList(tokenize(token)));
+            }
+        }
+        result.addAll(searchAll(group));
+        return result;
+    }
+
+    /**
+     * Finds the appointments whose records contain every one of the given words.
+     *
+     * @param words the words to look for
+     * @return the IDs of the matching appointments, or an empty collection if no words are given
+     */
+    private Collection<Integer> searchAll(ArrayList<String> words) {
+        if (words.isEmpty()) return new ArrayList<>();
+        ArrayList<TreeSet<Integer>> lists = new ArrayList<>();
+        for (String word : words) {
+            TreeSet<Integer> ids = postings.get(word);
+            if (ids == null) return new ArrayList<>();
+            lists.add(ids);
+        }
+        lists.sort((a, b) -> Integer.compare(a.size(), b.size()));
+
+        ArrayList<Integer> matches = new ArrayList<>();
+        for (Integer id : lists.get(0)) {
+            boolean all = true;
+            for (int i = 1; i < lists.size() && all; i++) {
+                all = lists.get(i).contains(id);
+            }
+            if (all) matches.add(id);
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the stored form of the words of an appointment.
+     *
+     * @param id the appointment ID
+     * @return a record holding the appointment ID and its words separated by spaces
+     */
+    public CsvCompatible row(int id) {
+        String line = id + "," + String.join(" ", terms.getOrDefault(id, new String[0]));
+        return () -> line;
+    }
+
+    /**
+     * Returns the stored form of every indexed appointment.
+     *
+     * @return a record for each indexed appointment
+     */
+    public ArrayList<CsvCompatible> rows() {
+        ArrayList<CsvCompatible> rows = new ArrayList<>();
+        for (Integer id : terms.keySet()) {
+            rows.add(row(id));
+        }
+        return rows;
+    }
+
+    /**
+     * Splits the stored words of an appointment back into an array.
+     *
+     * @param field the words separated by spaces
+     * @return the words
+     */
+    public static String[] parseTerms(String field) {
+        return field.isEmpty() ? new String[0] : field.split(" ");
+    }
+}
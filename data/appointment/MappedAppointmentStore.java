@@ -0,0 +1,445 @@
+package data.appointment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import appointment.Appointment;
+import appointment.AppointmentSlot;
+import appointment.AppointmentStatus;
+import medicine.Prescription;
+import medicine.PrescriptionStatus;
+import record.AppointmentOutcomeRecord;
+import user.UserId;
+
+/**
+ * Memory-mapped storage for appointments.
+ * Each appointment has a fixed-width header record in an index file, addressed directly by appointment ID,
+ * holding the patient and doctor IDs, status, slot time and prescription status. Outcome records are
+ * variable-length, so they are appended to a separate heap file and the header points at them.
+ *
+ * Status changes, reschedules and dispensing only rewrite a few bytes of the header in place. Writes go to the
+ * OS page cache through the mapping, so they survive the program crashing; {@link #force()} also makes them
+ * survive the machine crashing.
+ *
+ * A series of new appointments is written with {@link #writeBatch(List)}, which records the range of IDs being
+ * written in the file header before writing any of them and clears it afterwards. If the store is opened with the
+ * range still set, the batch was cut short by a crash, and every appointment in it is dropped, so a series is
+ * either stored whole or not at all.
+ *
+ * File header layout (16 bytes): magic (int), number of records in use (int), first ID of the batch being written
+ * (int), ID after the last one of the batch (int); the batch IDs are both 0 when no batch is being written.
+ * Index record layout (32 bytes): id (int), present (byte), status (byte), availability (byte),
+ * prescription status (byte, -1 if there is no outcome), patient ID (int), doctor ID (int), slot time in
+ * minutes since the epoch (int), outcome length (int), outcome offset in the heap (long).
+ * User IDs are stored as their prefix character in the top 8 bits and their number in the low 24 bits.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class MappedAppointmentStore {
+    private static final int MAGIC = 0x484d5341; // "HMSA"
+    private static final int COUNT = 4, BATCH_START = 8, BATCH_END = 12;
+    private static final int FILE_HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 32;
+    private static final int INITIAL_RECORDS = 1024;
+    private static final int HEAP_HEADER_SIZE = 8;
+    private static final int INITIAL_HEAP_SIZE = 1 << 16;
+
+    private static final int ID = 0, PRESENT = 4, STATUS = 5, AVAILABILITY = 6, PRESCRIPTION_STATUS = 7;
+    private static final int PATIENT = 8, DOCTOR = 12, SLOT = 16, OUTCOME_LENGTH = 20, OUTCOME_OFFSET = 24;
+
+    private FileChannel indexChannel, heapChannel;
+    private MappedByteBuffer index, heap;
+    private int capacity;
+    private int count;
+    private long heapEnd;
+
+    /**
+     * Opens the store kept in {@code path + ".idx"} and {@code path + ".heap"}, creating the files if they do not exist.
+     *
+     * @param path the base path of the store files
+     * @throws IOException if the files cannot be opened or are not appointment store files
+     */
+    public MappedAppointmentStore(String path) throws IOException {
+        indexChannel = FileChannel.open(Path.of(path + ".idx"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        heapChannel = FileChannel.open(Path.of(path + ".heap"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (indexChannel.size() == 0) {
+            capacity = INITIAL_RECORDS;
+            index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_HEADER_SIZE + (long) capacity * RECORD_SIZE);
+            index.putInt(0, MAGIC);
+            index.putInt(COUNT, 0);
+            count = 0;
+        } else {
+            capacity = (int) ((indexChannel.size() - FILE_HEADER_SIZE) / RECORD_SIZE);
+            index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_HEADER_SIZE + (long) capacity * RECORD_SIZE);
+            if (index.getInt(0) != MAGIC) throw new IOException(path + ".idx is not an appointment store file.");
+            count = index.getInt(COUNT);
+            discardTornBatch();
+        }
+
+        if (heapChannel.size() == 0) {
+            heap = heapChannel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_HEAP_SIZE);
+            heapEnd = HEAP_HEADER_SIZE;
+            heap.putLong(0, heapEnd);
+        } else {
+            heap = heapChannel.map(FileChannel.MapMode.READ_WRITE, 0, heapChannel.size());
+            heapEnd = heap.getLong(0);
+        }
+    }
+
+    /**
+     * Checks whether the store holds no appointments.
+     *
+     * @return true if no appointment has been written to the store
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Reads every appointment in the store.
+     *
+     * @return the appointments, in order of ID
+     * @throws IOException if an outcome record is corrupted
+     */
+    public ArrayList<Appointment> readAll() throws IOException {
+        ArrayList<Appointment> appointments = new ArrayList<>();
+        for (int id = 0; id < count; id++) {
+            int base = offset(id);
+            if (index.get(base + PRESENT) == 0) continue;
+
+            AppointmentSlot slot = new AppointmentSlot(fromEpochMinutes(index.getInt(base + SLOT)), index.get(base + AVAILABILITY) != 0);
+            String[] record = null;
+            if (index.get(base + PRESCRIPTION_STATUS) >= 0) {
+                record = readOutcome(index.getLong(base + OUTCOME_OFFSET), index.getInt(base + OUTCOME_LENGTH), PrescriptionStatus.values()[index.get(base + PRESCRIPTION_STATUS)]);
+            }
+            appointments.add(new Appointment(
+                index.getInt(base + ID),
+                unpackUserId(index.getInt(base + PATIENT)),
+                unpackUserId(index.getInt(base + DOCTOR)),
+                AppointmentStatus.values()[index.get(base + STATUS)],
+                slot,
+                record
+            ));
+        }
+        return appointments;
+    }
+
+    /**
+     * Writes an appointment, including its outcome record.
+     * The outcome record is appended to the heap, so this should only be used when the outcome has changed.
+     *
+     * @param appointment the appointment to write
+     * @throws IOException if the store cannot be grown
+     */
+    public void write(Appointment appointment) throws IOException {
+        AppointmentOutcomeRecord record = appointment.getRecord();
+        if (record != null) {
+            byte[] data = encodeOutcome(record);
+            ensureHeapCapacity(data.length);
+            long position = heapEnd;
+            heap.put((int) position, data);
+            heapEnd += data.length;
+            heap.putLong(0, heapEnd);
+
+            int base = reserve(appointment.getId());
+            index.putLong(base + OUTCOME_OFFSET, position);
+            index.putInt(base + OUTCOME_LENGTH, data.length);
+        }
+        writeHeader(appointment);
+    }
+
+    /**
+     * Writes the fixed-width fields of an appointment in place: its IDs, status, slot and prescription status.
+     * The outcome record is not written, so this must not be used for an appointment whose outcome has just been set.
+     *
+     * @param appointment the appointment to write
+     * @throws IOException if the store cannot be grown
+     */
+    public void writeHeader(Appointment appointment) throws IOException {
+        int base = reserve(appointment.getId());
+        PrescriptionStatus prescriptionStatus = appointment.getPrescriptionStatus();
+
+        index.putInt(base + ID, appointment.getId());
+        index.put(base + STATUS, (byte) appointment.getAppointmentStatus().ordinal());
+        index.put(base + AVAILABILITY, (byte) (appointment.getSlot().getAvailability() ? 1 : 0));
+        index.put(base + PRESCRIPTION_STATUS, (byte) (prescriptionStatus == null ? -1 : prescriptionStatus.ordinal()));
+        index.putInt(base + PATIENT, packUserId(appointment.getPatientId()));
+        index.putInt(base + DOCTOR, packUserId(appointment.getDoctorId()));
+        index.putInt(base + SLOT, toEpochMinutes(appointment.getSlot().getDate()));
+        index.put(base + PRESENT, (byte) 1);
+    }
+
+    /**
+     * Writes the fixed-width fields of a series of new appointments, so that after a crash either all of them are
+     * stored or none are. The range of IDs in the batch is forced to the storage device before the appointments are
+     * written and cleared once they have been forced too.
+     *
+     * @param batch the new appointments, whose IDs must be allocated together with no other appointment in between
+     * @throws IOException if the store cannot be grown
+     */
+    public void writeBatch(List<Appointment> batch) throws IOException {
+        if (batch.isEmpty()) return;
+        int start = batch.get(0).getId(), end = start + 1;
+        for (Appointment appointment : batch) {
+            start = Math.min(start, appointment.getId());
+            end = Math.max(end, appointment.getId() + 1);
+        }
+        reserve(end - 1);
+        index.putInt(BATCH_START, start);
+        index.putInt(BATCH_END, end);
+        index.force();
+
+        for (Appointment appointment : batch) {
+            writeHeader(appointment);
+        }
+        index.force();
+
+        index.putInt(BATCH_START, 0);
+        index.putInt(BATCH_END, 0);
+        index.force();
+    }
+
+    /**
+     * Drops the appointments of a batch that was being written when the store was last closed, if there is one.
+     */
+    private void discardTornBatch() {
+        int start = Math.max(index.getInt(BATCH_START), 0), end = Math.min(index.getInt(BATCH_END), count);
+        if (index.getInt(BATCH_END) <= index.getInt(BATCH_START)) return;
+
+        System.out.println("Discarding an incomplete batch of appointments in the appointment store.");
+        for (int id = start; id < end; id++) {
+            index.put(offset(id) + PRESENT, (byte) 0);
+        }
+        index.putInt(BATCH_START, 0);
+        index.putInt(BATCH_END, 0);
+        index.force();
+    }
+
+    /**
+     * Forces every change made through the mapping to be written to the storage device.
+     */
+    public void force() {
+        index.force();
+        heap.force();
+    }
+
+    /**
+     * Forces every change to the storage device and closes the store files.
+     *
+     * @throws IOException if there is an error closing the files
+     */
+    public void close() throws IOException {
+        force();
+        indexChannel.close();
+        heapChannel.close();
+    }
+
+    /**
+     * Returns the offset of the header record of an appointment, growing the index if needed,
+     * and extends the number of records in use to include it.
+     *
+     * @param id the ID of the appointment
+     * @return the offset of the header record in the index
+     * @throws IOException if the index cannot be grown
+     */
+    private int reserve(int id) throws IOException {
+        if (id < 0) throw new IOException("Invalid appointment ID " + id + ".");
+        if (id >= capacity) {
+            int newCapacity = capacity;
+            while (id >= newCapacity) newCapacity *= 2;
+            index.force();
+            index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_HEADER_SIZE + (long) newCapacity * RECORD_SIZE);
+            capacity = newCapacity;
+        }
+        if (id >= count) {
+            count = id + 1;
+            index.putInt(COUNT, count);
+        }
+        return offset(id);
+    }
+
+    /**
+     * Grows the heap mapping so that the given number of bytes can be appended.
+     *
+     * @param length the number of bytes to append
+     * @throws IOException if the heap cannot be grown
+     */
+    private void ensureHeapCapacity(int length) throws IOException {
+        long required = heapEnd + length;
+        if (required <= heap.capacity()) return;
+        long newSize = heap.capacity();
+        while (newSize < required) newSize *= 2;
+        if (newSize > Integer.MAX_VALUE) throw new IOException("Appointment heap is full.");
+        heap.force();
+        heap = heapChannel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+    }
+
+    /**
+     * Returns the offset of the header record of an appointment.
+     *
+     * @param id the ID of the appointment
+     * @return the offset of the header record in the index
+     */
+    private static int offset(int id) {
+        return FILE_HEADER_SIZE + id * RECORD_SIZE;
+    }
+
+    /**
+     * Encodes the variable-length fields of an outcome record.
+     * The prescription status is kept in the header so that dispensing is an in-place write.
+     *
+     * @param record the outcome record
+     * @return the encoded fields
+     */
+    private static byte[] encodeOutcome(AppointmentOutcomeRecord record) {
+        ArrayList<byte[]> strings = new ArrayList<>();
+        strings.add(record.getServiceType().getBytes(StandardCharsets.UTF_8));
+        strings.add(record.getConsultationNotes().getBytes(StandardCharsets.UTF_8));
+        for (Prescription prescription : record.getPrescription()) {
+            strings.add(prescription.getName().getBytes(StandardCharsets.UTF_8));
+        }
+        for (String diagnosis : record.getDiagnoses()) {
+            strings.add(diagnosis.getBytes(StandardCharsets.UTF_8));
+        }
+        for (String treatment : record.getTreatmentPlan()) {
+            strings.add(treatment.getBytes(StandardCharsets.UTF_8));
+        }
+
+        int size = 3 * 4 + record.getPrescription().size() * 4;
+        for (byte[] string : strings) {
+            size += 4 + string.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        int next = 0;
+        putString(buffer, strings.get(next++));
+        putString(buffer, strings.get(next++));
+        buffer.putInt(record.getPrescription().size());
+        for (Prescription prescription : record.getPrescription()) {
+            putString(buffer, strings.get(next++));
+            buffer.putInt(prescription.getQuantity());
+        }
+        buffer.putInt(record.getDiagnoses().size());
+        for (int i = 0; i < record.getDiagnoses().size(); i++) {
+            putString(buffer, strings.get(next++));
+        }
+        buffer.putInt(record.getTreatmentPlan().size());
+        for (int i = 0; i < record.getTreatmentPlan().size(); i++) {
+            putString(buffer, strings.get(next++));
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Reads an outcome record from the heap into the raw form an appointment keeps until the record is first used.
+     *
+     * @param position the offset of the record in the heap
+     * @param length the length of the record
+     * @param prescriptionStatus the prescription status stored in the header
+     * @return the raw fields of the outcome record
+     * @throws IOException if the record lies outside the heap
+     */
+    private String[] readOutcome(long position, int length, PrescriptionStatus prescriptionStatus) throws IOException {
+        if (position < HEAP_HEADER_SIZE || position + length > heapEnd) {
+            throw new IOException("Invalid appointment store: outcome record at " + position + " is outside the heap.");
+        }
+        ByteBuffer buffer = heap.slice((int) position, length);
+
+        String serviceType = getString(buffer);
+        String consultationNotes = getString(buffer);
+        int count = buffer.getInt();
+        ArrayList<Prescription> prescription = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            prescription.add(new Prescription(getString(buffer), buffer.getInt()));
+        }
+        count = buffer.getInt();
+        ArrayList<String> diagnoses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            diagnoses.add(getString(buffer));
+        }
+        count = buffer.getInt();
+        ArrayList<String> treatmentPlan = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            treatmentPlan.add(getString(buffer));
+        }
+
+        return Appointment.encodeRecord(serviceType, consultationNotes, prescriptionStatus, prescription, diagnoses, treatmentPlan);
+    }
+
+    /**
+     * Writes a length-prefixed string.
+     *
+     * @param buffer the buffer to write to
+     * @param string the UTF-8 bytes of the string
+     */
+    private static void putString(ByteBuffer buffer, byte[] string) {
+        buffer.putInt(string.length);
+        buffer.put(string);
+    }
+
+    /**
+     * Reads a length-prefixed string.
+     *
+     * @param buffer the buffer to read from
+     * @return the string
+     */
+    private static String getString(ByteBuffer buffer) {
+        byte[] string = new byte[buffer.getInt()];
+        buffer.get(string);
+        return new String(string, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Packs a user ID into an int.
+     *
+     * @param id the user ID
+     * @return the prefix in the top 8 bits and the number in the low 24 bits
+     * @throws IOException if the user ID does not fit
+     */
+    private static int packUserId(UserId id) throws IOException {
+        if (id.getPrefix() > 0xff || id.getNum() < 0 || id.getNum() > 0xffffff) {
+            throw new IOException("User ID " + id + " cannot be stored in the appointment store.");
+        }
+        return (id.getPrefix() << 24) | id.getNum();
+    }
+
+    /**
+     * Unpacks a user ID from an int.
+     *
+     * @param packed the packed user ID
+     * @return the user ID
+     */
+    private static UserId unpackUserId(int packed) {
+        return UserId.of((char) (packed >>> 24), packed & 0xffffff);
+    }
+
+    /**
+     * Converts a date-time to whole minutes since the epoch.
+     *
+     * @param dateTime the date-time to convert
+     * @return the number of minutes since 1970-01-01T00:00
+     */
+    private static int toEpochMinutes(LocalDateTime dateTime) {
+        return (int) (dateTime.toEpochSecond(ZoneOffset.UTC) / 60);
+    }
+
+    /**
+     * Converts minutes since the epoch back to a date-time.
+     *
+     * @param minutes the number of minutes since 1970-01-01T00:00
+     * @return the corresponding date-time
+     */
+    private static LocalDateTime fromEpochMinutes(int minutes) {
+        return LocalDateTime.ofEpochSecond(minutes * 60L, 0, ZoneOffset.UTC);
+    }
+}
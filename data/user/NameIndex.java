@@ -0,0 +1,122 @@
+package data.user;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+import user.UserId;
+
+/**
+ * Prefix index over the names and usernames of users.
+ * Each user is filed under their full name, each word of their name and their username, all in lowercase,
+ * in a sorted map. The users matching a prefix are found by a range scan starting at the prefix,
+ * so finding the first few matches does not depend on the number of users.
+ *
+ * This class is not thread-safe; the user database guards it with its own lock.
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class NameIndex {
+    private TreeMap<String, LinkedHashSet<UserId>> keys;
+    private HashMap<UserId, String[]> entries;
+
+    /**
+     * Constructs an empty NameIndex.
+     */
+    public NameIndex() {
+        this.keys = new TreeMap<>();
+        this.entries = new HashMap<>();
+    }
+
+    /**
+     * Files a user under their name and username, replacing the keys they were filed under before.
+     *
+     * @param id the unique ID of the user
+     * @param name the full name of the user
+     * @param username the username of the user, or null if they have no account
+     */
+    public void put(UserId id, String name, String username) {
+        remove(id);
+        LinkedHashSet<String> userKeys = new LinkedHashSet<>();
+        String fullName = normalize(name);
+        userKeys.add(fullName);
+        for (String word : fullName.split(" ")) {
+            if (!word.isEmpty()) userKeys.add(word);
+        }
+        if (username != null) userKeys.add(normalize(username));
+        userKeys.remove("");
+
+        String[] filed = userKeys.toArray(new String[0]);
+        entries.put(id, filed);
+        for (String key : filed) {
+            keys.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(id);
+        }
+    }
+
+    /**
+     * Removes a user from the index.
+     *
+     * @param id the unique ID of the user
+     */
+    public void remove(UserId id) {
+        String[] filed = entries.remove(id);
+        if (filed == null) return;
+        for (String key : filed) {
+            LinkedHashSet<UserId> ids = keys.get(key);
+            ids.remove(id);
+            if (ids.isEmpty()) keys.remove(key);
+        }
+    }
+
+    /**
+     * Finds the users whose name, a word of whose name, or whose username starts with the given prefix.
+     * Matches are returned in alphabetical order of the key they matched, each user at most once.
+     * Users sharing a key are returned in the order they were filed.
+     *
+     * @param prefix the start of a name or username, ignoring case
+     * @param limit the maximum number of users to return
+     * @param filter only users accepted by the filter are returned, or null to accept every user
+     * @return the IDs of up to limit matching users
+     */
+    public ArrayList<UserId> search(String prefix, int limit, Predicate<UserId> filter) {
+        LinkedHashSet<UserId> matches = new LinkedHashSet<>();
+        String start = normalize(prefix);
+        if (start.isEmpty()) return new ArrayList<>();
+        for (Map.Entry<String, LinkedHashSet<UserId>> entry : keys.tailMap(start, true).entrySet()) {
+            if (!entry.getKey().startsWith(start) || matches.size() >= limit) break;
+            for (UserId id : entry.getValue()) {
+                if (matches.size() >= limit) break;
+                if (filter == null || filter.test(id)) matches.add(id);
+            }
+        }
+        return new ArrayList<>(matches);
+    }
+
+    /**
+     * Puts a name or username in the form it is indexed under: lowercase, with runs of whitespace
+     * replaced by a single space.
+     *
+     * @param text the name or username
+     * @return the normalized text
+     */
+    private static String normalize(String text) {
+        String lower = text.trim().toLowerCase(Locale.ROOT);
+        StringBuilder result = new StringBuilder(lower.length());
+        boolean space = false;
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space) result.append(' ');
+            result.append(c);
+            space = false;
+        }
+        return result.toString();
+    }
+}
@@ -1,15 +1,22 @@
 package data.user;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
 
 import appointment.Appointment;
+import appointment.DoctorSlot;
+import appointment.Schedule;
+import appointment.SlotFinder;
+import data.CsvCompatible;
+import data.IdAllocator;
 import data.ReadFile;
-import data.WriteFile;
+import data.StorageBackend;
+import data.StorageTable;
 import data.appointment.AppointmentDatabase;
 import medicine.Inventory;
 import user.Administrator;
@@ -24,81 +31,212 @@ import user.UserId;
 
 /**
  * The UserDatabase class manages the user accounts, staff, and patient records in the system.
- * It handles the reading and writing of user data from/to CSV files and provides functionality to manage 
+ * It reads and writes user data through a storage backend and provides functionality to manage 
  * accounts for various roles such as Doctor, Administrator, Pharmacist, and Patient.
+ *
+ * Accounts are indexed by username as well as by user ID, so logging in and checking whether a username is taken
+ * do not depend on the number of users. Usernames are unique; generated usernames get a numeric suffix if needed.
+ * Patients and staff are also kept in a {@link NameIndex} each, so they can be looked up by the start of their name
+ * or username instead of being picked from a full list.
+ * The schedules of the doctors are kept in a {@link SlotFinder}, so the earliest available slots across all doctors
+ * can be found without going through each schedule.
  * @author NATANAEL TAN TIONG OON
  * @version 1.0
  * @since 2024-11-21
  */
 public class UserDatabase implements UserDatabaseApiPatient, UserDatabaseApiAdministrator, UserDatabaseApiDoctor {
     private HashMap<UserId, UserAccount> accounts;
+    private HashMap<String, UserAccount> usernames;
     private HashMap<UserId, Patient> patients;
     private HashMap<UserId, Staff> staffs;
     private HashMap<UserId, DoctorApiPatient> doctors;
+    private NameIndex patientNames;
+    private NameIndex staffNames;
+    private SlotFinder slotFinder;
     private AppointmentDatabase appointmentDb;
     private Inventory inventory;
-
-    private String accountListPath, staffListPath, patientListPath;
+    private StorageBackend backend;
+    private IdAllocator ids;
+    private int scheduleHorizonDays;
 
     /**
-     * Constructs a UserDatabase by reading user data from the provided file paths.
-     * If the account list file does not exist, it creates a new one.
+     * Constructs a UserDatabase by loading the patients, staff and accounts from the storage backend.
+     * If the account table does not exist, an account with an empty password is created for every user.
      *
-     * @param accountListPath the path to the account list CSV file
-     * @param patientListPath the path to the patient list CSV file
-     * @param staffListPath the path to the staff list CSV file
-     * @throws IOException if there is an error reading the files
+     * @param backend the storage backend holding the user records
+     * @param ids the allocator that hands out IDs for new users
+     * @throws IOException if there is an error reading or writing the user records
      */
-    public UserDatabase(String accountListPath, String patientListPath, String staffListPath) throws IOException {
-        ArrayList<Staff> staffList = ReadFile.readStaffListFile(staffListPath);
-        ArrayList<Patient> patientList = ReadFile.readPatientListFile(patientListPath);
+    public UserDatabase(StorageBackend backend, IdAllocator ids) throws IOException {
+        this(backend, ids, loadPatients(backend), loadStaff(backend), null);
+    }
 
+    /**
+     * Constructs a UserDatabase from records that have already been loaded, such as from a snapshot.
+     * The storage backend is still used to write changes. If no accounts are given, they are loaded from the
+     * backend, or created if the account table does not exist.
+     *
+     * @param backend the storage backend that changes are written to
+     * @param ids the allocator that hands out IDs for new users
+     * @param patientList the loaded patients
+     * @param staffList the loaded staff members
+     * @param accountList the loaded user accounts, or null to load them from the backend
+     * @throws IOException if there is an error reading or writing the account records
+     */
+    public UserDatabase(StorageBackend backend, IdAllocator ids, ArrayList<Patient> patientList, ArrayList<Staff> staffList, ArrayList<UserAccount> accountList) throws IOException {
         this.accounts = new HashMap<>();
+        this.usernames = new HashMap<>();
         this.staffs = new HashMap<>();
         this.patients = new HashMap<>();
         this.doctors = new HashMap<>();
+        this.patientNames = new NameIndex();
+        this.staffNames = new NameIndex();
+        this.slotFinder = new SlotFinder();
         this.appointmentDb = null;
         this.inventory = null;
+        this.backend = backend;
+        this.ids = ids;
+        this.scheduleHorizonDays = Schedule.DEFAULT_HORIZON_DAYS;
 
         for (Patient patient: patientList) {
             patients.put(patient.getId(), patient);
+            ids.observe(patient.getId());
         }
         for (Staff staff : staffList) {
             staffs.put(staff.getId(), staff);
+            ids.observe(staff.getId());
         }
 
-        if (Files.notExists(Path.of(accountListPath))) {
-            System.out.printf("%s does not exist, creating new database...\n\n", accountListPath);
-            accounts = new HashMap<>();
+        backend.attach(StorageTable.Account, () -> {
+            synchronized (this) {
+                return new ArrayList<>(accounts.values());
+            }
+        });
+        backend.attach(StorageTable.Staff, () -> {
+            synchronized (this) {
+                return new ArrayList<>(staffs.values());
+            }
+        });
+        backend.attach(StorageTable.Patient, () -> {
+            synchronized (this) {
+                return new ArrayList<>(patients.values());
+            }
+        });
+
+        if (accountList != null) {
+            for (UserAccount account : accountList) {
+                putAccount(account);
+            }
+        } else if (!backend.exists(StorageTable.Account)) {
+            System.out.println("Account list does not exist, creating new database...\n");
             for (Patient patient : patientList) {
                 String username = nameToUsername(patient.getName());
-                accounts.put(patient.getId(), new UserAccount(patient.getId(), username, "", Role.Patient));
+                putAccount(new UserAccount(patient.getId(), username, "", Role.Patient));
             }
             for (Staff staff : staffList) {
                 String username = nameToUsername(staff.getName());
-                accounts.put(staff.getId(), new UserAccount(staff.getId(), username, "", staff.getRole()));
+                putAccount(new UserAccount(staff.getId(), username, "", staff.getRole()));
             }
-            WriteFile.writeFile(accounts.values(), accountListPath);
-        } else {
-            ArrayList<UserAccount> accountList = ReadFile.readAccountListFile(accountListPath);
-            for (UserAccount account : accountList) {
-                accounts.put(account.getId(), account);
+            for (UserAccount account : accounts.values()) {
+                store(StorageTable.Account, account.getId(), account);
             }
+            backend.flush();
+        } else {
+            backend.load(StorageTable.Account, line -> {
+                putAccount(ReadFile.parseAccount(line));
+            });
         }
 
-        this.accountListPath = accountListPath;
-        this.staffListPath = staffListPath;
-        this.patientListPath = patientListPath;
+        for (Patient patient : patientList) {
+            indexName(patientNames, patient.getId(), patient.getName());
+        }
+        for (Staff staff : staffList) {
+            indexName(staffNames, staff.getId(), staff.getName());
+        }
+    }
+
+    /**
+     * Loads every patient from the storage backend.
+     *
+     * @param backend the storage backend holding the patient records
+     * @return the loaded patients
+     * @throws IOException if there is an error reading or parsing the patient records
+     */
+    private static ArrayList<Patient> loadPatients(StorageBackend backend) throws IOException {
+        ArrayList<Patient> patientList = new ArrayList<>();
+        backend.load(StorageTable.Patient, line -> patientList.add(ReadFile.parsePatient(line)));
+        return patientList;
+    }
+
+    /**
+     * Loads every staff member from the storage backend.
+     *
+     * @param backend the storage backend holding the staff records
+     * @return the loaded staff members
+     * @throws IOException if there is an error reading or parsing the staff records
+     */
+    private static ArrayList<Staff> loadStaff(StorageBackend backend) throws IOException {
+        ArrayList<Staff> staffList = new ArrayList<>();
+        backend.load(StorageTable.Staff, line -> staffList.add(ReadFile.parseStaff(line)));
+        return staffList;
     }
 
     /**
      * Converts a given name to a username format (lowercase, spaces replaced with underscores).
+     * If the username is already taken, the lowest free numeric suffix starting from 2 is appended.
      * 
      * @param name the name to convert
-     * @return the converted username
+     * @return the converted username, not yet taken by any account
      */
     private String nameToUsername(String name) {
-        return name.toLowerCase().replace(" ", "_");
+        String username = name.toLowerCase().replace(" ", "_");
+        if (!usernames.containsKey(username)) return username;
+        int suffix = 2;
+        while (usernames.containsKey(username + "_" + suffix)) suffix++;
+        return username + "_" + suffix;
+    }
+
+    /**
+     * Adds an account to the database, indexed by both user ID and username.
+     *
+     * @param account the account to add
+     */
+    private void putAccount(UserAccount account) {
+        UserAccount previous = accounts.put(account.getId(), account);
+        if (previous != null) usernames.remove(previous.getUsername(), previous);
+        usernames.put(account.getUsername(), account);
+    }
+
+    /**
+     * Files a user in a name index under their name and the username of their account.
+     *
+     * @param index the name index of patients or of staff
+     * @param id the unique ID of the user
+     * @param name the full name of the user
+     */
+    private void indexName(NameIndex index, UserId id, String name) {
+        UserAccount account = accounts.get(id);
+        index.put(id, name, account != null ? account.getUsername() : null);
+    }
+
+    /**
+     * Removes the account of a user from the database.
+     *
+     * @param id the unique ID of the user
+     */
+    private void removeAccount(UserId id) {
+        UserAccount account = accounts.remove(id);
+        if (account != null) usernames.remove(account.getUsername(), account);
+    }
+
+    /**
+     * Sets how many days ahead doctor schedules can be viewed and booked.
+     * This applies to the schedules created afterwards, so it should be called before {@link #initUsers}.
+     *
+     * @param days the number of days after today
+     */
+    public void setScheduleHorizon(int days) {
+        this.scheduleHorizonDays = days;
     }
 
     /**
@@ -109,8 +247,23 @@ public class UserDatabase implements UserDatabaseApiPatient, UserDatabaseApiAdmi
      * @param appointmentDb the appointment database
      */
     public void initUsers(Inventory inventory, AppointmentDatabase appointmentDb) {
+        initUsers(inventory, appointmentDb, Runnable::run);
+    }
+
+    /**
+     * Initializes users, linking them with their appointments and inventory. This should be called after the 
+     * UserDatabase is constructed and when appointments and inventory are available.
+     * The schedule of each doctor and the medical record of each patient are built as separate tasks on the given
+     * executor, and this method returns once all of them are done. The appointments must not change until then.
+     *
+     * @param inventory the inventory object
+     * @param appointmentDb the appointment database
+     * @param executor the executor that builds the doctor schedules and patient records
+     */
+    public void initUsers(Inventory inventory, AppointmentDatabase appointmentDb, Executor executor) {
         this.appointmentDb = appointmentDb;
         this.inventory = inventory;
+        ArrayList<CompletableFuture<Void>> tasks = new ArrayList<>();
 
         // Patients have access to specific functions of Doctor
         for (Staff staff : staffs.values()) {
@@ -121,9 +274,11 @@ public class UserDatabase implements UserDatabaseApiPatient, UserDatabaseApiAdmi
                     // Create doctor API
                     doctors.put(temp.getId(), temp);
 
-                    // Set appointment slots
-                    temp.setSchedule(LocalDate.parse("2024-01-01"), LocalDate.parse("2025-12-31"));
-                    temp.setAppointmentDb(appointmentDb);
+                    // Set appointment slots, then mark the booked ones
+                    tasks.add(CompletableFuture.runAsync(() -> {
+                        temp.setSchedule(scheduleHorizonDays, Schedule.DEFAULT_RESIDENT_DAYS);
+                        temp.setAppointmentDb(appointmentDb);
+                    }, executor));
                     break;
                 }
                 // Set global inventory for each pharmacist
@@ -144,49 +299,49 @@ public class UserDatabase implements UserDatabaseApiPatient, UserDatabaseApiAdmi
         }
 
         for (Patient patient : patients.values()) {
-            patient.init(this, appointmentDb);
+            tasks.add(CompletableFuture.runAsync(() -> patient.init(this, appointmentDb), executor));
         }
-    }
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
 
-    /**
-     * Updates the account file with the current list of user accounts.
-     */
-    private void updateAccountFile() {
-        try {
-            WriteFile.writeFile(accounts.values(), accountListPath);
-        } catch (Exception e) {
-            System.out.println("Error updating file: " + e.getMessage());
+        synchronized (this) {
+            for (DoctorApiPatient doctor : doctors.values()) {
+                slotFinder.add(doctor.getId(), doctor.getPersonalSchedule());
+            }
         }
     }
 
     /**
-     * Updates the staff file with the current list of staff members.
+     * Writes the current state of a user record to the storage backend.
+     *
+     * @param table the table of the record
+     * @param id the ID of the user
+     * @param item the record
+     * @return a future that completes once the record is stored, or completes exceptionally if it cannot be
      */
-    private void updateStaffFile() {
-        try {
-            WriteFile.writeFile(staffs.values(), staffListPath);
-        } catch (Exception e) {
-            System.out.println("Error updating file: " + e.getMessage());
-        }
+    private CompletableFuture<Void> store(StorageTable table, UserId id, CsvCompatible item) {
+        return StorageBackend.reportFailure(backend.upsert(table, id.toString(), item), "Error updating file: ");
     }
 
     /**
-     * Updates the patient file with the current list of patients.
+     * Removes a user record from the storage backend.
+     *
+     * @param table the table of the record
+     * @param id the ID of the user
+     * @return a future that completes once the record is removed, or completes exceptionally if it cannot be
      */
-    private void updatePatientFile(){
-        try {
-            WriteFile.writeFile(patients.values(), patientListPath);
-        } catch (Exception e) {
-            System.out.println("Error updating file: " + e.getMessage());
-        }
+    private CompletableFuture<Void> erase(StorageTable table, UserId id) {
+        return StorageBackend.reportFailure(backend.delete(table, id.toString()), "Error updating file: ");
     }
 
-
     /**
-     * Updates the patient by calling the private function.
+     * Writes the current details of a patient to the storage backend.
+     *
+     * @param patient the patient whose details changed
+     * @return a future that completes once the details are stored, or completes exceptionally if they cannot be
      */
-    public void updatePatient(){
-        updatePatientFile();
+    public synchronized CompletableFuture<Void> updatePatient(Patient patient){
+        indexName(patientNames, patient.getId(), patient.getName());
+        return store(StorageTable.Patient, patient.getId(), patient);
     }
 
     /**
@@ -195,13 +350,18 @@ public class UserDatabase implements UserDatabaseApiPatient, UserDatabaseApiAdmi
      * @param username the username of the account to retrieve
      * @return the UserAccount with the specified username, or null if no account is found
      */
-    public UserAccount getAccount(String username) {
-        for (UserAccount account : accounts.values()) {
-            if (account.getUsername().equals(username)) {
-                return account;
-            }
-        }
-        return null;
+    public synchronized UserAccount getAccount(String username) {
+        return usernames.get(username);
+    }
+
+    /**
+     * Checks whether a username is already used by an account.
+     *
+     * @param username the username to check
+     * @return true if an account with the username exists
+     */
+    public synchronized boolean isUsernameTaken(String username) {
+        return usernames.containsKey(username);
     }
 
     /**
@@ -213,22 +373,21 @@ public class UserDatabase implements UserDatabaseApiPatient, UserDatabaseApiAdmi
      * @param gender the gender of the new patient
      * @param bloodType the blood type of the new patient
      * @param contactInfo the contact information for the new patient
-     * @return the newly created Patient object
+     * @return the newly created Patient object, or null if the username is already taken
      */
-    public Patient registerPatient(String username, String name, String birthDate, String gender, String bloodType, String contactInfo) {
-        int num = 0;
-        for (UserId patientId : patients.keySet()) {
-            if (patientId.getNum() >= num) num = patientId.getNum() + 1;
-        }
-        UserId newId = new UserId('P', num);
+    public synchronized Patient registerPatient(String username, String name, String birthDate, String gender, String bloodType, String contactInfo) {
+        if (isUsernameTaken(username)) return null;
+
+        UserId newId = ids.nextUserId('P');
         
         Patient patient = new Patient(newId, name, birthDate, gender, bloodType, contactInfo);
         patients.put(newId, patient);
         UserAccount account = new UserAccount(newId, username, contactInfo, Role.Patient);
-        accounts.put(newId, account);
+        putAccount(account);
+        indexName(patientNames, newId, name);
 
-        updatePatientFile();
-        updateAccountFile();
+        store(StorageTable.Patient, newId, patient);
+        store(StorageTable.Account, newId, account);
 
         patient.init(this, appointmentDb);
 
@@ -279,6 +438,18 @@ public class UserDatabase implements UserDatabaseApiPatient, UserDatabaseApiAdmi
         return new ArrayList<DoctorApiPatient>(this.doctors.values());
     }
 
+    /**
+     * Finds the earliest available appointment slots across doctors.
+     *
+     * @param after the earliest start time to consider; times before now are treated as now
+     * @param limit the maximum number of slots to return
+     * @param filter only slots of doctors accepted by the filter are returned, or null to accept every doctor
+     * @return up to limit available slots, in order of time
+     */
+    public synchronized ArrayList<DoctorSlot> findEarliestSlots(LocalDateTime after, int limit, Predicate<UserId> filter) {
+        return slotFinder.find(after, limit, filter);
+    }
+
     /**
      * Finds and returns a doctor by their unique user ID.
      *
@@ -298,6 +469,55 @@ public class UserDatabase implements UserDatabaseApiPatient, UserDatabaseApiAdmi
         return new ArrayList<>(this.staffs.values());
     }
 
+    /**
+     * Retrieves a list of all patients.
+     *
+     * @return a list of all patients
+     */
+    public ArrayList<Patient> getAllPatients() {
+        return new ArrayList<>(this.patients.values());
+    }
+
+    /**
+     * Finds the patients whose name, a word of whose name, or whose username starts with the given prefix.
+     *
+     * @param prefix the start of a name or username, ignoring case
+     * @param limit the maximum number of patients to return
+     * @param filter only patients accepted by the filter are returned, or null to accept every patient
+     * @return up to limit matching patients, in alphabetical order of the name or username they matched
+     */
+    public synchronized ArrayList<Patient> searchPatients(String prefix, int limit, Predicate<UserId> filter) {
+        ArrayList<Patient> result = new ArrayList<>();
+        for (UserId id : patientNames.search(prefix, limit, filter)) {
+            result.add(patients.get(id));
+        }
+        return result;
+    }
+
+    /**
+     * Finds the staff members whose name, a word of whose name, or whose username starts with the given prefix.
+     *
+     * @param prefix the start of a name or username, ignoring case
+     * @param limit the maximum number of staff members to return
+     * @return up to limit matching staff members, in alphabetical order of the name or username they matched
+     */
+    public synchronized ArrayList<Staff> searchStaff(String prefix, int limit) {
+        ArrayList<Staff> result = new ArrayList<>();
+        for (UserId id : staffNames.search(prefix, limit, null)) {
+            result.add(staffs.get(id));
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves a list of all user accounts.
+     *
+     * @return a list of all user accounts
+     */
+    public ArrayList<UserAccount> getAccounts() {
+        return new ArrayList<>(this.accounts.values());
+    }
+
     /**
      * Adds a new staff member of the specified role (Doctor, Pharmacist, Administrator).
      *
@@ -307,7 +527,7 @@ public class UserDatabase implements UserDatabaseApiPatient, UserDatabaseApiAdmi
      * @param age the age of the new staff member
      * @return the newly created Staff object, or null if an invalid role is specified
      */
-    public Staff addStaff(String name, Role role, String gender, int age) {
+    public synchronized Staff addStaff(String name, Role role, String gender, int age) {
         char prefix;
         switch (role) {
             case Doctor:
@@ -322,11 +542,7 @@ public class UserDatabase implements UserDatabaseApiPatient, UserDatabaseApiAdmi
             default:
                 return null;
         }
-        int num = 0;
-        for (UserId staffId : staffs.keySet()) {
-            if (staffId.getPrefix() == prefix && staffId.getNum() >= num) num = staffId.getNum() + 1;
-        }
-        UserId newId = new UserId(prefix, num);
+        UserId newId = ids.nextUserId(prefix);
 
         Staff staff;
         UserAccount newAccount = new UserAccount(newId, nameToUsername(name), "", role);
@@ -335,9 +551,10 @@ public class UserDatabase implements UserDatabaseApiPatient, UserDatabaseApiAdmi
             case Doctor: {
                 Doctor temp = new Doctor(newId, name, role, gender, age);
                 temp.init(this, inventory);
-                temp.setSchedule(LocalDate.parse("2024-01-01"), LocalDate.parse("2025-12-31"));
+                temp.setSchedule(scheduleHorizonDays, Schedule.DEFAULT_RESIDENT_DAYS);
                 temp.setAppointmentDb(appointmentDb);
                 this.doctors.put(newId, temp);
+                this.slotFinder.add(newId, temp.getPersonalSchedule());
                 staff = temp;
                 break;
             }
@@ -358,10 +575,11 @@ public class UserDatabase implements UserDatabaseApiPatient, UserDatabaseApiAdmi
         }
 
         staffs.put(newId, staff);
-        accounts.put(newId, newAccount);
+        putAccount(newAccount);
+        indexName(staffNames, newId, name);
 
-        updateStaffFile();
-        updateAccountFile();
+        store(StorageTable.Staff, newId, staff);
+        store(StorageTable.Account, newId, newAccount);
 
         return staff;
     }
@@ -376,15 +594,16 @@ public class UserDatabase implements UserDatabaseApiPatient, UserDatabaseApiAdmi
      * @param age the new age for the staff member
      * @return the updated Staff object, or null if the staff member does not exist
      */
-    public Staff updateStaff(UserId id, String name, Role role, String gender, int age) {
+    public synchronized Staff updateStaff(UserId id, String name, Role role, String gender, int age) {
         Staff staff = staffs.get(id);
         if (staff == null) return null;
         staff.setName(name);
         // staff.setRole(name); I don't think you should be allowed to change staff role
         staff.setGender(gender);
         staff.setAge(age);
+        indexName(staffNames, id, name);
 
-        updateStaffFile();
+        store(StorageTable.Staff, id, staff);
 
         return staff;
     }
@@ -395,12 +614,14 @@ public class UserDatabase implements UserDatabaseApiPatient, UserDatabaseApiAdmi
      * @param id the unique ID of the staff member to remove
      * @return the removed Staff object, or null if the staff member does not exist
      */
-    public Staff removeStaff(UserId id) {
+    public synchronized Staff removeStaff(UserId id) {
         Staff staff = staffs.remove(id);
-        accounts.remove(id);
+        removeAccount(id);
+        staffNames.remove(id);
+        if (staff instanceof Doctor) slotFinder.remove(((Doctor) staff).getPersonalSchedule());
 
-        updateAccountFile();
-        updateStaffFile();
+        erase(StorageTable.Account, id);
+        erase(StorageTable.Staff, id);
 
         return staff;
     }
@@ -410,10 +631,11 @@ public class UserDatabase implements UserDatabaseApiPatient, UserDatabaseApiAdmi
      *
      * @param id the unique ID of the user to set the password for
      * @param password the new password to set
+     * @return a future that completes once the password is stored, or completes exceptionally if it cannot be
      */
-    public void setPassword(UserId id, String password) {
+    public synchronized CompletableFuture<Void> setPassword(UserId id, String password) {
         UserAccount account = accounts.get(id);
         account.setPassword(password);
-        updateAccountFile();
+        return store(StorageTable.Account, id, account);
     }
 }
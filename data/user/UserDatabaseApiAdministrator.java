@@ -52,4 +52,13 @@ public interface UserDatabaseApiAdministrator {
      * @return the removed Staff object, or null if the staff member with the given ID is not found
      */
     public abstract Staff removeStaff(UserId id);
+
+    /**
+     * Finds the staff members whose name, a word of whose name, or whose username starts with the given prefix.
+     *
+     * @param prefix the start of a name or username, ignoring case
+     * @param limit the maximum number of staff members to return
+     * @return up to limit matching staff members
+     */
+    public abstract ArrayList<Staff> searchStaff(String prefix, int limit);
 }
@@ -1,6 +1,7 @@
 package data.user;
 
 import java.util.ArrayList;
+import java.util.function.Predicate;
 
 import appointment.Appointment;
 import user.Patient;
@@ -31,4 +32,13 @@ public interface UserDatabaseApiDoctor {
      */
     public abstract ArrayList<Patient> getPatients(ArrayList<Appointment> appointments);
 
+    /**
+     * Finds the patients whose name, a word of whose name, or whose username starts with the given prefix.
+     *
+     * @param prefix the start of a name or username, ignoring case
+     * @param limit the maximum number of patients to return
+     * @param filter only patients accepted by the filter are returned, or null to accept every patient
+     * @return up to limit matching patients
+     */
+    public abstract ArrayList<Patient> searchPatients(String prefix, int limit, Predicate<UserId> filter);
 }
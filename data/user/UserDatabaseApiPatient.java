@@ -1,8 +1,13 @@
 package data.user;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 
+import appointment.DoctorSlot;
 import user.DoctorApiPatient;
+import user.Patient;
 import user.UserId;
 
 /**
@@ -29,9 +34,22 @@ public interface UserDatabaseApiPatient {
      */
     public abstract DoctorApiPatient findDoctorId(UserId doctorId);
 
+    /**
+     * Finds the earliest available appointment slots across doctors.
+     *
+     * @param after the earliest start time to consider; times before now are treated as now
+     * @param limit the maximum number of slots to return
+     * @param filter only slots of doctors accepted by the filter are returned, or null to accept every doctor
+     * @return up to limit available slots, in order of time
+     */
+    public abstract ArrayList<DoctorSlot> findEarliestSlots(LocalDateTime after, int limit, Predicate<UserId> filter);
+
     /**
      * Updates the patient data in the system. This method is used to ensure the patient's information 
      * is up-to-date in the user database.
+     *
+     * @param patient the patient whose details changed
+     * @return a future that completes once the details are stored, or completes exceptionally if they cannot be
      */
-    public abstract void updatePatient();
+    public abstract CompletableFuture<Void> updatePatient(Patient patient);
 }
@@ -1,13 +1,16 @@
 package medicine;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
+import data.IdAllocator;
 import data.ReadFile;
-import data.WriteFile;
+import data.StorageBackend;
+import data.StorageTable;
 
 /**
  * The Inventory class manages the inventory of medicines in the system. It provides functionality for 
@@ -15,9 +18,16 @@ import data.WriteFile;
  * replenishment requests. The class also interfaces with other user roles, such as Doctors, Pharmacists, 
  * and Administrators, to ensure proper management of medicine stocks and requests.
  * 
- * This class reads and writes inventory data to/from specified CSV files and provides methods for managing 
+ * This class reads and writes inventory data through a storage backend and provides methods for managing 
  * the stock levels, low stock alerts, and dispensing of prescriptions.
  * 
+ * Every change to a medicine is reported to a {@link LowStockMonitor}, which keeps the set of low stock medicines
+ * up to date and notifies its listeners when a medicine crosses its low stock level alert.
+ * 
+ * Replenishment requests are kept by ID, with a queue of requests for each status, so the pending requests can be
+ * listed without going through every request ever made. A request for a medicine that already has a pending request
+ * is merged into it.
+ * 
  * @see InventoryApiDoctor
  * @see InventoryApiPharmacist
  * @see InventoryApiAdministrator
@@ -27,32 +37,93 @@ import data.WriteFile;
  */
 public class Inventory implements InventoryApiDoctor, InventoryApiPharmacist, InventoryApiAdministrator {
     private HashMap<String, Medicine> medicines;
-    private ArrayList<ReplenishmentRequest> requests;
-    private String medicineListPath, requestListPath;
+    private TreeMap<Integer, ReplenishmentRequest> requests;
+    private EnumMap<ReplenishmentStatus, TreeMap<Integer, ReplenishmentRequest>> requestsByStatus;
+    private HashMap<String, ReplenishmentRequest> pendingByMedicine;
+    private StorageBackend backend;
+    private IdAllocator ids;
+    private LowStockMonitor monitor;
 
     /**
-     * Constructs an Inventory instance by reading data from the specified CSV files for medicines 
-     * and replenishment requests.
+     * Constructs an Inventory instance by loading the medicines and replenishment requests from the storage backend.
      *
-     * @param medicineListPath the path to the medicine list CSV file.
-     * @param requestListPath the path to the replenishment request CSV file.
-     * @throws IOException if an error occurs while reading the files.
+     * @param backend the storage backend holding the inventory records.
+     * @param ids the allocator that hands out replenishment request IDs.
+     * @throws IOException if an error occurs while reading the records.
      */
-    public Inventory(String medicineListPath, String requestListPath) throws IOException{
-        this.medicineListPath = medicineListPath;
-        this.requestListPath = requestListPath;
+    public Inventory(StorageBackend backend, IdAllocator ids) throws IOException{
+        this(backend, ids, loadMedicines(backend), null);
+    }
+
+    /**
+     * Constructs an Inventory instance from medicines and requests that have already been loaded,
+     * such as from a snapshot. The storage backend is still used to write changes.
+     *
+     * Requests stored before requests had IDs are given their position in the table as their ID.
+     *
+     * @param backend the storage backend that changes are written to.
+     * @param ids the allocator that hands out replenishment request IDs.
+     * @param medicineList the loaded medicines.
+     * @param requestList the loaded replenishment requests, or null to load them from the backend.
+     * @throws IOException if an error occurs while reading the replenishment requests.
+     */
+    public Inventory(StorageBackend backend, IdAllocator ids, ArrayList<Medicine> medicineList, ArrayList<ReplenishmentRequest> requestList) throws IOException{
+        this.backend = backend;
+        this.ids = ids;
+        this.monitor = new LowStockMonitor();
         this.medicines = new HashMap<>();
-        ArrayList<Medicine> medicineList = ReadFile.readMedicineListFile(this.medicineListPath);
         for (Medicine medicine : medicineList) {
             this.medicines.put(medicine.getName(), medicine);
+            this.monitor.track(medicine);
         }
-        if (Files.notExists(Path.of(requestListPath))) {
-            System.out.printf("%s does not exist, creating new database...\n\n", requestListPath);
-            this.requests = new ArrayList<>();
-            WriteFile.writeFile(this.requests, requestListPath);
+
+        this.requests = new TreeMap<>();
+        if (requestList != null) {
+            for (ReplenishmentRequest request : requestList) {
+                this.requests.put(request.getId(), request);
+            }
         } else {
-            this.requests = ReadFile.readRequestListFile(requestListPath);
+            int[] position = { 0 };
+            backend.load(StorageTable.Request, line -> {
+                ReplenishmentRequest request = new ReplenishmentRequest(line);
+                if (request.getId() < 0) request.setId(position[0]);
+                position[0]++;
+                this.requests.put(request.getId(), request);
+            });
+        }
+        this.requestsByStatus = new EnumMap<>(ReplenishmentStatus.class);
+        for (ReplenishmentStatus status : ReplenishmentStatus.values()) {
+            this.requestsByStatus.put(status, new TreeMap<>());
         }
+        this.pendingByMedicine = new HashMap<>();
+        for (ReplenishmentRequest request : this.requests.values()) {
+            ids.observe(IdAllocator.REQUEST, request.getId());
+            indexRequest(request);
+        }
+
+        backend.attach(StorageTable.Medicine, () -> {
+            synchronized (this) {
+                return new ArrayList<>(this.medicines.values());
+            }
+        });
+        backend.attach(StorageTable.Request, () -> {
+            synchronized (this) {
+                return new ArrayList<>(this.requests.values());
+            }
+        });
+    }
+
+    /**
+     * Loads every medicine from the storage backend.
+     *
+     * @param backend the storage backend holding the medicine records.
+     * @return the loaded medicines.
+     * @throws IOException if an error occurs while reading or parsing the records.
+     */
+    private static ArrayList<Medicine> loadMedicines(StorageBackend backend) throws IOException {
+        ArrayList<Medicine> medicineList = new ArrayList<>();
+        backend.load(StorageTable.Medicine, line -> medicineList.add(ReadFile.parseMedicine(line)));
+        return medicineList;
     }
 
     /**
@@ -65,26 +136,89 @@ public class Inventory implements InventoryApiDoctor, InventoryApiPharmacist, In
     }
 
     /**
-     * Retrieves all replenishment requests.
+     * Retrieves all replenishment requests, in order of ID.
      *
      * @return an ArrayList of all ReplenishmentRequest objects.
      */
-    public ArrayList<ReplenishmentRequest> getRequests() {
-        return this.requests;
+    public synchronized ArrayList<ReplenishmentRequest> getRequests() {
+        return new ArrayList<>(this.requests.values());
+    }
+
+    /**
+     * Retrieves the replenishment requests with the given status, in order of ID.
+     *
+     * @param status the status of the requests.
+     * @return an ArrayList of the ReplenishmentRequest objects with that status.
+     */
+    public synchronized ArrayList<ReplenishmentRequest> getRequests(ReplenishmentStatus status) {
+        return new ArrayList<>(this.requestsByStatus.get(status).values());
+    }
+
+    /**
+     * Retrieves the medicines whose stock is below their low stock level alert, in order of name.
+     *
+     * @return an ArrayList of the low stock medicines.
+     */
+    public ArrayList<Medicine> getLowStock() {
+        return monitor.getLowStock();
     }
 
     /**
-     * Updates the medicine file with the current list of medicines in the inventory.
+     * Registers a listener to be notified when a medicine crosses its low stock level alert.
+     *
+     * @param listener the listener to add.
      */
-    private void updateMedicineFile() {
-        WriteFile.writeFile(this.medicines.values(), this.medicineListPath);
+    public void addLowStockListener(LowStockListener listener) {
+        monitor.addListener(listener);
     }
 
     /**
-     * Updates the replenishment request file with the current list of requests.
+     * Unregisters a low stock listener.
+     *
+     * @param listener the listener to remove.
+     */
+    public void removeLowStockListener(LowStockListener listener) {
+        monitor.removeListener(listener);
+    }
+
+    /**
+     * Delivers any pending low stock notifications and stops the low stock monitor.
+     */
+    public void close() {
+        monitor.close();
+    }
+
+    /**
+     * Writes the current state of a medicine to the storage backend and reports the change to the low stock monitor.
+     *
+     * @param medicine the medicine that changed.
+     * @return a future that completes once the change is stored, or completes exceptionally if it cannot be.
      */
-    private void updateRequestFile() {
-        WriteFile.writeFile(this.requests, this.requestListPath);
+    private CompletableFuture<Void> updateMedicine(Medicine medicine) {
+        monitor.update(medicine);
+        return StorageBackend.reportFailure(backend.upsert(StorageTable.Medicine, medicine.getName(), medicine), "Error updating file: ");
+    }
+
+    /**
+     * Adds a replenishment request to the queue of its status. A pending request becomes the one that later
+     * requests for the same medicine are merged into, unless the medicine already has one.
+     *
+     * @param request the request to add.
+     */
+    private void indexRequest(ReplenishmentRequest request) {
+        this.requestsByStatus.get(request.getStatus()).put(request.getId(), request);
+        if (request.getStatus() == ReplenishmentStatus.Pending) this.pendingByMedicine.putIfAbsent(request.getName(), request);
+    }
+
+    /**
+     * Writes the current state of a replenishment request to the storage backend.
+     * Requests are never removed, so a request is identified by its ID.
+     *
+     * @param request the request that changed.
+     * @return a future that completes once the change is stored, or completes exceptionally if it cannot be.
+     */
+    private CompletableFuture<Void> updateRequest(ReplenishmentRequest request) {
+        return StorageBackend.reportFailure(backend.upsert(StorageTable.Request, String.valueOf(request.getId()), request), "Error updating file: ");
     }
 
     /**
@@ -94,13 +228,13 @@ public class Inventory implements InventoryApiDoctor, InventoryApiPharmacist, In
      * @param stock the new stock level.
      * @return 1 if the update was successful, 0 if the medicine was not found.
      */
-    public int setInventory(String name, int stock) {
+    public synchronized int setInventory(String name, int stock) {
         Medicine medicine = this.medicines.get(name);
         if (medicine == null) return 0;
 
 
         medicine.setStock(stock);
-        updateMedicineFile();
+        updateMedicine(medicine);
         return 1;
     }
 
@@ -112,12 +246,12 @@ public class Inventory implements InventoryApiDoctor, InventoryApiPharmacist, In
      * @param lowStockLevelAlert the new low stock level alert threshold.
      * @return 1 if the update was successful, 0 if the medicine was not found.
      */
-    public int setInventory(String name, int stock, int lowStockLevelAlert){
+    public synchronized int setInventory(String name, int stock, int lowStockLevelAlert){
         Medicine medicine = this.medicines.get(name);
         if (medicine == null) return 0;
         medicine.setStock(stock);
         medicine.setLowStockLevelAlert(lowStockLevelAlert);
-        updateMedicineFile();
+        updateMedicine(medicine);
         return 1;
     }
 
@@ -127,10 +261,12 @@ public class Inventory implements InventoryApiDoctor, InventoryApiPharmacist, In
      * @param name the name of the medicine to add.
      * @param initialStock the initial stock of the medicine.
      * @param lowStockLevelAlert the low stock level alert threshold for the medicine.
+     * @return a future that completes once the new medicine is stored, or completes exceptionally if it cannot be.
      */
-    public void addInventory(String name, int initialStock, int lowStockLevelAlert) {
-        medicines.put(name, new Medicine(name, initialStock, lowStockLevelAlert));
-        updateMedicineFile();
+    public synchronized CompletableFuture<Void> addInventory(String name, int initialStock, int lowStockLevelAlert) {
+        Medicine medicine = new Medicine(name, initialStock, lowStockLevelAlert);
+        medicines.put(name, medicine);
+        return updateMedicine(medicine);
     }
 
     /**
@@ -140,7 +276,7 @@ public class Inventory implements InventoryApiDoctor, InventoryApiPharmacist, In
      * @param prescription the list of Prescription objects to dispense.
      * @return true if the prescription can be dispensed, false if any medicine in the prescription is unavailable or insufficient.
      */
-    public boolean dispensePrescription(ArrayList<Prescription> prescription) {
+    public synchronized boolean dispensePrescription(ArrayList<Prescription> prescription) {
         // Check whether prescription can be dispensed
         for (Prescription med : prescription) {
             Medicine stock = this.medicines.get(med.getName());
@@ -150,37 +286,57 @@ public class Inventory implements InventoryApiDoctor, InventoryApiPharmacist, In
         for (Prescription med : prescription) {
             Medicine stock = this.medicines.get(med.getName());
             stock.dispenseStock(med.getQuantity());
+            updateMedicine(stock);
         }
-        updateMedicineFile();
 
         return true;
     }
 
     /**
-     * Handles a replenishment request by adding it to the list of requests.
+     * Handles a replenishment request. If the medicine already has a pending request, the requested units are
+     * added to that request; otherwise the request is given an ID and queued as pending.
      *
      * @param request the ReplenishmentRequest to add.
+     * @return the pending request that now holds the requested units.
      */
-    public void handleReplenishmentRequest(ReplenishmentRequest request) {
-        this.requests.add(request);
-        updateRequestFile();
+    public synchronized ReplenishmentRequest handleReplenishmentRequest(ReplenishmentRequest request) {
+        ReplenishmentRequest pending = this.pendingByMedicine.get(request.getName());
+        if (pending != null) {
+            pending.addStock(request.getStock());
+            updateRequest(pending);
+            return pending;
+        }
+
+        request.setId(ids.next(IdAllocator.REQUEST));
+        this.requests.put(request.getId(), request);
+        indexRequest(request);
+        updateRequest(request);
+        return request;
     }
 
     /**
      * Approves or rejects a replenishment request. If approved, the stock for the specified medicine is increased.
+     * Requests that are no longer pending are left unchanged.
      *
      * @param request the ReplenishmentRequest to approve or reject.
      * @param approved true to approve the request, false to reject it.
+     * @return a future that completes once the request and the medicine are stored, or completes exceptionally
+     *         if they cannot be.
      */
-    public void approveReplenishmentRequest(ReplenishmentRequest request, boolean approved) {
+    public synchronized CompletableFuture<Void> approveReplenishmentRequest(ReplenishmentRequest request, boolean approved) {
+        if (request.getStatus() != ReplenishmentStatus.Pending) return CompletableFuture.completedFuture(null);
+        this.requestsByStatus.get(ReplenishmentStatus.Pending).remove(request.getId());
+        this.pendingByMedicine.remove(request.getName(), request);
         request.approveRequest(approved);
-        updateRequestFile();
+        indexRequest(request);
+        CompletableFuture<Void> stored = updateRequest(request);
         if (approved) {
             Medicine medicine = this.medicines.get(request.getName());
-            if (medicine == null) return;
+            if (medicine == null) return stored;
             medicine.addStock(request.getStock());
-            updateMedicineFile();
+            return CompletableFuture.allOf(stored, updateMedicine(medicine));
         }
+        return stored;
     }
     
     /**
@@ -189,11 +345,12 @@ public class Inventory implements InventoryApiDoctor, InventoryApiPharmacist, In
      * @param name the name of the medicine to remove.
      * @return 1 if the medicine was removed successfully, 0 if the medicine was not found.
      */
-    public int removeInventory(String name){
+    public synchronized int removeInventory(String name){
         Medicine medicine = this.medicines.remove(name);
         if (medicine == null) return 0;
+        monitor.remove(name);
 
-        updateMedicineFile();
+        StorageBackend.reportFailure(backend.delete(StorageTable.Medicine, name), "Error updating file: ");
         return 1;
     }
 }
@@ -1,6 +1,7 @@
 package medicine;
 
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The InventoryApiAdministrator interface defines the contract for managing the inventory and replenishment requests
@@ -47,8 +48,9 @@ public interface InventoryApiAdministrator {
      * @param name the name of the medicine to add.
      * @param initialStock the initial stock of the medicine.
      * @param lowStockLevelAlert the low stock level alert threshold for the medicine.
+     * @return a future that completes once the new medicine is stored, or completes exceptionally if it cannot be.
      */
-    public abstract void addInventory(String name, int initialStock, int lowStockLevelAlert);
+    public abstract CompletableFuture<Void> addInventory(String name, int initialStock, int lowStockLevelAlert);
 
     /**
      * Removes a medicine from the inventory by its name.
@@ -65,11 +67,42 @@ public interface InventoryApiAdministrator {
      */
     public abstract ArrayList<ReplenishmentRequest> getRequests();
 
+    /**
+     * Retrieves the replenishment requests with the given status, without going through the other requests.
+     * 
+     * @param status the status of the requests.
+     * @return an ArrayList of the ReplenishmentRequest objects with that status.
+     */
+    public abstract ArrayList<ReplenishmentRequest> getRequests(ReplenishmentStatus status);
+
     /**
      * Approves or rejects a replenishment request. If approved, the stock for the specified medicine is increased.
      * 
      * @param request the ReplenishmentRequest to approve or reject.
      * @param approved true to approve the request, false to reject it.
+     * @return a future that completes once the request and the medicine are stored, or completes exceptionally
+     *         if they cannot be.
+     */
+    public abstract CompletableFuture<Void> approveReplenishmentRequest(ReplenishmentRequest request, boolean approved);
+
+    /**
+     * Retrieves the medicines whose stock is below their low stock level alert.
+     *
+     * @return an ArrayList of the low stock medicines.
+     */
+    public abstract ArrayList<Medicine> getLowStock();
+
+    /**
+     * Registers a listener to be notified when a medicine crosses its low stock level alert.
+     *
+     * @param listener the listener to add.
+     */
+    public abstract void addLowStockListener(LowStockListener listener);
+
+    /**
+     * Unregisters a low stock listener.
+     *
+     * @param listener the listener to remove.
      */
-    public abstract void approveReplenishmentRequest(ReplenishmentRequest request, boolean approved);
+    public abstract void removeLowStockListener(LowStockListener listener);
 }
@@ -33,9 +33,32 @@ public interface InventoryApiPharmacist {
     public abstract boolean dispensePrescription(ArrayList<Prescription> prescription);
 
     /**
-     * Handles a replenishment request by adding it to the list of pending requests.
+     * Handles a replenishment request by adding it to the list of pending requests,
+     * or merging it into the pending request for the same medicine.
      *
      * @param request a ReplenishmentRequest object that contains the details of the replenishment request.
+     * @return the pending request that now holds the requested units.
      */
-    public abstract void handleReplenishmentRequest(ReplenishmentRequest request);
+    public abstract ReplenishmentRequest handleReplenishmentRequest(ReplenishmentRequest request);
+
+    /**
+     * Retrieves the medicines whose stock is below their low stock level alert.
+     *
+     * @return an ArrayList of the low stock medicines.
+     */
+    public abstract ArrayList<Medicine> getLowStock();
+
+    /**
+     * Registers a listener to be notified when a medicine crosses its low stock level alert.
+     *
+     * @param listener the listener to add.
+     */
+    public abstract void addLowStockListener(LowStockListener listener);
+
+    /**
+     * Unregisters a low stock listener.
+     *
+     * @param listener the listener to remove.
+     */
+    public abstract void removeLowStockListener(LowStockListener listener);
 }
@@ -0,0 +1,21 @@
+package medicine;
+
+/**
+ * The LowStockListener interface is notified by a {@link LowStockMonitor} when the stock of a medicine
+ * crosses its low stock level alert, in either direction.
+ * Listeners are called on the monitor's background thread, one notification at a time, in the order the changes were made.
+ * 
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public interface LowStockListener {
+    /**
+     * Called when a medicine drops below its low stock level alert, or is restocked to or above it.
+     *
+     * @param name the name of the medicine.
+     * @param stock the stock level after the change.
+     * @param lowStockLevelAlert the low stock level alert threshold of the medicine.
+     * @param low true if the medicine is now low on stock, false if it has been restocked.
+     */
+    public abstract void lowStockChanged(String name, int stock, int lowStockLevelAlert, boolean low);
+}
@@ -0,0 +1,44 @@
+package medicine;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDateTime;
+
+import data.CsvCompatible;
+
+/**
+ * The LowStockLog class is a {@link LowStockListener} that appends every low stock alert to a log file,
+ * so that alerts are kept even when no pharmacist or administrator is logged in.
+ * 
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class LowStockLog implements LowStockListener {
+    private String path;
+
+    /**
+     * Constructs a LowStockLog that appends to the file at the given path. The file is created when the first alert is written.
+     *
+     * @param path the path of the log file.
+     */
+    public LowStockLog(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Appends one line describing the alert to the log file.
+     *
+     * @param name the name of the medicine.
+     * @param stock the stock level after the change.
+     * @param lowStockLevelAlert the low stock level alert threshold of the medicine.
+     * @param low true if the medicine is now low on stock, false if it has been restocked.
+     */
+    public void lowStockChanged(String name, int stock, int lowStockLevelAlert, boolean low) {
+        try (PrintWriter out = new PrintWriter(new FileWriter(path, true))) {
+            out.printf("%s,%s,%s,%d,%d\n", LocalDateTime.now().withNano(0), low ? "Low" : "Restocked", CsvCompatible.quote(name), stock, lowStockLevelAlert);
+        } catch (IOException e) {
+            System.out.println("Error writing low stock log: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package medicine;
+
+import java.util.ArrayList;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The LowStockMonitor class keeps track of which medicines are below their low stock level alert.
+ * The inventory reports every change to a medicine, and the monitor updates its set of low stock medicines,
+ * so listing them does not require scanning the whole inventory.
+ * 
+ * When a change makes a medicine cross its threshold, every registered {@link LowStockListener} is notified
+ * on a background thread, so a slow listener does not hold up the change.
+ * 
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class LowStockMonitor {
+    private TreeMap<String, Medicine> lowStock;
+    private CopyOnWriteArrayList<LowStockListener> listeners;
+    private ExecutorService executor;
+
+    /**
+     * Constructs a LowStockMonitor with no medicines and no listeners.
+     */
+    public LowStockMonitor() {
+        this.lowStock = new TreeMap<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "low-stock-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts tracking a medicine, such as one loaded at startup. Listeners are not notified.
+     *
+     * @param medicine the medicine to track.
+     */
+    public synchronized void track(Medicine medicine) {
+        if (medicine.checkLowStock()) lowStock.put(medicine.getName(), medicine);
+    }
+
+    /**
+     * Updates the state of a medicine after its stock or threshold changed.
+     * If the medicine crossed its threshold, the listeners are notified.
+     *
+     * @param medicine the medicine that changed.
+     */
+    public synchronized void update(Medicine medicine) {
+        boolean low = medicine.checkLowStock();
+        boolean wasLow = lowStock.containsKey(medicine.getName());
+        if (low) lowStock.put(medicine.getName(), medicine);
+        else lowStock.remove(medicine.getName());
+        if (low == wasLow) return;
+
+        String name = medicine.getName();
+        int stock = medicine.getStock();
+        int lowStockLevelAlert = medicine.getLowStockLevelAlert();
+        if (executor.isShutdown()) return;
+        executor.execute(() -> {
+            for (LowStockListener listener : listeners) {
+                try {
+                    listener.lowStockChanged(name, stock, lowStockLevelAlert, low);
+                } catch (RuntimeException e) {
+                    System.out.println("Error notifying low stock listener: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops tracking a medicine that has been removed from the inventory. Listeners are not notified.
+     *
+     * @param name the name of the medicine.
+     */
+    public synchronized void remove(String name) {
+        lowStock.remove(name);
+    }
+
+    /**
+     * Retrieves the medicines that are below their low stock level alert, in order of name.
+     *
+     * @return an ArrayList of the low stock medicines.
+     */
+    public synchronized ArrayList<Medicine> getLowStock() {
+        return new ArrayList<>(lowStock.values());
+    }
+
+    /**
+     * Registers a listener to be notified when a medicine crosses its low stock level alert.
+     *
+     * @param listener the listener to add.
+     */
+    public void addListener(LowStockListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener the listener to remove.
+     */
+    public void removeListener(LowStockListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Stops the background thread once the notifications already raised have been delivered.
+     * Changes made afterwards still update the set of low stock medicines, but notify no listeners.
+     * The executor is shut down while holding the monitor's lock, so a concurrent update either queues its
+     * notification first or sees the executor shut down; the wait for delivery happens outside the lock, so
+     * listeners that read the monitor can still finish.
+     */
+    public void close() {
+        synchronized (this) {
+            executor.shutdown();
+        }
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
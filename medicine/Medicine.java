@@ -119,7 +119,7 @@ public class Medicine implements CsvCompatible {
      *         "name,stock,lowStockLevelAlert".
      */
     public String toCsv() {
-        return String.format("%s,%d,%d", name, stock, lowStockLevelAlert);
+        return String.format("%s,%d,%d", CsvCompatible.quote(name), stock, lowStockLevelAlert);
     }
 
     /**
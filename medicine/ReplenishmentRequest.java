@@ -6,56 +6,89 @@ import java.io.IOException;
 /**
  * The ReplenishmentRequest class represents a replenishment request for a specific medicine, including its current stock and approval status.
  * This class allows tracking and updating of inventory restocking requests and their processing.
+ * Each request is given a unique ID when it is submitted to the inventory, and keeps it for good.
  * 
  * @author LOW KAN YUI (LIU GENGRUI)
  * @version 1.0
  * @since 2024-11-21
  */
 public class ReplenishmentRequest implements CsvCompatible {
+    private int id;
     private String name;
     private ReplenishmentStatus status;
     private int stock;
 
     /**
      * Creates a new replenishment request with a specified name and stock quantity.
-     * The request is initially set to the "Pending" status.
+     * The request is initially set to the "Pending" status, and has no ID until it is submitted to the inventory.
      *
      * @param name  the name of the medicine for which the replenishment is requested
      * @param stock the number of units requested to replenish
      */
     public ReplenishmentRequest(String name, int stock) {
+        this.id = -1;
         this.name = name;
         this.status = ReplenishmentStatus.Pending;
         this.stock = stock;
     }
 
     /**
-     * Creates a new replenishment request from a CSV line. The line must contain three elements:
+     * Creates a replenishment request with a known ID and status, such as one restored from a snapshot.
      *
+     * @param id     the unique identifier of the request
+     * @param name   the name of the medicine for which the replenishment is requested
+     * @param status the current status of the request
+     * @param stock  the number of units requested to replenish
+     */
+    public ReplenishmentRequest(int id, String name, ReplenishmentStatus status, int stock) {
+        this.id = id;
+        this.name = name;
+        this.status = status;
+        this.stock = stock;
+    }
+
+    /**
+     * Creates a new replenishment request from a CSV line. The line must contain four elements:
+     *
+     * The ID of the request
      * The name of the medicine
      * The status of the request (one of "Pending", "Approved", "Rejected")
      * The number of units requested for replenishment
      *
+     * Lines written before requests had IDs contain only the last three elements. Such requests have no ID
+     * until the inventory gives them one.
+     *
      * @param line an array of strings representing the CSV line
      * @throws IOException if the line has an invalid format or contains invalid data
      */
     public ReplenishmentRequest(String[] line) throws IOException {
-        if (line.length != 3) {
+        if (line.length != 3 && line.length != 4) {
             String line_full = String.join(",", line);
-            throw new IOException("Invalid line " + line_full + ": expected 3 elements.");
+            throw new IOException("Invalid line " + line_full + ": expected 4 elements.");
+        }
+
+        int offset = line.length - 3;
+        if (offset == 0) {
+            this.id = -1;
+        } else {
+            try {
+                this.id = Integer.parseInt(line[0]);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid line: expected " + line[0] + " to be an integer.");
+            }
         }
 
-        this.name = line[0];
+        this.name = line[offset];
 
         try {
-            this.stock = Integer.parseInt(line[2]);
+            this.stock = Integer.parseInt(line[offset + 2]);
         } catch (NumberFormatException e) {
-            throw new IOException("Invalid line: expected " + line[2] + " to be an integer.");
+            throw new IOException("Invalid line: expected " + line[offset + 2] + " to be an integer.");
         }
         try {
-            this.status = ReplenishmentStatus.valueOf(line[1]);
+            this.status = ReplenishmentStatus.valueOf(line[offset + 1]);
         } catch (IllegalArgumentException e) {
-            throw new IOException("Invalid line: expected " + line[1] + " to be one of 'Pending', 'Approved', 'Rejected'.");
+            throw new IOException("Invalid line: expected " + line[offset + 1] + " to be one of 'Pending', 'Approved', 'Rejected'.");
         }
     }
 
@@ -69,6 +102,33 @@ public class ReplenishmentRequest implements CsvCompatible {
         this.status = approved ? ReplenishmentStatus.Approved : ReplenishmentStatus.Rejected;
     }
 
+    /**
+     * Adds units to a pending request, such as when another request for the same medicine is merged into it.
+     *
+     * @param stock the number of units to add
+     */
+    void addStock(int stock) {
+        this.stock += stock;
+    }
+
+    /**
+     * Gets the unique identifier of the replenishment request.
+     *
+     * @return the ID of the request, or -1 if it has not been submitted
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * Sets the unique identifier of the replenishment request. Done by the inventory when the request is submitted.
+     *
+     * @param id the ID of the request
+     */
+    void setId(int id) {
+        this.id = id;
+    }
+
     /**
      * Gets the name of the medicine for the replenishment request.
      *
@@ -102,6 +162,6 @@ public class ReplenishmentRequest implements CsvCompatible {
      * @return a CSV formatted string representing the replenishment request
      */
     public String toCsv() {
-        return String.format("%s,%s,%d", this.name, this.status.toString(), this.stock);
+        return String.format("%d,%s,%s,%d", this.id, CsvCompatible.quote(this.name), this.status.toString(), this.stock);
     }
 }
@@ -5,6 +5,7 @@ import medicine.Medicine;
 import medicine.ReplenishmentRequest;
 import user.Administrator;
 import user.Role;
+import user.Staff;
 import user.UserId;
 
 /**
@@ -18,6 +19,8 @@ import user.UserId;
  * @since 2024-11-21
  */
 public class AdministratorMenu extends Menu{
+    private static final int SEARCH_LIMIT = 10;
+
     private SafeScanner sc;
     private Administrator administrator;
 
@@ -36,10 +39,14 @@ public class AdministratorMenu extends Menu{
      * Displays the main menu for the administrator and processes their input.
      * The menu offers options to view and manage staff, view appointments, view and manage inventory, and approve replenishment requests,
      * with the option to log out.
+     * Low stock alerts raised while the menu is open are printed before the menu is shown again.
      */
     public void showMenu(){
         int choice = -1;
+        LowStockAlerts alerts = new LowStockAlerts();
+        administrator.addLowStockListener(alerts);
         while (choice != 0) {
+            alerts.printAlerts();
             System.out.println("\n===== Administrator Menu =====");
             System.out.println("1. View and Manage Hospital Staff");
             System.out.println("2. View Appointment Details");
@@ -50,6 +57,7 @@ public class AdministratorMenu extends Menu{
             choice = sc.promptInt("Enter your choice: ", 0, 4);
             handleSelection(choice);
         }
+        administrator.removeLowStockListener(alerts);
     }
 
     /**
@@ -91,8 +99,9 @@ public class AdministratorMenu extends Menu{
             System.out.println("2. Add Staff");
             System.out.println("3. Update Staff");
             System.out.println("4. Remove Staff");
-            System.out.println("5. Back to Main Menu");
-            int choice = sc.promptInt("Enter your choice: ", 1, 5);
+            System.out.println("5. Search Staff");
+            System.out.println("6. Back to Main Menu");
+            int choice = sc.promptInt("Enter your choice: ", 1, 6);
 
             switch(choice) {
                 //View Staff List
@@ -111,20 +120,34 @@ public class AdministratorMenu extends Menu{
                     break;
                 //Update a staff member
                 case 3:
-                    String oldId = sc.promptLine("Enter Staff ID to update: ");
+                    UserId oldId = selectStaff("Enter Staff ID or name to update: ");
+                    if (oldId == null) break;
                     String newName = sc.promptLine("Enter Staff Name: ");
                     String newRole = sc.promptLine("Enter Staff Role: ");
                     String newGender = sc.promptLine("Enter Staff Gender:");
                     int newAge = sc.promptInt("Enter staff age: ", 0, 200);
-                    administrator.updateStaff(new UserId(oldId), newName, Role.valueOf(newRole), newGender, newAge);
+                    administrator.updateStaff(oldId, newName, Role.valueOf(newRole), newGender, newAge);
                     break;
                 //Remove a staff member
                 case 4: 
-                    String removeId = sc.promptLine("Enter Staff ID to remove: ");
-                    administrator.removeStaff(new UserId(removeId));
+                    UserId removeId = selectStaff("Enter Staff ID or name to remove: ");
+                    if (removeId == null) break;
+                    administrator.removeStaff(removeId);
+                    break;
+                //Search staff by name or username
+                case 5:
+                    String prefix = sc.promptLine("Enter the start of a name or username: ");
+                    ArrayList<Staff> matches = administrator.searchStaff(prefix, SEARCH_LIMIT);
+                    if (matches.isEmpty()) {
+                        System.out.println("No matching staff members.");
+                        break;
+                    }
+                    for (Staff staff : matches) {
+                        System.out.printf("%s: %s (%s)\n", staff.getId(), staff.getName(), staff.getRole());
+                    }
                     break;
                 //Exit menu
-                case 5: 
+                case 6: 
                     return;
                 default:
                     System.out.println("Invalid choice, please try again.");
@@ -132,6 +155,36 @@ public class AdministratorMenu extends Menu{
         }
     }
 
+    /**
+     * Prompts for a staff member by ID, or by the start of their name or username.
+     * If the input is not a staff ID, the matching staff members are listed for the administrator to pick from.
+     *
+     * @param prompt the prompt to display
+     * @return the ID of the chosen staff member, or null if there are no matches or the administrator cancels
+     */
+    private UserId selectStaff(String prompt) {
+        String input = sc.promptLine(prompt);
+        try {
+            return UserId.parse(input);
+        } catch (IllegalArgumentException e) {
+            // Not a staff ID, so search by name instead
+        }
+
+        ArrayList<Staff> matches = administrator.searchStaff(input, SEARCH_LIMIT);
+        if (matches.isEmpty()) {
+            System.out.println("No matching staff members.");
+            return null;
+        }
+        for (int i = 0; i < matches.size(); i++) {
+            Staff staff = matches.get(i);
+            System.out.printf("%d. %s: %s (%s)\n", i+1, staff.getId(), staff.getName(), staff.getRole());
+        }
+        System.out.println("0. Cancel");
+        int choice = sc.promptInt("Enter your choice: ", 0, matches.size());
+        if (choice == 0) return null;
+        return matches.get(choice-1).getId();
+    }
+
     /**
      * Displays and processes the view for appointment details to the Administrator.
      * This method fetches and shows the all appointment details.
@@ -5,7 +5,7 @@ import appointment.AppointmentSlot;
 import appointment.Schedule;
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import medicine.Medicine;
 import medicine.Prescription;
@@ -24,6 +24,8 @@ import user.Patient;
  * @since 2024-11-21
  */
 public class DoctorMenu extends Menu {
+    private static final int SEARCH_LIMIT = 10;
+
     private SafeScanner sc;
     private Doctor doctor;
 
@@ -54,9 +56,10 @@ public class DoctorMenu extends Menu {
             System.out.println("5. Accept or Decline Appointment Requests");
             System.out.println("6. View Upcoming Appointments");
             System.out.println("7. Record Appointment Outcome");
+            System.out.println("8. Search Past Visits");
             System.out.println("0. Logout");
 
-            choice = sc.promptInt("Enter your choice: ", 0, 7);
+            choice = sc.promptInt("Enter your choice: ", 0, 8);
             handleSelection(choice);
         }
     }
@@ -89,6 +92,9 @@ public class DoctorMenu extends Menu {
             case 7:
                 recordAppointmentOutcome();
                 break;
+            case 8:
+                searchRecords();
+                break;
             case 0:
                 break;
             default:
@@ -98,16 +104,19 @@ public class DoctorMenu extends Menu {
 
     /**
      * Allows the doctor to select a patient from the list of patients they are treating.
+     * The doctor can enter the start of a patient's name or username to list only the matching patients,
+     * or leave it blank to list every patient.
      * 
      * @return the selected Patient object, or null if the user cancels or there are no patients
      */
     private Patient selectPatient() {
-        ArrayList<Patient> patientsList = doctor.getPatients();
-        HashSet<Patient> uniquePatients = new HashSet<>(patientsList);
+        String prefix = sc.promptLine("Enter the start of the patient's name or username (leave blank to list all): ");
+        ArrayList<Patient> patientsList = prefix.isBlank() ? doctor.getPatients() : doctor.searchPatients(prefix, SEARCH_LIMIT);
+        LinkedHashSet<Patient> uniquePatients = new LinkedHashSet<>(patientsList);
         ArrayList<Patient> patients = new ArrayList<>(uniquePatients);
 
         if (uniquePatients.size() == 0){
-            System.out.println("No patients!");
+            System.out.println(prefix.isBlank() ? "No patients!" : "No matching patients!");
             return null;
         }
         else{
@@ -149,6 +158,31 @@ public class DoctorMenu extends Menu {
         }
     }
 
+    /**
+     * Searches the doctor's past visits by keyword and displays the matching outcome records.
+     */
+    private void searchRecords() {
+        String query = sc.promptLine("Enter keywords (separate alternatives with OR): ");
+        ArrayList<Appointment> appointments = this.doctor.searchRecords(query);
+        if (appointments.isEmpty()) {
+            System.out.println("No matching records.");
+            return;
+        }
+
+        System.out.printf("%d matching record(s):\n", appointments.size());
+        for (Appointment appointment : appointments) {
+            Patient patient = this.doctor.getPatientIndex(appointment.getPatientId());
+            System.out.printf("Patient: %s (%s)\n", patient != null ? patient.getName() : "Unknown", appointment.getPatientId());
+            AppointmentOutcomeRecord record = appointment.readRecord();
+            if (record == null) {
+                System.out.println("The outcome record could not be read.");
+            } else {
+                record.printAppointmentOutcomeRecord();
+            }
+            System.out.println();
+        }
+    }
+
     /**
      * Allows the doctor to update the medical records of a selected patient.
      */
@@ -272,7 +306,7 @@ public class DoctorMenu extends Menu {
             tmp = slots.get(slotToChange.get(i));
             for (int j = 0; j < appointments.size(); j++) {
                 Appointment appointment = appointments.get(j);
-                if (appointment.getSlot().equals(tmp)) {
+                if (appointment.getSlot().getDate().equals(tmp.getDate())) {
                     flag = false;
                     break;
                 }
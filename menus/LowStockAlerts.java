@@ -0,0 +1,47 @@
+package menus;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import medicine.LowStockListener;
+
+/**
+ * The LowStockAlerts class collects low stock alerts for a menu.
+ * Alerts arrive in the background, so instead of being printed in the middle of a prompt they are queued
+ * and printed the next time the menu is shown.
+ * 
+ * @version 1.0
+ * @since 2024-11-21
+ */
+public class LowStockAlerts implements LowStockListener {
+    private ConcurrentLinkedQueue<String> alerts;
+
+    /**
+     * Construct a new LowStockAlerts object with no alerts.
+     */
+    public LowStockAlerts() {
+        this.alerts = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Queues an alert describing the change.
+     *
+     * @param name the name of the medicine.
+     * @param stock the stock level after the change.
+     * @param lowStockLevelAlert the low stock level alert threshold of the medicine.
+     * @param low true if the medicine is now low on stock, false if it has been restocked.
+     */
+    public void lowStockChanged(String name, int stock, int lowStockLevelAlert, boolean low) {
+        if (low) alerts.add(String.format("[ALERT: %s stock low (%d < %d)]", name, stock, lowStockLevelAlert));
+        else alerts.add(String.format("[%s restocked (%d)]", name, stock));
+    }
+
+    /**
+     * Prints and clears every queued alert.
+     */
+    public void printAlerts() {
+        String alert;
+        while ((alert = alerts.poll()) != null) {
+            System.out.println(alert);
+        }
+    }
+}
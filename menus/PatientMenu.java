@@ -7,9 +7,14 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 
 import appointment.Appointment;
 import appointment.AppointmentSlot;
+import appointment.BookingResult;
+import appointment.DoctorSlot;
+import appointment.RecurrenceRule;
 import record.AppointmentOutcomeRecord;
 import record.MedicalRecord;
 import appointment.Schedule;
@@ -27,6 +32,9 @@ import user.Patient;
  * @since 2024-11-21
  */
 public class PatientMenu extends Menu{
+    private static final int SEARCH_LIMIT = 10;
+    private static final int MAX_RECURRENCE_INTERVAL = 365;
+    private static final int MAX_RECURRENCE_COUNT = 52;
     private SafeScanner sc;
     private Patient patient;
 
@@ -58,9 +66,11 @@ public class PatientMenu extends Menu{
             System.out.println("6. Cancel an Appointment");
             System.out.println("7. View Scheduled Appointments");
             System.out.println("8. View Past Appointment Outcome Records");
+            System.out.println("9. Book Earliest Available Slot");
+            System.out.println("10. Book Recurring Appointments");
             System.out.println("0. Logout");
 
-            choice = sc.promptInt("Enter your choice: ", 0, 8);
+            choice = sc.promptInt("Enter your choice: ", 0, 10);
             handleSelection(choice);
         }
     }
@@ -100,6 +110,12 @@ public class PatientMenu extends Menu{
             case 8:
                 viewPastAppointments();
                 break;
+            case 9:
+                bookEarliestSlot();
+                break;
+            case 10:
+                bookRecurring();
+                break;
             case 0:
                 break;
             default:
@@ -265,16 +281,92 @@ public class PatientMenu extends Menu{
 
         ArrayList<AppointmentSlot> slots = getSlots(schedule);
         printSlots(slots);
-        if (slots.size() == 0) return;
+        if (slots == null || slots.size() == 0) return;
+        System.out.println("0. Cancel");
+
+        int index = sc.promptInt("Enter slot number: ", 0, slots.size());
+        if (index == 0) return;
+        if (!this.patient.scheduleAppointment(doctor.getId(), slots.get(index-1))) {
+            System.out.println("The slot is no longer available.");
+            return;
+        }
+
+        System.out.println("Appointment scheduled successfully!");
+    }
+
+    /**
+     * Lists the earliest available slots across all doctors from a chosen date, and lets the patient book one.
+     */
+    private void bookEarliestSlot() {
+        String date = sc.promptLine("Search from date (YYYY-MM-DD, leave blank for now): ").trim();
+        LocalDateTime after = LocalDateTime.now();
+        if (!date.isEmpty()) {
+            try {
+                after = LocalDate.parse(date).atStartOfDay();
+            } catch (DateTimeParseException e) {
+                System.out.println("Invalid date.");
+                return;
+            }
+        }
+
+        ArrayList<DoctorSlot> slots = this.patient.findEarliestSlots(after, SEARCH_LIMIT);
+        if (slots.isEmpty()) {
+            System.out.println("No available slots.");
+            return;
+        }
+
+        System.out.println("Earliest Available Slots: ");
+        for (int i = 0; i < slots.size(); i++) {
+            DoctorSlot slot = slots.get(i);
+            DoctorApiPatient doctor = this.patient.getDoctorById(slot.getDoctorId());
+            System.out.printf("Slot %-2d: %s with %s\n", i+1, slot.getSlot().getDate(), doctor.getName());
+        }
         System.out.println("0. Cancel");
 
         int index = sc.promptInt("Enter slot number: ", 0, slots.size());
         if (index == 0) return;
-        this.patient.scheduleAppointment(doctor.getId(), slots.get(index-1));
+        DoctorSlot slot = slots.get(index-1);
+        if (!this.patient.scheduleAppointment(slot.getDoctorId(), slot.getSlot())) {
+            System.out.println("The slot is no longer available.");
+            return;
+        }
 
         System.out.println("Appointment scheduled successfully!");
     }
 
+    /**
+     * Allows the patient to book a series of appointments with a selected doctor, starting at an available slot
+     * and repeating every given number of days. Either the whole series is booked, or every conflicting time is listed.
+     */
+    private void bookRecurring() {
+        DoctorApiPatient doctor = getDoctor();
+        if (doctor == null) return;
+        Schedule schedule = doctor.getPersonalSchedule();
+
+        ArrayList<AppointmentSlot> slots = getSlots(schedule);
+        printSlots(slots);
+        if (slots == null || slots.size() == 0) return;
+        System.out.println("0. Cancel");
+
+        int index = sc.promptInt("Enter slot number of the first appointment: ", 0, slots.size());
+        if (index == 0) return;
+        int interval = sc.promptInt("Enter days between appointments (7 for weekly): ", 1, MAX_RECURRENCE_INTERVAL);
+        int count = sc.promptInt("Enter number of appointments: ", 1, MAX_RECURRENCE_COUNT);
+
+        RecurrenceRule rule = new RecurrenceRule(slots.get(index-1).getDate(), interval, count);
+        BookingResult result = this.patient.scheduleRecurring(doctor.getId(), rule);
+        if (result == null) return;
+        if (!result.isBooked()) {
+            System.out.println("No appointments were scheduled. The following times are not available:");
+            for (LocalDateTime time : result.getConflicts()) {
+                System.out.println("  " + time);
+            }
+            return;
+        }
+
+        System.out.printf("%d appointments scheduled successfully!\n", result.getAppointments().size());
+    }
+
     /**
      * Allows the patient to rescheudule an exisiting appointment
      */
@@ -301,12 +393,15 @@ public class PatientMenu extends Menu{
 
         ArrayList<AppointmentSlot> slots = getSlots(schedule);
         printSlots(slots);
-        if (slots.size() == 0) return;
+        if (slots == null || slots.size() == 0) return;
         System.out.println("0. Cancel");
 
         int slotIndex = sc.promptInt("Enter slot number: ", 0, slots.size());
         if (slotIndex == 0) return;
-        this.patient.rescheduleAppointment(appointment.getId(), slots.get(slotIndex-1));
+        if (!this.patient.rescheduleAppointment(appointment.getId(), slots.get(slotIndex-1))) {
+            System.out.println("The slot is no longer available.");
+            return;
+        }
 
         System.out.println("Appointment rescheduled successfully.");
     }
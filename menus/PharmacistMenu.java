@@ -17,6 +17,11 @@ import user.Pharmacist;
  * @since 2024-11-21
  */
 public class PharmacistMenu extends Menu {
+    /**
+     * Number of appointment outcome records shown on each page.
+     */
+    private static final int PAGE_SIZE = 10;
+
     private SafeScanner sc;
     private Pharmacist pharmacist;
 
@@ -34,21 +39,26 @@ public class PharmacistMenu extends Menu {
     /**
      * Displays the pharmacist's menu options and allows them to make choices.
      * The menu will repeatedly show until the pharmacist chooses to log out.
+     * Low stock alerts raised while the menu is open are printed before the menu is shown again.
      */
     @Override
     public void showMenu() {
         boolean exit = false;
+        LowStockAlerts alerts = new LowStockAlerts();
+        pharmacist.addLowStockListener(alerts);
 
         while (!exit) {
+            alerts.printAlerts();
             System.out.println("\n========== Pharmacist Menu ==========");
             System.out.println("1. View Appointment Outcome Record");
             System.out.println("2. Update Prescription Status");
             System.out.println("3. View Medication Inventory");
             System.out.println("4. Submit Replenishment Request");
+            System.out.println("5. View Low Stock Medication");
             System.out.println("0. Logout");
             System.out.println("=====================================");
 
-            int choice = sc.promptInt("Please choose an option: ", 0, 4);
+            int choice = sc.promptInt("Please choose an option: ", 0, 5);
 
             switch (choice) {
                 case 1:
@@ -67,6 +77,10 @@ public class PharmacistMenu extends Menu {
                     submitRequest();
                     break;
 
+                case 5:
+                    viewLowStock();
+                    break;
+
                 case 0:
                     exit = true;
                     break;
@@ -75,49 +89,78 @@ public class PharmacistMenu extends Menu {
                     System.out.println("The option is chosen incorrectly, please try again!");
             }
         }
+        pharmacist.removeLowStockListener(alerts);
     }
 
     /**
-     * Displays and allows the pharmacist to view appointment outcome records.
+     * Displays and allows the pharmacist to view appointment outcome records, a page at a time.
      * If there are no available records, a message is displayed indicating the absence.
      */
     private void viewAppointmentOutcome() {
-        ArrayList<AppointmentOutcomeRecord> records = pharmacist.getPendingRecords();
-        if (records.isEmpty()) {
-            System.out.println("No appointment outcome records available.");
-            return;
-        }
-        System.out.println("Appointment Outcome Records:");
-        for (AppointmentOutcomeRecord record : records) {
-            record.printAppointmentOutcomeRecord();
-            System.out.println();
+        int page = 0;
+        while (true) {
+            int pages = countPages();
+            if (pages == 0) {
+                System.out.println("No appointment outcome records available.");
+                return;
+            }
+            page = Math.min(page, pages - 1);
+
+            System.out.printf("Appointment Outcome Records (page %d of %d):\n", page + 1, pages);
+            for (AppointmentOutcomeRecord record : pharmacist.getPendingRecords(page * PAGE_SIZE, PAGE_SIZE)) {
+                record.printAppointmentOutcomeRecord();
+                System.out.println();
+            }
+            if (pages == 1) return;
+
+            System.out.println("1. Next page");
+            System.out.println("2. Previous page");
+            System.out.println("0. Back");
+            int choice = sc.promptInt("Enter your choice: ", 0, 2);
+            if (choice == 0) return;
+            page = choice == 1 ? Math.min(page + 1, pages - 1) : Math.max(page - 1, 0);
         }
     }
 
     /**
      * Allows the pharmacist to update the prescription status for a selected appointment outcome record.
+     * The records are listed a page at a time, oldest appointment first.
      * If no records are available, a message is displayed indicating the absence of available outcome records.
      * If the pharmacist chooses a record, they can dispense the prescription, 
      * and the prescription status will be updated accordingly.
      * else the system will print out insufficient stock for the prescription.
      */
     private void updatePrescriptionStatus() {
-        ArrayList<AppointmentOutcomeRecord> records = pharmacist.getPendingRecords();
-        if (records.isEmpty()) {
-            System.out.println("No appointment outcome records available.");
-            return;
-        }
+        AppointmentOutcomeRecord selectedRecord = null;
+        int page = 0;
+        while (selectedRecord == null) {
+            int pages = countPages();
+            if (pages == 0) {
+                System.out.println("No appointment outcome records available.");
+                return;
+            }
+            page = Math.min(page, pages - 1);
+            ArrayList<AppointmentOutcomeRecord> records = pharmacist.getPendingRecords(page * PAGE_SIZE, PAGE_SIZE);
 
-        System.out.println("Select a record to update:");
-        for (int i = 0; i < records.size(); i++) {
-            System.out.printf("%d. Appointment Slot: %s, Current Status: %s\n", i + 1, 
-                    records.get(i).getSlot().getDate(), records.get(i).getPrescriptionStatus());
-        }
-        System.out.println("0. Cancel");
+            System.out.printf("Select a record to update (page %d of %d):\n", page + 1, pages);
+            for (int i = 0; i < records.size(); i++) {
+                System.out.printf("%d. Appointment Slot: %s, Current Status: %s\n", i + 1, 
+                        records.get(i).getSlot().getDate(), records.get(i).getPrescriptionStatus());
+            }
+            int max = records.size();
+            if (pages > 1) {
+                System.out.printf("%d. Next page\n", records.size() + 1);
+                System.out.printf("%d. Previous page\n", records.size() + 2);
+                max += 2;
+            }
+            System.out.println("0. Cancel");
 
-        int choice = sc.promptInt("Enter record number: ", 0, records.size());
-        if (choice == 0) return;
-        AppointmentOutcomeRecord selectedRecord = records.get(choice-1);
+            int choice = sc.promptInt("Enter record number: ", 0, max);
+            if (choice == 0) return;
+            if (choice == records.size() + 1) page = Math.min(page + 1, pages - 1);
+            else if (choice == records.size() + 2) page = Math.max(page - 1, 0);
+            else selectedRecord = records.get(choice-1);
+        }
 
         for (Prescription prescription : selectedRecord.getPrescription()) {
             System.out.printf("- %s (%d)\n", prescription.getName(), prescription.getQuantity());
@@ -132,10 +175,19 @@ public class PharmacistMenu extends Menu {
         if (result) {
             System.out.println("Prescription status updated successfully.");
         } else {
-            System.out.println("Insufficient stock.");
+            System.out.println("Prescription could not be dispensed: insufficient stock, or it has already been dispensed.");
         }
     }
 
+    /**
+     * Returns the number of pages of pending prescription records.
+     *
+     * @return the number of pages, or 0 if there are no pending records
+     */
+    private int countPages() {
+        return (pharmacist.countPendingRecords() + PAGE_SIZE - 1) / PAGE_SIZE;
+    }
+
     /**
      * Displays the current medication inventory and stock levels in an array list.
      * If any medication stock is low, it will display a warning for those items.
@@ -160,6 +212,24 @@ public class PharmacistMenu extends Menu {
         }
     }
 
+    /**
+     * Displays the medications whose stock is below their low stock alert level.
+     * If no medication is low on stock, a corresponding message will be shown.
+     */
+    private void viewLowStock() {
+        ArrayList<Medicine> medicines = pharmacist.getLowStock();
+        if (medicines.isEmpty()) {
+            System.out.println("No medication is low on stock.");
+            return;
+        }
+
+        System.out.println("Low Stock Medication:");
+        for (Medicine medicine : medicines) {
+            System.out.printf("Medicine: %s, Stock: %d, Low Stock Alert Level: %d\n",
+                medicine.getName(), medicine.getStock(), medicine.getLowStockLevelAlert());
+        }
+    }
+
     /**
      * Prompts the pharmacist to submit a replenishment request for a specific medicine.
      * The pharmacist is asked to provide the name of the medicine and the desired quantity.
@@ -170,7 +240,12 @@ public class PharmacistMenu extends Menu {
         int stock = sc.promptInt("Enter stock request amount: ", 1, Integer.MAX_VALUE);
 
         ReplenishmentRequest request = new ReplenishmentRequest(name, stock);
-        pharmacist.requestReplenishment(request);
-        System.out.printf("Replenishment request for '%s' (%d) has been submitted.\n", name, stock);
+        ReplenishmentRequest pending = pharmacist.requestReplenishment(request);
+        if (pending == null) return;
+        if (pending == request) {
+            System.out.printf("Replenishment request #%d for '%s' (%d) has been submitted.\n", pending.getId(), name, stock);
+        } else {
+            System.out.printf("Added to pending replenishment request #%d for '%s', now %d in total.\n", pending.getId(), name, pending.getStock());
+        }
     }
 }
\ No newline at end of file
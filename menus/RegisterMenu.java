@@ -5,7 +5,6 @@ import java.util.regex.Pattern;
 
 import data.user.UserDatabase;
 import user.Patient;
-import user.UserAccount;
 
 /**
  * The RegisterMenu class handles the user registration process for the Hospital Management System (HMS).
@@ -35,21 +34,18 @@ public class RegisterMenu {
      * Registers a new user by prompting for user details, performing necessary validation,
      * and storing the user information in the database.
      * 
-     * @return a new PatientMenu after successful registration
+     * @return a new PatientMenu after successful registration, or null if the username was taken in the meantime
      */
     public Menu register() {
-        UserAccount account = null;
         System.out.println("Welcome to the Hospital Management System (HMS)");
 
         boolean usernameTaken = true;
         String username = "";
         while (usernameTaken) {
             username = sc.promptLine("Enter new username: ");
-            account = db.getAccount(username);
-            if (account != null) {
+            usernameTaken = db.isUsernameTaken(username);
+            if (usernameTaken) {
                 System.out.println("Username already taken. Please try again.");
-            } else {
-                usernameTaken = false;
             }
         }
 
@@ -82,6 +78,10 @@ public class RegisterMenu {
         }
         
         Patient patient = db.registerPatient(username, name, birthDate, gender, bloodType, contactInfo);
+        if (patient == null) {
+            System.out.println("Username already taken. Please register again.");
+            return null;
+        }
 
         db.setPassword(patient.getId(), password);
 
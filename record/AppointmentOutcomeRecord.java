@@ -49,6 +49,25 @@ public class AppointmentOutcomeRecord {
         this.treatmentPlan.add(treatmentPlan);
     }
 
+    /**
+     * Constructs an AppointmentOutcomeRecord with every field given, such as one restored from a snapshot.
+     *
+     * @param serviceType the type of service provided during the appointment
+     * @param consultationNotes the notes from the consultation
+     * @param prescriptionStatus the status of the prescription
+     * @param prescription an ArrayList of Prescription objects prescribed during the appointment
+     * @param diagnoses the diagnoses made during the appointment
+     * @param treatmentPlan the treatment plans recommended during the appointment
+     */
+    public AppointmentOutcomeRecord(String serviceType, String consultationNotes, PrescriptionStatus prescriptionStatus, ArrayList<Prescription> prescription, ArrayList<String> diagnoses, ArrayList<String> treatmentPlan) {
+        this.serviceType = serviceType;
+        this.consultationNotes = consultationNotes;
+        this.prescriptionStatus = prescriptionStatus;
+        this.prescription = prescription;
+        this.diagnoses = diagnoses;
+        this.treatmentPlan = treatmentPlan;
+    }
+
     /**
      * Constructs an AppointmentOutcomeRecord from a CSV line.
      * 
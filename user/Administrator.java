@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import medicine.InventoryApiAdministrator;
+import medicine.LowStockListener;
 import medicine.Medicine;
 import medicine.Prescription;
 import medicine.ReplenishmentRequest;
@@ -76,6 +77,17 @@ public class Administrator extends Staff {
         }
     }
 
+    /**
+     * Finds the staff members whose name, a word of whose name, or whose username starts with the given prefix.
+     *
+     * @param prefix The start of a name or username, ignoring case.
+     * @param limit  The maximum number of staff members to return.
+     * @return A list of up to limit matching staff members.
+     */
+    public ArrayList<Staff> searchStaff(String prefix, int limit) {
+        return this.userDb.searchStaff(prefix, limit);
+    }
+
     /**
      * Adds a new staff member to the system.
      *
@@ -170,6 +182,33 @@ public class Administrator extends Staff {
         return this.inventory.getInventory();
     }
 
+    /**
+     * Retrieves the medicines that are below their low stock level alert.
+     *
+     * @return A list of the low stock medicines.
+     */
+    public ArrayList<Medicine> getLowStock() {
+        return this.inventory.getLowStock();
+    }
+
+    /**
+     * Registers a listener to be notified when a medicine crosses its low stock level alert.
+     *
+     * @param listener The listener to add.
+     */
+    public void addLowStockListener(LowStockListener listener) {
+        this.inventory.addLowStockListener(listener);
+    }
+
+    /**
+     * Unregisters a low stock listener.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removeLowStockListener(LowStockListener listener) {
+        this.inventory.removeLowStockListener(listener);
+    }
+
     /**
      * Updates the stock number of an existing medicine in the inventory.
      *
@@ -233,13 +272,7 @@ public class Administrator extends Staff {
      * @return A list of pending replenishment requests.
      */
     public ArrayList<ReplenishmentRequest> getPendingRequests() {
-        ArrayList<ReplenishmentRequest> result = new ArrayList<>();
-        for (ReplenishmentRequest request : this.inventory.getRequests()) {
-            if (request.getStatus().equals(ReplenishmentStatus.Pending)) {
-                result.add(request);
-            }
-        }
-        return result;
+        return this.inventory.getRequests(ReplenishmentStatus.Pending);
     }
 
     /**
@@ -1,14 +1,13 @@
 package user;
 
 import appointment.Appointment;
-import appointment.AppointmentSlot;
 import appointment.AppointmentStatus;
 import appointment.Schedule;
 import data.appointment.AppointmentDatabaseApiDoctor;
 import data.user.UserDatabaseApiDoctor;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import medicine.InventoryApiDoctor;
 import medicine.Medicine;
 import record.AppointmentOutcomeRecord;
@@ -60,13 +59,13 @@ public class Doctor extends Staff implements DoctorApiPatient {
     }
 
     /**
-     * Sets the doctor's schedule for a given start date and end date.
+     * Sets the doctor's schedule, running from today to the given number of days ahead.
      *
-     * @param startDate The start date of the doctor's schedule.
-     * @param endDate   The end date of the doctor's schedule.
+     * @param horizonDays     The number of days after today that can be viewed and booked.
+     * @param maxResidentDays The maximum number of unchanged days the schedule keeps in memory.
      */
-    public void setSchedule(LocalDate startDate, LocalDate endDate) {
-        this.schedule = new Schedule(startDate, endDate);
+    public void setSchedule(int horizonDays, int maxResidentDays) {
+        this.schedule = new Schedule(horizonDays, maxResidentDays);
     }
 
     /**
@@ -78,6 +77,21 @@ public class Doctor extends Staff implements DoctorApiPatient {
         return this.userDb.getPatients(this.appointmentDb.getDoctorAppointments(this.id));
     }
 
+    /**
+     * Finds the doctor's patients whose name, a word of whose name, or whose username starts with the given prefix.
+     *
+     * @param prefix The start of a name or username, ignoring case.
+     * @param limit The maximum number of patients to return.
+     * @return A list of up to limit matching patients assigned to the doctor.
+     */
+    public ArrayList<Patient> searchPatients(String prefix, int limit) {
+        HashSet<UserId> patientIds = new HashSet<>();
+        for (Appointment appointment : this.appointmentDb.getDoctorAppointments(this.id)) {
+            patientIds.add(appointment.getPatientId());
+        }
+        return this.userDb.searchPatients(prefix, limit, patientIds::contains);
+    }
+
     /**
      * Retrieves the patient information for a specific patient based on their ID.
      *
@@ -106,16 +120,8 @@ public class Doctor extends Staff implements DoctorApiPatient {
         this.appointmentDb = appointmentDb;
 
         // update schedule
-        ArrayList<Appointment> appointments = this.getAppointments();
-        for (Appointment appointment : appointments) {
-            LocalDateTime dateTime = appointment.getSlot().getDate();
-            ArrayList<AppointmentSlot> slots = this.schedule.getSlots(dateTime.toLocalDate());
-            for (int i = 0; i < slots.size(); i++) {
-                if (slots.get(i).getDate().equals(dateTime)) {
-                    slots.set(i, appointment.getSlot());
-                    break;
-                }
-            }
+        for (Appointment appointment : this.getAppointments()) {
+            this.schedule.bind(appointment.getSlot());
         }
     }
 
@@ -134,30 +140,17 @@ public class Doctor extends Staff implements DoctorApiPatient {
      * @return A list of pending appointments for the doctor.
      */
     public ArrayList<Appointment> getPendingAppointments() {
-        ArrayList<Appointment> result = new ArrayList<>();
-        for (Appointment appointment : this.appointmentDb.getDoctorAppointments(this.id)) {
-            AppointmentStatus status = appointment.getAppointmentStatus();
-            if (status.equals(AppointmentStatus.Pending)) {
-                result.add(appointment);
-            }
-        }
-        return result;
+        return this.appointmentDb.getDoctorAppointments(this.id, AppointmentStatus.Pending);
     }
 
     /**
-     * Retrieves a list of all upcoming (confirmed) appointments for the doctor.
+     * Retrieves a list of all upcoming (confirmed) appointments for the doctor, in order of appointment time.
+     * Only appointments from the current time onwards are included, so past appointments are not scanned.
      *
      * @return A list of upcoming (confirmed) appointments for the doctor.
      */
     public ArrayList<Appointment> getUpcomingAppointments() {
-        ArrayList<Appointment> result = new ArrayList<>();
-        for (Appointment appointment : this.appointmentDb.getDoctorAppointments(this.id)) {
-            AppointmentStatus status = appointment.getAppointmentStatus();
-            if (status.equals(AppointmentStatus.Confirmed)) {
-                result.add(appointment);
-            }
-        }
-        return result;
+        return this.appointmentDb.findAppointments(LocalDateTime.now(), null, this.id, AppointmentStatus.Confirmed);
     }
 
     /**
@@ -179,6 +172,16 @@ public class Doctor extends Staff implements DoctorApiPatient {
     public void recordOutcome(int appointmentId, AppointmentOutcomeRecord record) {
         this.appointmentDb.setOutcome(this.id, appointmentId, record);
     }
+
+    /**
+     * Searches the consultation notes, diagnoses and treatment plans of the doctor's past visits by keyword.
+     *
+     * @param query The search query. Words must all appear in a record; alternatives are separated by OR.
+     * @return A list of matching appointments, in order of ID.
+     */
+    public ArrayList<Appointment> searchRecords(String query) {
+        return this.appointmentDb.searchAppointments(query, this.id);
+    }
     
     /**
      * Retrieves and returns the current inventory of medicines available to the doctor.
@@ -1,10 +1,14 @@
 package user;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 
 import appointment.Appointment;
 import appointment.AppointmentSlot;
 import appointment.AppointmentStatus;
+import appointment.BookingResult;
+import appointment.DoctorSlot;
+import appointment.RecurrenceRule;
 import data.CsvCompatible;
 import data.appointment.AppointmentDatabaseApiPatient;
 import data.user.UserDatabaseApiPatient;
@@ -52,7 +56,11 @@ public class Patient extends User implements CsvCompatible {
      * @return A string in CSV format representing the patient's details.
      */
     public String toCsv() {
-        return String.format("%s,%s,%s,%s,%s,%s", id, name, birthDate, gender, bloodType, contactInfo);
+        return String.format(
+            "%s,%s,%s,%s,%s,%s",
+            id, CsvCompatible.quote(name), CsvCompatible.quote(birthDate), CsvCompatible.quote(gender),
+            CsvCompatible.quote(bloodType), CsvCompatible.quote(contactInfo)
+        );
     }
 
     /**
@@ -86,6 +94,17 @@ public class Patient extends User implements CsvCompatible {
         return this.userDb.getDoctors();
     }
 
+    /**
+     * Finds the earliest available appointment slots across all doctors.
+     *
+     * @param after The earliest start time to consider.
+     * @param limit The maximum number of slots to return.
+     * @return A list of up to limit available slots, in order of time.
+     */
+    public ArrayList<DoctorSlot> findEarliestSlots(LocalDateTime after, int limit) {
+        return this.userDb.findEarliestSlots(after, limit, null);
+    }
+
     /**
      * Retrieves a doctor by their unique ID.
      *
@@ -142,9 +161,25 @@ public class Patient extends User implements CsvCompatible {
      *
      * @param doctorId The unique ID of the doctor.
      * @param slot The appointment slot for the new appointment.
+     * @return true if the appointment was scheduled, false if the slot has been taken in the meantime.
+     */
+    public boolean scheduleAppointment(UserId doctorId, AppointmentSlot slot) {
+        return this.appointmentDb.newAppointment(this.id, doctorId, slot) != null;
+    }
+
+    /**
+     * Schedules a series of appointments for the patient with a specific doctor, such as weekly visits.
+     * Either every appointment in the series is scheduled or none are.
+     *
+     * @param doctorId The unique ID of the doctor.
+     * @param rule The times of the appointments.
+     * @return The result, holding either the scheduled appointments or every time that could not be booked,
+     *         or null if the doctor is not found.
      */
-    public void scheduleAppointment(UserId doctorId, AppointmentSlot slot) {
-        this.appointmentDb.newAppointment(this.id, doctorId, slot);
+    public BookingResult scheduleRecurring(UserId doctorId, RecurrenceRule rule) {
+        DoctorApiPatient doctor = this.userDb.findDoctorId(doctorId);
+        if (doctor == null) return null;
+        return this.appointmentDb.newAppointments(this.id, doctor, rule);
     }
 
     /**
@@ -152,9 +187,11 @@ public class Patient extends User implements CsvCompatible {
      *
      * @param appointmentId The ID of the appointment to reschedule.
      * @param slot The new appointment slot.
+     * @return true if the appointment was rescheduled, false if it could not be, such as when the slot has been
+     *         taken in the meantime.
      */
-    public void rescheduleAppointment(int appointmentId, AppointmentSlot slot) {
-        this.appointmentDb.rescheduleAppointment(this.id, appointmentId, slot);
+    public boolean rescheduleAppointment(int appointmentId, AppointmentSlot slot) {
+        return this.appointmentDb.rescheduleAppointment(this.id, appointmentId, slot) != null;
     }
 
     /**
@@ -175,6 +212,6 @@ public class Patient extends User implements CsvCompatible {
     public void setContactInfo(String contactInfo) {
         this.contactInfo = contactInfo;
         this.record.setContactInfo(contactInfo);
-        this.userDb.updatePatient();
+        this.userDb.updatePatient(this);
     }
 }
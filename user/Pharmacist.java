@@ -3,8 +3,8 @@ package user;
 import data.appointment.AppointmentDatabaseApiPharmacist;
 import java.util.ArrayList;
 import medicine.InventoryApiPharmacist;
+import medicine.LowStockListener;
 import medicine.Medicine;
-import medicine.PrescriptionStatus;
 import medicine.ReplenishmentRequest;
 import record.AppointmentOutcomeRecord;
 
@@ -49,19 +49,33 @@ public class Pharmacist extends Staff {
     }
 
     /**
-     * Retrieves all pending prescription records from the appointment database.
+     * Retrieves all pending prescription records from the appointment database, oldest appointment first.
      * A pending prescription status indicates that the pharmacist needs to dispense the prescription.
      *
      * @return An ArrayList of AppointmentOutcomeRecord objects with a Pending prescription status.
      */
     public ArrayList<AppointmentOutcomeRecord> getPendingRecords() {
-        ArrayList<AppointmentOutcomeRecord> result = new ArrayList<>();
-        for (AppointmentOutcomeRecord record : this.appointmentDb.getRecords()) {
-            if (record.getPrescriptionStatus().equals(PrescriptionStatus.Pending)) {
-                result.add(record);
-            }
-        }
-        return result;
+        return this.appointmentDb.getPendingPrescriptions(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Retrieves a page of the pending prescription records from the appointment database, oldest appointment first.
+     *
+     * @param offset The number of pending records to skip.
+     * @param limit The maximum number of records to return.
+     * @return An ArrayList of at most limit AppointmentOutcomeRecord objects with a Pending prescription status.
+     */
+    public ArrayList<AppointmentOutcomeRecord> getPendingRecords(int offset, int limit) {
+        return this.appointmentDb.getPendingPrescriptions(offset, limit);
+    }
+
+    /**
+     * Returns the number of pending prescription records.
+     *
+     * @return The number of records with a Pending prescription status.
+     */
+    public int countPendingRecords() {
+        return this.appointmentDb.countPendingPrescriptions();
     }
 
     /**
@@ -72,13 +86,7 @@ public class Pharmacist extends Staff {
      * @return True if the prescription was successfully dispensed, otherwise false.
      */
     public boolean dispensePrescription(AppointmentOutcomeRecord record) {
-        boolean success = this.inventory.dispensePrescription(record.getPrescription());
-        if (!success) return false;
-
-        AppointmentOutcomeRecord result = this.appointmentDb.dispensePrescription(record.getAppointmentId());
-        if (result == null) {
-            System.out.println("Record not found.");
-        }
+        AppointmentOutcomeRecord result = this.appointmentDb.dispensePrescription(record.getAppointmentId(), this.inventory);
         return result != null;
     }
 
@@ -91,17 +99,47 @@ public class Pharmacist extends Staff {
         return this.inventory.getInventory();
     }
 
+    /**
+     * Retrieves the medicines that are below their low stock level alert.
+     *
+     * @return An ArrayList of the low stock Medicine objects, in order of name.
+     */
+    public ArrayList<Medicine> getLowStock() {
+        return this.inventory.getLowStock();
+    }
+
+    /**
+     * Registers a listener to be notified when a medicine crosses its low stock level alert.
+     *
+     * @param listener The listener to add.
+     */
+    public void addLowStockListener(LowStockListener listener) {
+        this.inventory.addLowStockListener(listener);
+    }
+
+    /**
+     * Unregisters a low stock listener.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removeLowStockListener(LowStockListener listener) {
+        this.inventory.removeLowStockListener(listener);
+    }
+
     /**
      * Submits a replenishment request for medicines in the inventory.
      * The request is forwarded to the inventory system for handling.
+     * If the medicine already has a pending request, the requested units are added to it instead.
      *
      * @param request The ReplenishmentRequest object containing details of the requested replenishment.
+     * @return The pending request that now holds the requested units, or null if the inventory is not initialized.
      */
-    public void requestReplenishment(ReplenishmentRequest request) {
+    public ReplenishmentRequest requestReplenishment(ReplenishmentRequest request) {
         if (this.inventory != null) {
-            this.inventory.handleReplenishmentRequest(request);
+            return this.inventory.handleReplenishmentRequest(request);
         } else {
             System.out.println("Inventory is not initialized.");
+            return null;
         }
     }
 
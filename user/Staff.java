@@ -81,6 +81,6 @@ public class Staff extends User implements CsvCompatible {
      * @return A string in CSV format representing the staff member's details.
      */
     public String toCsv() {
-        return String.format("%s,%s,%s,%s,%d", id, name, role, gender, age);
+        return String.format("%s,%s,%s,%s,%d", id, CsvCompatible.quote(name), role, CsvCompatible.quote(gender), age);
     }
 }
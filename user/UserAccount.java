@@ -39,7 +39,7 @@ public class UserAccount implements CsvCompatible {
      * @return A string in CSV format representing the user's account details.
      */
     public String toCsv() {
-        return String.format("%s,%s,%s,%s", id.toString(), username, password, role);
+        return String.format("%s,%s,%s,%s", id.toString(), CsvCompatible.quote(username), CsvCompatible.quote(password), role);
     }
 
     /**
@@ -69,6 +69,15 @@ public class UserAccount implements CsvCompatible {
         return this.id;
     }
 
+    /**
+     * Get the stored password of the user account.
+     *
+     * @return The password of the user account.
+     */
+    public String getPassword() {
+        return this.password;
+    }
+
     /**
      * Set a new password for the user account.
      *
@@ -4,14 +4,27 @@ package user;
  * The userId class represents a unique user identifier in the system, consisting of a character prefix and a numeric part.
  * The prefix is typically used to categorize users (e.g., 'P' for patient, 'D' for doctor), 
  * while the numeric part uniquely identifies each user.
+ *
+ * A UserId is immutable. The prefix and number are packed into a single key, and the hash code is computed once,
+ * so comparing and hashing user IDs never allocates. The hash places the prefix above the low 24 bits of the number,
+ * so IDs whose prefixes differ in their low 8 bits (such as any two letters) and whose numbers are below 16,777,216
+ * never share a hash code.
+ * {@link #of(char, int)} and {@link #parse(String)} return a shared instance for each distinct ID, so the same ID read
+ * many times from a file is only held in memory once. The shared instances are kept in an open-addressing table of
+ * user IDs, probed by key, so looking up an ID that has been seen before does not allocate.
  * 
  * @author NATANAEL TAN TIONG OON
  * @version 1.0
  * @since 2024-11-21
  */
 public class UserId {
-    private char prefix;
-    private int num;
+    private static volatile UserId[] interned = new UserId[1024];
+    private static int internedCount = 0;
+
+    private final char prefix;
+    private final int num;
+    private final long key;
+    private final int hash;
 
     /**
      * Construct a UserId object from a string representation.
@@ -22,26 +35,162 @@ public class UserId {
      * @throws IllegalArgumentException If the string does not have a valid format or if the numeric part is not a valid integer.
      */
     public UserId(String id) throws IllegalArgumentException {
+        this.num = parseNum(id);
+        this.prefix = id.charAt(0);
+        this.key = pack(prefix, num);
+        this.hash = hash(prefix, num);
+    }
+
+    /**
+     * Construct a UserId object from a given character prefix and numeric value.
+     *
+     * @param prefix The character prefix that categorizes the user (e.g., 'P' for Patient, 'D' for Doctor).
+     * @param num The unique numeric identifier for the user.
+     */
+    public UserId(char prefix, int num) {
+        this.prefix = prefix;
+        this.num = num;
+        this.key = pack(prefix, num);
+        this.hash = hash(prefix, num);
+    }
+
+    /**
+     * Returns the shared UserId with the given character prefix and numeric value.
+     *
+     * @param prefix The character prefix that categorizes the user (e.g., 'P' for Patient, 'D' for Doctor).
+     * @param num The unique numeric identifier for the user.
+     * @return The shared UserId.
+     */
+    public static UserId of(char prefix, int num) {
+        UserId id = find(interned, pack(prefix, num), hash(prefix, num));
+        if (id != null) return id;
+        return intern(prefix, num);
+    }
+
+    /**
+     * Adds a UserId to the table of shared instances, unless another thread has added it first.
+     * Readers probe the table without locking: a new entry is written into an empty slot, and the table is only
+     * replaced by a larger copy that already holds every entry, so a reader either finds the entry or falls through
+     * to this method.
+     *
+     * @param prefix The character prefix of the user ID.
+     * @param num The numeric part of the user ID.
+     * @return The shared UserId.
+     */
+    private static synchronized UserId intern(char prefix, int num) {
+        long key = pack(prefix, num);
+        int hash = hash(prefix, num);
+        UserId[] table = interned;
+        UserId id = find(table, key, hash);
+        if (id != null) return id;
+
+        id = new UserId(prefix, num);
+        if ((internedCount + 1) * 2 > table.length) {
+            UserId[] grown = new UserId[table.length * 2];
+            for (UserId existing : table) {
+                if (existing != null) insert(grown, existing);
+            }
+            insert(grown, id);
+            interned = grown;
+        } else {
+            insert(table, id);
+        }
+        internedCount++;
+        return id;
+    }
+
+    /**
+     * Finds a UserId in a table of shared instances.
+     *
+     * @param table The table, at most half full.
+     * @param key The packed key of the user ID.
+     * @param hash The hash code of the user ID.
+     * @return The shared UserId, or null if it is not in the table.
+     */
+    private static UserId find(UserId[] table, long key, int hash) {
+        int mask = table.length - 1;
+        for (int i = slot(hash) & mask; ; i = (i + 1) & mask) {
+            UserId id = table[i];
+            if (id == null || id.key == key) return id;
+        }
+    }
+
+    /**
+     * Puts a UserId into the first empty slot of its probe sequence.
+     *
+     * @param table The table, with at least one empty slot.
+     * @param id The user ID.
+     */
+    private static void insert(UserId[] table, UserId id) {
+        int mask = table.length - 1;
+        int i = slot(id.hash) & mask;
+        while (table[i] != null) i = (i + 1) & mask;
+        table[i] = id;
+    }
+
+    /**
+     * Spreads a hash code over all bits, so that consecutive numbers with different prefixes do not share runs of
+     * slots in the table of shared instances.
+     *
+     * @param hash The hash code of the user ID.
+     * @return The spread hash code.
+     */
+    private static int slot(int hash) {
+        hash *= 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns the shared UserId for a string representation.
+     * The string should start with a character (prefix) followed by a numeric value.
+     *
+     * @param id The string representing the user ID, where the first character is the prefix and the rest is the number.
+     * @return The shared UserId.
+     * @throws IllegalArgumentException If the string does not have a valid format or if the numeric part is not a valid integer.
+     */
+    public static UserId parse(String id) throws IllegalArgumentException {
+        int num = parseNum(id);
+        return of(id.charAt(0), num);
+    }
+
+    /**
+     * Parses the numeric part of a string representation of a user ID.
+     *
+     * @param id The string representing the user ID.
+     * @return The numeric part of the user ID.
+     * @throws IllegalArgumentException If the string is too short or the numeric part is not a valid integer.
+     */
+    private static int parseNum(String id) throws IllegalArgumentException {
         if (id.length() < 2) {
             throw new IllegalArgumentException("User ID should have at least a character and a number");
         }
         try {
-            this.prefix = id.charAt(0);
-            this.num = Integer.parseInt(id.substring(1));
+            return Integer.parseInt(id, 1, id.length(), 10);
         } catch (NumberFormatException e) {
             throw new IllegalArgumentException(id.substring(1) + " is not a valid number.");
         }
     }
 
     /**
-     * Construct a UserId object from a given character prefix and numeric value.
+     * Packs a prefix and number into a single key.
      *
-     * @param prefix The character prefix that categorizes the user (e.g., 'P' for Patient, 'D' for Doctor).
-     * @param num The unique numeric identifier for the user.
+     * @param prefix The character prefix of the user ID.
+     * @param num The numeric part of the user ID.
+     * @return The key, with the prefix in the upper 32 bits and the number in the lower 32 bits.
      */
-    public UserId(char prefix, int num) {
-        this.prefix = prefix;
-        this.num = num;
+    private static long pack(char prefix, int num) {
+        return ((long) prefix << 32) | (num & 0xffffffffL);
+    }
+
+    /**
+     * Computes the hash code of a user ID.
+     *
+     * @param prefix The character prefix of the user ID.
+     * @param num The numeric part of the user ID.
+     * @return The prefix in the bits above the low 24 bits, combined with the number.
+     */
+    private static int hash(char prefix, int num) {
+        return (prefix << 24) ^ num;
     }
 
     /**
@@ -51,7 +200,17 @@ public class UserId {
      * @return A string representing the user ID (e.g., "P001" for Patient with ID 1).
      */
     public String toString() {
-        return String.format("%c%03d", prefix, num);
+        String digits = Integer.toString(num);
+        if (num >= 100) return prefix + digits;
+        StringBuilder builder = new StringBuilder(4).append(prefix);
+        if (num < 0) {
+            builder.append('-');
+            digits = digits.substring(1);
+            if (digits.length() < 2) builder.append('0');
+        } else {
+            for (int i = digits.length(); i < 3; i++) builder.append('0');
+        }
+        return builder.append(digits).toString();
     }
     
     /**
@@ -76,24 +235,27 @@ public class UserId {
 
     /**
      * Return a hash code value for the UserId.
-     * The hash code is computed based on the string representation of the UserId.
+     * The hash code is computed once from the prefix and number.
      *
      * @return The hash code of the UserId.
      */
     @Override
     public int hashCode() {
-        return this.toString().hashCode();
+        return this.hash;
     }
 
     /**
      * Check whether two UserId objects are equal.
-     * Two UserIds are considered equal if their string representations are identical.
+     * Two UserIds are considered equal if they have the same prefix and number,
+     * which is when their string representations are identical.
      *
      * @param o The object to compare with.
      * @return True if the UserId objects are equal, otherwise false.
      */
     @Override
     public boolean equals(Object o) {
-        return this.toString().equals(o.toString());
+        if (this == o) return true;
+        if (!(o instanceof UserId)) return false;
+        return this.key == ((UserId) o).key;
     }
 }